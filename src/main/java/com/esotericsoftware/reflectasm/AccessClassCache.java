@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+/** Controls the cache of generated access classes and reports how many have been generated.
+ * <p>
+ * Access classes defined as hidden classes (see {@link DefinitionStrategy#HIDDEN}) can be unloaded once they are no longer used.
+ * The most recently used are kept by a cache for each class loader, so getting an access object again doesn't generate its class
+ * again. The least recently used are evicted when the cache is full. Other access classes are unloaded only with their class
+ * loader. */
+public final class AccessClassCache {
+	private AccessClassCache () {
+	}
+
+	/** Sets the maximum number of hidden access classes kept by the cache for each class loader. 0 keeps none, so each is
+	 * unloaded as soon as it is no longer used. Default is 256. */
+	static public void setMaxCachedClasses (int max) {
+		AccessClassLoader.setMaxCachedClasses(max);
+	}
+
+	static public int getMaxCachedClasses () {
+		return AccessClassLoader.getMaxCachedClasses();
+	}
+
+	/** Returns the number of hidden access classes currently in the cache. */
+	static public int getCachedClasses () {
+		return AccessClassLoader.getCachedClasses();
+	}
+
+	/** Removes the hidden access classes of all kinds for the type from the cache. They are unloaded once they are no longer
+	 * used, and later get calls generate new access classes.
+	 * @return The number of access classes removed. */
+	static public int unload (Class type) {
+		return AccessClassLoader.get(type).unload(type);
+	}
+
+	/** Returns the number of access classes generated. */
+	static public long getDefinedClasses () {
+		return AccessClassLoader.getDefinedClasses();
+	}
+
+	/** Returns the total size of the generated access class files, in bytes. */
+	static public long getDefinedBytes () {
+		return AccessClassLoader.getDefinedBytes();
+	}
+}
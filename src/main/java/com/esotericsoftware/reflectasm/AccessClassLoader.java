@@ -14,18 +14,51 @@
 
 package com.esotericsoftware.reflectasm;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.security.ProtectionDomain;
-import java.util.HashSet;
-import java.util.WeakHashMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 class AccessClassLoader extends ClassLoader {
+	static {
+		// Access classes for different types can be defined concurrently. Must be done before any instance is created.
+		registerAsParallelCapable();
+	}
+
 	// Weak-references to class loaders, to avoid perm gen memory leaks, for example in app servers/web containters if the
 	// reflectasm library (including this class) is loaded outside the deployed applications (WAR/EAR) using ReflectASM/Kryo (exts,
 	// user classpath, etc).
 	// The key is the parent class loader and the value is the AccessClassLoader, both are weak-referenced in the hash table.
-	static private final WeakHashMap<ClassLoader, WeakReference<AccessClassLoader>> accessClassLoaders = new WeakHashMap();
+	// Lookups don't lock. Keys whose class loader was collected are removed when a new AccessClassLoader is added.
+	static private final ConcurrentHashMap<LoaderKey, WeakReference<AccessClassLoader>> accessClassLoaders = new ConcurrentHashMap();
+	static private final ReferenceQueue<ClassLoader> collectedLoaders = new ReferenceQueue();
+
+	// Hidden access classes and lookups are referenced only by their AccessClassLoader, which would be collected after the last
+	// get returns. When the type's class loader sees the reflectasm classes, the AccessClassLoader is kept as long as the type
+	// instead. Its class loader can't outlive the type's, so that doesn't keep reflectasm from being unloaded. Otherwise the access
+	// classes are defined in the AccessClassLoader and reference it themselves.
+	static private final ClassValue<AtomicReference<AccessClassLoader>> typeLoaders = new ClassValue<AtomicReference<AccessClassLoader>>() {
+		protected AtomicReference<AccessClassLoader> computeValue (Class type) {
+			return new AtomicReference();
+		}
+	};
+
+	// The platform class loader on Java 9+, the extension class loader on Java 8.
+	static private final ClassLoader platformClassLoader = ClassLoader.getSystemClassLoader().getParent();
 
 	// Fast-path for classes loaded in the same ClassLoader as this class.
 	static private final ClassLoader selfContextParentClassLoader = getParentClassLoader(AccessClassLoader.class);
@@ -33,7 +66,54 @@ class AccessClassLoader extends ClassLoader {
 
 	static private volatile Method defineClassMethod;
 
-	private final HashSet<String> localClassNames = new HashSet();
+	// Java 9+: access classes are defined using a Lookup in the package of the accessed type. That gives them package access
+	// without reflection on ClassLoader internals. On Java 15+ they are hidden classes, so each access class can be unloaded as
+	// soon as it is no longer reachable. These are found reflectively so this class still runs on Java 8, which uses defineClass.
+	static private final Lookup lookup = MethodHandles.lookup();
+	static private final Method privateLookupInMethod, lookupDefineClassMethod, defineHiddenClassMethod, getModuleMethod,
+		isOpenMethod;
+	static private final Object hiddenClassOptions;
+	static {
+		Method privateLookupIn = null, lookupDefineClass = null, defineHiddenClass = null, getModule = null, isOpen = null;
+		Object options = null;
+		try {
+			privateLookupIn = MethodHandles.class.getMethod("privateLookupIn", Class.class, Lookup.class);
+			lookupDefineClass = Lookup.class.getMethod("defineClass", byte[].class);
+			getModule = Class.class.getMethod("getModule");
+			Class moduleClass = getModule.getReturnType();
+			isOpen = moduleClass.getMethod("isOpen", String.class, moduleClass);
+		} catch (Throwable ignored) { // Java 8.
+			lookupDefineClass = null;
+		}
+		try {
+			options = Array.newInstance(Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption"), 0);
+			defineHiddenClass = Lookup.class.getMethod("defineHiddenClass", byte[].class, boolean.class, options.getClass());
+		} catch (Throwable ignored) { // Hidden classes are not available.
+			defineHiddenClass = null;
+		}
+		privateLookupInMethod = privateLookupIn;
+		lookupDefineClassMethod = lookupDefineClass;
+		defineHiddenClassMethod = lookupDefineClass == null ? null : defineHiddenClass;
+		getModuleMethod = getModule;
+		isOpenMethod = isOpen;
+		hiddenClassOptions = options;
+	}
+
+	static private volatile int maxCachedClasses = 256;
+	static private final LongAdder definedClasses = new LongAdder(), definedBytes = new LongAdder();
+
+	private final Set<String> localClassNames = ConcurrentHashMap.newKeySet();
+	// Hidden classes can't be found by name. They are weakly referenced so they can be unloaded, and the most recently used are
+	// also strongly referenced by the LRU cache so they are not generated again after every garbage collection.
+	private final ConcurrentHashMap<String, HiddenClass> hiddenClasses = new ConcurrentHashMap();
+	private final ReferenceQueue<Class> unloadedClasses = new ReferenceQueue();
+	private final LinkedHashMap<String, Class> cachedClasses = new LinkedHashMap(16, 0.75f, true);
+	private final ReentrantLock cacheLock = new ReentrantLock();
+	private final ConcurrentHashMap<String, ReentrantLock> generationLocks = new ConcurrentHashMap();
+	// Lookups with private access to a package, passed to get(Class, Lookup), by package name.
+	private final ConcurrentHashMap<String, Lookup> packageLookups = new ConcurrentHashMap();
+	private volatile Boolean parentDefinable, reflectASMVisible;
+	private volatile boolean packageDefinable = true;
 
 	private AccessClassLoader (ClassLoader parent) {
 		super(parent);
@@ -41,6 +121,15 @@ class AccessClassLoader extends ClassLoader {
 
 	/** Returns null if the access class has not yet been defined. */
 	Class loadAccessClass (String name) {
+		HiddenClass hiddenClass = hiddenClasses.get(name);
+		if (hiddenClass != null) {
+			Class accessClass = hiddenClass.get();
+			if (accessClass != null) {
+				cache(name, accessClass);
+				return accessClass;
+			}
+			hiddenClasses.remove(name, hiddenClass); // The access class was unloaded.
+		}
 		// No need to check the parent class loader if the access class hasn't been defined yet.
 		if (localClassNames.contains(name)) {
 			try {
@@ -52,9 +141,160 @@ class AccessClassLoader extends ClassLoader {
 		return null;
 	}
 
-	Class defineAccessClass (String name, byte[] bytes) throws ClassFormatError {
+	/** Locks the access class name, so only one thread generates the access class. Other threads that need the same access class
+	 * wait, then find it with {@link #loadAccessClass(String)}. Access classes with different names are generated in parallel. A
+	 * ReentrantLock is used rather than a monitor so virtual threads are not pinned while generating. Must be followed by
+	 * {@link #unlock(String)}. */
+	void lock (String name) {
+		while (true) {
+			ReentrantLock lock = generationLocks.get(name);
+			if (lock == null) {
+				lock = new ReentrantLock();
+				ReentrantLock existing = generationLocks.putIfAbsent(name, lock);
+				if (existing != null) lock = existing;
+			}
+			lock.lock();
+			if (generationLocks.get(name) == lock) return;
+			lock.unlock(); // The lock was removed by the previous owner.
+		}
+	}
+
+	void unlock (String name) {
+		ReentrantLock lock = generationLocks.get(name);
+		if (lock.getHoldCount() == 1) generationLocks.remove(name);
+		lock.unlock();
+	}
+
+	/** Defines the access class with the strategy returned by {@link #getStrategy(Class, boolean)}.
+	 * @param type The accessed type. The access class must be in the same package unless the type is a JDK class.
+	 * @param hidden False if the access class must be loadable by name, for example when it has invokedynamic call sites. */
+	Class defineAccessClass (Class type, String name, byte[] bytes, boolean hidden) throws ClassFormatError {
+		switch (getStrategy(type, hidden)) {
+		case HIDDEN:
+		case LOOKUP:
+			Lookup typeLookup = packageLookups.get(getPackageName(type));
+			boolean userLookup = typeLookup != null;
+			try {
+				if (!userLookup) typeLookup = (Lookup)privateLookupInMethod.invoke(null, type, lookup);
+				if (hidden && defineHiddenClassMethod != null) {
+					try {
+						Class accessClass = ((Lookup)defineHiddenClassMethod.invoke(typeLookup, bytes, Boolean.TRUE,
+							hiddenClassOptions)).lookupClass();
+						removeUnloadedClasses();
+						hiddenClasses.put(name, new HiddenClass(name, accessClass, type, unloadedClasses));
+						cache(name, accessClass);
+						countDefined(bytes);
+						return accessClass;
+					} catch (InvocationTargetException ex) {
+						// Hidden classes need full privilege access, which a lookup may not have. Continue with Lookup.defineClass.
+						if (!(ex.getCause() instanceof IllegalAccessException)) {
+							// The access class may use package access, so it must not be defined in this loader instead.
+							throw new RuntimeException("Unable to define hidden access class: " + name, ex.getCause());
+						}
+					}
+				}
+				Class accessClass = (Class)lookupDefineClassMethod.invoke(typeLookup, bytes);
+				localClassNames.add(name);
+				countDefined(bytes);
+				return accessClass;
+			} catch (RuntimeException ex) {
+				throw ex;
+			} catch (Exception ex) {
+				Throwable cause = ex instanceof InvocationTargetException ? ex.getCause() : ex;
+				if (cause instanceof LinkageError) return loadDefinedClass(name, cause);
+				// The access class may use package access, so it is not defined in this loader instead. Later access classes are.
+				if (!userLookup) packageDefinable = false;
+				throw new RuntimeException(
+					"Unable to define access class " + name + (userLookup ? " with the lookup: " + typeLookup : "."), cause);
+			}
+		case PARENT:
+			try {
+				Class accessClass = (Class)getDefineClassMethod().invoke(getParent(),
+					new Object[] {name, bytes, Integer.valueOf(0), Integer.valueOf(bytes.length), getClass().getProtectionDomain()});
+				localClassNames.add(name);
+				countDefined(bytes);
+				return accessClass;
+			} catch (Exception ex) {
+				Throwable cause = ex instanceof InvocationTargetException ? ex.getCause() : ex;
+				if (cause instanceof LinkageError) return loadDefinedClass(name, cause);
+				parentDefinable = false;
+				throw new RuntimeException("Unable to define access class in the parent class loader: " + name, cause);
+			}
+		}
+		// Won't have access to protected and package-private members.
+		Class accessClass = defineClass(name, bytes, 0, bytes.length, getClass().getProtectionDomain());
 		localClassNames.add(name);
-		return defineClass(name, bytes);
+		countDefined(bytes);
+		return accessClass;
+	}
+
+	static private void countDefined (byte[] bytes) {
+		definedClasses.increment();
+		definedBytes.add(bytes.length);
+	}
+
+	/** Returns the class with the name already defined in the parent class loader, after defining it there failed with a
+	 * LinkageError. This happens when an earlier AccessClassLoader for the same parent defined the access class, then was removed
+	 * or collected.
+	 * @throws RuntimeException if no such class is defined, so the LinkageError had another cause. */
+	private Class loadDefinedClass (String name, Throwable cause) {
+		try {
+			Class accessClass = Class.forName(name, false, getParent());
+			localClassNames.add(name);
+			return accessClass;
+		} catch (ClassNotFoundException ex) {
+			throw new RuntimeException("Unable to define access class: " + name, cause);
+		}
+	}
+
+	private void removeUnloadedClasses () {
+		HiddenClass hiddenClass;
+		while ((hiddenClass = (HiddenClass)unloadedClasses.poll()) != null)
+			hiddenClasses.remove(hiddenClass.name, hiddenClass);
+	}
+
+	/** Strongly references the hidden access class as the most recently used, evicting the least recently used classes beyond
+	 * the maximum. An evicted class can be unloaded once it is no longer used. */
+	private void cache (String name, Class accessClass) {
+		cacheLock.lock();
+		try {
+			cachedClasses.put(name, accessClass);
+			trimCache(maxCachedClasses);
+		} finally {
+			cacheLock.unlock();
+		}
+	}
+
+	private void trimCache (int max) {
+		Iterator<Class> iter = cachedClasses.values().iterator();
+		for (int i = cachedClasses.size(); i > max; i--) {
+			iter.next();
+			iter.remove();
+		}
+	}
+
+	/** Removes the hidden access classes for the type, so they are unloaded once they are no longer used, and new access classes
+	 * are generated for the type.
+	 * @return The number of access classes removed. */
+	int unload (Class type) {
+		int count = 0;
+		for (HiddenClass hiddenClass : hiddenClasses.values()) {
+			if (hiddenClass.type != type || !hiddenClasses.remove(hiddenClass.name, hiddenClass)) continue;
+			count++;
+			cacheLock.lock();
+			try {
+				cachedClasses.remove(hiddenClass.name);
+			} finally {
+				cacheLock.unlock();
+			}
+		}
+		return count;
+	}
+
+	/** Defines the access class in the package of the type when possible. See {@link #defineAccessClass(Class, String, byte[],
+	 * boolean)}. */
+	Class defineAccessClass (Class type, String name, byte[] bytes) throws ClassFormatError {
+		return defineAccessClass(type, name, bytes, true);
 	}
 
 	protected Class<?> loadClass (String name, boolean resolve) throws ClassNotFoundException {
@@ -63,19 +303,137 @@ class AccessClassLoader extends ClassLoader {
 		if (name.equals(MethodAccess.class.getName())) return MethodAccess.class;
 		if (name.equals(ConstructorAccess.class.getName())) return ConstructorAccess.class;
 		if (name.equals(PublicConstructorAccess.class.getName())) return PublicConstructorAccess.class;
+		if (name.equals(ClassAccess.class.getName())) return ClassAccess.class;
+		if (name.equals(CloneAccess.class.getName())) return CloneAccess.class;
+		if (name.equals(DeepCopier.class.getName())) return DeepCopier.class;
+		if (name.equals(ComparatorAccess.class.getName())) return ComparatorAccess.class;
+		if (name.equals(MapperAccess.class.getName())) return MapperAccess.class;
+		if (name.equals(MapAccess.class.getName())) return MapAccess.class;
+		if (name.equals(FieldMap.class.getName())) return FieldMap.class;
+		if (name.equals(PropertyAccess.class.getName())) return PropertyAccess.class;
+		if (name.equals(PathAccess.class.getName())) return PathAccess.class;
+		if (name.equals(FieldValueVisitor.class.getName())) return FieldValueVisitor.class;
+		if (name.equals(SerializerAccess.class.getName())) return SerializerAccess.class;
+		if (name.equals(BinarySerializer.class.getName())) return BinarySerializer.class;
+		if (name.equals(BinaryOutput.class.getName())) return BinaryOutput.class;
+		if (name.equals(BinaryInput.class.getName())) return BinaryInput.class;
+		if (name.equals(FlatCodec.class.getName())) return FlatCodec.class;
+		if (name.equals(SoAList.Flyweight.class.getName())) return SoAList.Flyweight.class;
 		// All other classes come from the classloader that loaded the type we are accessing.
 		return super.loadClass(name, resolve);
 	}
 
-	Class<?> defineClass (String name, byte[] bytes) throws ClassFormatError {
+	/** Returns how access classes for the type are defined. The checks that don't depend on the type are done once per loader.
+	 * @param hidden False if the access class must be loadable by name. */
+	DefinitionStrategy getStrategy (Class type, boolean hidden) {
+		if (canDefineInPackage(type)) {
+			if (hidden && defineHiddenClassMethod != null) return DefinitionStrategy.HIDDEN;
+			return DefinitionStrategy.LOOKUP;
+		}
+		if (canDefineInParent()) return DefinitionStrategy.PARENT;
+		return DefinitionStrategy.ACCESS_LOADER;
+	}
+
+	/** Returns true if access classes defined by this loader can be defined in the parent class loader using reflection, so they
+	 * are in the same runtime package as the accessed type and can access its protected and package-private members. */
+	boolean canDefineInParent () {
+		if (parentDefinable == null) {
+			boolean definable;
+			try {
+				// The parent must be able to define classes and must see the same reflectasm classes as this loader.
+				definable = getDefineClassMethod().isAccessible() && isReflectASMVisible();
+			} catch (Throwable ignored) {
+				definable = false;
+			}
+			parentDefinable = definable;
+		}
+		return parentDefinable;
+	}
+
+	/** Returns true if the access class for the type can be defined with a Lookup in the type's package, so it can access the
+	 * type's protected and package-private members. */
+	boolean canDefineInPackage (Class type) {
+		if (lookupDefineClassMethod == null || type.getClassLoader() != getParent() || !isReflectASMVisible()) return false;
+		if (packageLookups.containsKey(getPackageName(type))) return true;
+		if (!packageDefinable) return false;
+		// The package must be open to reflectasm, which is always the case for classes on the class path.
 		try {
-			// Attempt to load the access class in the same loader, which makes protected and default access members accessible.
-			return (Class<?>)getDefineClassMethod().invoke(getParent(),
-				new Object[] {name, bytes, Integer.valueOf(0), Integer.valueOf(bytes.length), getClass().getProtectionDomain()});
-		} catch (Exception ignored) {
-			// continue with the definition in the current loader (won't have access to protected and package-protected members)
+			return (Boolean)isOpenMethod.invoke(getModuleMethod.invoke(type), getPackageName(type),
+				getModuleMethod.invoke(AccessClassLoader.class));
+		} catch (Exception ex) {
+			return false;
+		}
+	}
+
+	/** Uses the lookup to define access classes for types in the package of the type, even when the package is not open to
+	 * reflectasm. Has no effect on Java 8, where a lookup can't define classes.
+	 * @param lookup Must have private access to the package of the type, or be able to get it with privateLookupIn.
+	 * @throws IllegalArgumentException if the lookup doesn't have private access to the package. */
+	void addLookup (Class type, Lookup lookup) {
+		if (lookupDefineClassMethod == null) return;
+		Class lookupClass = lookup.lookupClass();
+		if (lookupClass.getClassLoader() != type.getClassLoader() || !getPackageName(lookupClass).equals(getPackageName(type))) {
+			try {
+				lookup = (Lookup)privateLookupInMethod.invoke(null, type, lookup);
+			} catch (InvocationTargetException ex) {
+				throw new IllegalArgumentException("The lookup can't access the package of the type: " + type.getName(), ex.getCause());
+			} catch (Exception ex) {
+				throw new RuntimeException(ex);
+			}
 		}
-		return defineClass(name, bytes, 0, bytes.length, getClass().getProtectionDomain());
+		if ((lookup.lookupModes() & Lookup.PRIVATE) == 0)
+			throw new IllegalArgumentException("The lookup must have private access: " + lookup);
+		packageLookups.put(getPackageName(type), lookup);
+	}
+
+	/** Returns true if the parent class loader sees the same reflectasm classes as this loader, so access classes defined in the
+	 * parent loader or its packages can extend them. */
+	private boolean isReflectASMVisible () {
+		if (reflectASMVisible == null) {
+			boolean visible;
+			try {
+				visible = Class.forName(FieldAccess.class.getName(), false, getParent()) == FieldAccess.class;
+			} catch (Throwable ignored) {
+				visible = false;
+			}
+			reflectASMVisible = visible;
+		}
+		return reflectASMVisible;
+	}
+
+	static String getPackageName (Class type) {
+		String name = type.getName();
+		int index = name.lastIndexOf('.');
+		return index == -1 ? "" : name.substring(0, index);
+	}
+
+	/** Appends each dot separated segment of the name prefixed with '$' and its length, for use in an access class name.
+	 * Different names never give the same result, which isn't true when only the dots are replaced. */
+	static StringBuilder appendName (StringBuilder buffer, String name) {
+		for (int start = 0, n = name.length(); start <= n;) {
+			int end = name.indexOf('.', start);
+			if (end == -1) end = n;
+			buffer.append('$').append(end - start).append('$').append(name, start, end);
+			start = end + 1;
+		}
+		return buffer;
+	}
+
+	/** Returns true if bytecode in the access class generated for the type can reference a member with the specified declaring
+	 * class and modifiers, without an IllegalAccessError. */
+	boolean isAccessible (Class type, Class declaringClass, int modifiers) {
+		if (Modifier.isPrivate(modifiers)) return false;
+		boolean packageAccess = !type.getName().startsWith("java.")
+			&& getStrategy(type, true) != DefinitionStrategy.ACCESS_LOADER && isSameRuntimePackage(type, declaringClass);
+		if (!Modifier.isPublic(declaringClass.getModifiers()) && !packageAccess) return false;
+		return Modifier.isPublic(modifiers) || packageAccess;
+	}
+
+	static private boolean isSameRuntimePackage (Class type1, Class type2) {
+		if (type1.getClassLoader() != type2.getClassLoader()) return false;
+		String name1 = type1.getName(), name2 = type2.getName();
+		int index = name1.lastIndexOf('.');
+		return index == name2.lastIndexOf('.') && name1.regionMatches(0, name2, 0, Math.max(index, 0));
 	}
 
 	// As per JLS, section 5.3,
@@ -95,6 +453,13 @@ class AccessClassLoader extends ClassLoader {
 		return loader1 == loader2;
 	}
 
+	/** Returns true if the type is loaded by the bootstrap or platform class loader. Such types are never unloaded and are the
+	 * same class for every application class loader, so their access objects can be created once and shared. */
+	static boolean isShared (Class type) {
+		ClassLoader loader = type.getClassLoader();
+		return loader == null || loader == platformClassLoader;
+	}
+
 	static private ClassLoader getParentClassLoader (Class type) {
 		ClassLoader parent = type.getClassLoader();
 		if (parent == null) parent = ClassLoader.getSystemClassLoader();
@@ -130,36 +495,149 @@ class AccessClassLoader extends ClassLoader {
 			return selfContextAccessClassLoader;
 		}
 		// 2. normal search:
-		synchronized (accessClassLoaders) {
-			WeakReference<AccessClassLoader> ref = accessClassLoaders.get(parent);
-			if (ref != null) {
-				AccessClassLoader accessClassLoader = ref.get();
-				if (accessClassLoader != null)
-					return accessClassLoader;
-				else
-					accessClassLoaders.remove(parent); // the value has been GC-reclaimed, but still not the key (defensive sanity)
-			}
-			AccessClassLoader accessClassLoader = new AccessClassLoader(parent);
-			accessClassLoaders.put(parent, new WeakReference<AccessClassLoader>(accessClassLoader));
-			return accessClassLoader;
+		WeakReference<AccessClassLoader> ref = accessClassLoaders.get(new LoaderKey(parent, null));
+		if (ref != null) {
+			AccessClassLoader accessClassLoader = ref.get();
+			if (accessClassLoader != null) return keep(type, accessClassLoader);
+		}
+		// 3. add a new AccessClassLoader, unless another thread adds one first:
+		removeCollectedLoaders();
+		AccessClassLoader accessClassLoader = new AccessClassLoader(parent);
+		WeakReference<AccessClassLoader> newRef = new WeakReference(accessClassLoader);
+		LoaderKey key = new LoaderKey(parent, collectedLoaders);
+		while (true) {
+			ref = accessClassLoaders.putIfAbsent(key, newRef);
+			if (ref == null) return keep(type, accessClassLoader);
+			AccessClassLoader existing = ref.get();
+			if (existing != null) return keep(type, existing);
+			// The value has been GC-reclaimed, but still not the key.
+			if (accessClassLoaders.replace(key, ref, newRef)) return keep(type, accessClassLoader);
 		}
 	}
 
+	/** Keeps the AccessClassLoader as long as the type, if that doesn't keep reflectasm from being unloaded. */
+	static private AccessClassLoader keep (Class type, AccessClassLoader accessClassLoader) {
+		if (accessClassLoader.getParent() == type.getClassLoader() && accessClassLoader.isReflectASMVisible()) {
+			AtomicReference<AccessClassLoader> ref = typeLoaders.get(type);
+			if (ref.get() != accessClassLoader) ref.set(accessClassLoader);
+		}
+		return accessClassLoader;
+	}
+
+	static private void removeCollectedLoaders () {
+		Reference key;
+		while ((key = collectedLoaders.poll()) != null)
+			accessClassLoaders.remove(key);
+	}
+
 	static public void remove (ClassLoader parent) {
 		// 1. fast-path:
 		if (selfContextParentClassLoader.equals(parent)) {
 			selfContextAccessClassLoader = null;
 		} else {
 			// 2. normal search:
-			synchronized (accessClassLoaders) {
-				accessClassLoaders.remove(parent);
+			WeakReference<AccessClassLoader> ref = accessClassLoaders.remove(new LoaderKey(parent, null));
+			AccessClassLoader accessClassLoader = ref == null ? null : ref.get();
+			if (accessClassLoader != null) {
+				// It may still be kept by its types, so drop its hidden access classes.
+				accessClassLoader.hiddenClasses.clear();
+				accessClassLoader.cacheLock.lock();
+				try {
+					accessClassLoader.trimCache(0);
+				} finally {
+					accessClassLoader.cacheLock.unlock();
+				}
+			}
+		}
+	}
+
+	/** Returns the AccessClassLoaders that have not been collected. */
+	static private ArrayList<AccessClassLoader> getAccessClassLoaders () {
+		ArrayList<AccessClassLoader> loaders = new ArrayList();
+		AccessClassLoader selfContext = selfContextAccessClassLoader;
+		if (selfContext != null) loaders.add(selfContext);
+		for (WeakReference<AccessClassLoader> ref : accessClassLoaders.values()) {
+			AccessClassLoader loader = ref.get();
+			if (loader != null) loaders.add(loader);
+		}
+		return loaders;
+	}
+
+	static void setMaxCachedClasses (int max) {
+		if (max < 0) throw new IllegalArgumentException("max must be >= 0: " + max);
+		maxCachedClasses = max;
+		for (AccessClassLoader loader : getAccessClassLoaders()) {
+			loader.cacheLock.lock();
+			try {
+				loader.trimCache(max);
+			} finally {
+				loader.cacheLock.unlock();
 			}
 		}
 	}
 
+	static int getMaxCachedClasses () {
+		return maxCachedClasses;
+	}
+
+	static int getCachedClasses () {
+		int count = 0;
+		for (AccessClassLoader loader : getAccessClassLoaders()) {
+			loader.cacheLock.lock();
+			try {
+				count += loader.cachedClasses.size();
+			} finally {
+				loader.cacheLock.unlock();
+			}
+		}
+		return count;
+	}
+
+	static long getDefinedClasses () {
+		return definedClasses.sum();
+	}
+
+	static long getDefinedBytes () {
+		return definedBytes.sum();
+	}
+
 	static public int activeAccessClassLoaders () {
+		removeCollectedLoaders();
 		int sz = accessClassLoaders.size();
 		if (selfContextAccessClassLoader != null) sz++;
 		return sz;
 	}
+
+	/** Weakly references a class loader and compares it by identity, like the keys of a WeakHashMap. The hash code is kept so
+	 * the entry can be removed after the class loader is collected. */
+	static private final class LoaderKey extends WeakReference<ClassLoader> {
+		private final int hashCode;
+
+		LoaderKey (ClassLoader loader, ReferenceQueue<ClassLoader> queue) {
+			super(loader, queue);
+			hashCode = System.identityHashCode(loader);
+		}
+
+		public int hashCode () {
+			return hashCode;
+		}
+
+		public boolean equals (Object object) {
+			if (object == this) return true;
+			if (!(object instanceof LoaderKey)) return false;
+			ClassLoader loader = get();
+			return loader != null && loader == ((LoaderKey)object).get();
+		}
+	}
+
+	static private final class HiddenClass extends WeakReference<Class> {
+		final String name;
+		final Class type;
+
+		HiddenClass (String name, Class accessClass, Class type, ReferenceQueue<Class> queue) {
+			super(accessClass, queue);
+			this.name = name;
+			this.type = type;
+		}
+	}
 }
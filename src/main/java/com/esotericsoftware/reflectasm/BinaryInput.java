@@ -0,0 +1,265 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/** Reads the values written by {@link BinaryOutput} from a byte array, an InputStream or a ByteBuffer, using a reusable buffer.
+ * I/O errors and reading past the end of the input are thrown as {@link UncheckedIOException}. */
+public class BinaryInput {
+	private byte[] buffer;
+	private int position, limit;
+	private InputStream inputStream;
+	private ByteBuffer byteBuffer;
+	private char[] chars = new char[32];
+
+	public BinaryInput (byte[] bytes) {
+		setBytes(bytes, 0, bytes.length);
+	}
+
+	public BinaryInput (InputStream inputStream) {
+		this(inputStream, 4096);
+	}
+
+	public BinaryInput (InputStream inputStream, int bufferSize) {
+		buffer = new byte[bufferSize];
+		this.inputStream = inputStream;
+	}
+
+	/** @param byteBuffer Bytes are read from the buffer's position to its limit. They are copied ahead into the reusable buffer
+	 *           in chunks of up to 4096 bytes, so the buffer's position can be past the last value read, up to its limit. Values
+	 *           after that must be read with this BinaryInput, not from the buffer. */
+	public BinaryInput (ByteBuffer byteBuffer) {
+		buffer = new byte[4096];
+		this.byteBuffer = byteBuffer;
+	}
+
+	/** Reads from the specified bytes, discarding any buffered bytes. The array is used directly, not copied. */
+	public void setBytes (byte[] bytes, int offset, int count) {
+		buffer = bytes;
+		position = offset;
+		limit = offset + count;
+		inputStream = null;
+		byteBuffer = null;
+	}
+
+	/** Reads from the specified stream, discarding any buffered bytes. */
+	public void setInputStream (InputStream inputStream) {
+		if (inputStream != null && this.inputStream == null && byteBuffer == null) buffer = new byte[4096];
+		this.inputStream = inputStream;
+		byteBuffer = null;
+		position = 0;
+		limit = 0;
+	}
+
+	/** Reads from the specified buffer, discarding any buffered bytes.
+	 * @see #BinaryInput(ByteBuffer) */
+	public void setByteBuffer (ByteBuffer byteBuffer) {
+		if (byteBuffer != null && inputStream == null && this.byteBuffer == null) buffer = new byte[4096];
+		this.byteBuffer = byteBuffer;
+		inputStream = null;
+		position = 0;
+		limit = 0;
+	}
+
+	/** Returns true if no more bytes can be read. */
+	public boolean isEnd () {
+		return position == limit && fill() == 0;
+	}
+
+	/** Reads more bytes into the buffer after the unread bytes.
+	 * @return The number of bytes read, 0 at the end of the input. */
+	private int fill () {
+		if (inputStream == null && byteBuffer == null) return 0;
+		if (position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			limit -= position;
+			position = 0;
+		}
+		int count;
+		if (inputStream != null) {
+			try {
+				count = inputStream.read(buffer, limit, buffer.length - limit);
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+			if (count == -1) return 0;
+		} else {
+			count = Math.min(byteBuffer.remaining(), buffer.length - limit);
+			byteBuffer.get(buffer, limit, count);
+		}
+		limit += count;
+		return count;
+	}
+
+	/** Ensures the buffer has at least the specified number of unread bytes, which must not exceed the buffer size. */
+	private void require (int count) {
+		while (limit - position < count)
+			if (fill() == 0) throw new UncheckedIOException(new EOFException());
+	}
+
+	/** Returns true if the buffer has the specified number of unread bytes, reading more if possible. */
+	private boolean available (int count) {
+		while (limit - position < count)
+			if (fill() == 0) return false;
+		return true;
+	}
+
+	public boolean readBoolean () {
+		require(1);
+		return buffer[position++] == 1;
+	}
+
+	public byte readByte () {
+		require(1);
+		return buffer[position++];
+	}
+
+	public short readShort () {
+		require(2);
+		byte[] buffer = this.buffer;
+		return (short)(((buffer[position++] & 0xFF) << 8) | (buffer[position++] & 0xFF));
+	}
+
+	public char readChar () {
+		return (char)readVarInt();
+	}
+
+	public int readInt () {
+		int value = readVarInt();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	public long readLong () {
+		long value = readVarLong();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	public float readFloat () {
+		return Float.intBitsToFloat(readFixedInt());
+	}
+
+	public double readDouble () {
+		return Double.longBitsToDouble(readFixedLong());
+	}
+
+	public int readVarInt () {
+		if (available(5)) {
+			// Fast path, no bounds checks per byte.
+			byte[] buffer = this.buffer;
+			int b = buffer[position++];
+			int value = b & 0x7F;
+			if (b < 0) {
+				b = buffer[position++];
+				value |= (b & 0x7F) << 7;
+				if (b < 0) {
+					b = buffer[position++];
+					value |= (b & 0x7F) << 14;
+					if (b < 0) {
+						b = buffer[position++];
+						value |= (b & 0x7F) << 21;
+						if (b < 0) value |= (buffer[position++] & 0x7F) << 28;
+					}
+				}
+			}
+			return value;
+		}
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = readByte();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) break;
+		}
+		return value;
+	}
+
+	public long readVarLong () {
+		long value = 0;
+		for (int shift = 0; shift < 70; shift += 7) {
+			int b = readByte();
+			value |= (long)(b & 0x7F) << shift;
+			if (b >= 0) break;
+		}
+		return value;
+	}
+
+	public int readFixedInt () {
+		require(4);
+		byte[] buffer = this.buffer;
+		return (buffer[position++] & 0xFF) << 24 | (buffer[position++] & 0xFF) << 16 | (buffer[position++] & 0xFF) << 8
+			| (buffer[position++] & 0xFF);
+	}
+
+	public long readFixedLong () {
+		return (long)readFixedInt() << 32 | (readFixedInt() & 0xFFFFFFFFL);
+	}
+
+	public void readBytes (byte[] bytes, int offset, int count) {
+		while (count > 0) {
+			require(1);
+			int copy = Math.min(count, limit - position);
+			System.arraycopy(buffer, position, bytes, offset, copy);
+			position += copy;
+			offset += copy;
+			count -= copy;
+		}
+	}
+
+	/** Reads a string written by {@link BinaryOutput#writeString(String)}, which may be null. */
+	public String readString () {
+		int byteCount = readVarInt();
+		if (byteCount == 0) return null;
+		byteCount--;
+		char[] chars = this.chars;
+		if (chars.length < byteCount) this.chars = chars = new char[byteCount];
+		int charCount = 0;
+		while (byteCount > 0) {
+			require(1);
+			byte[] buffer = this.buffer;
+			int b = buffer[position];
+			if (b >= 0) {
+				// Copy a run of ASCII characters from the buffer without further checks.
+				int end = Math.min(limit, position + byteCount);
+				int start = position;
+				while (position < end && buffer[position] >= 0)
+					chars[charCount++] = (char)buffer[position++];
+				byteCount -= position - start;
+				continue;
+			}
+			position++;
+			switch ((b & 0xFF) >> 4) {
+			case 12:
+			case 13:
+				chars[charCount++] = (char)((b & 0x1F) << 6 | readByte() & 0x3F);
+				byteCount -= 2;
+				break;
+			case 14:
+				chars[charCount++] = (char)((b & 0x0F) << 12 | (readByte() & 0x3F) << 6 | readByte() & 0x3F);
+				byteCount -= 3;
+				break;
+			default:
+				int codePoint = (b & 0x07) << 18 | (readByte() & 0x3F) << 12 | (readByte() & 0x3F) << 6 | readByte() & 0x3F;
+				chars[charCount++] = Character.highSurrogate(codePoint);
+				chars[charCount++] = Character.lowSurrogate(codePoint);
+				byteCount -= 4;
+			}
+		}
+		return new String(chars, 0, charCount);
+	}
+}
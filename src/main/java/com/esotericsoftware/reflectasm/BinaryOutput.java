@@ -0,0 +1,268 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/** Writes primitive values and strings to a reusable byte buffer, which is flushed to an OutputStream or ByteBuffer when full or
+ * when {@link #flush()} is called. Without a target, the buffer grows as needed and the bytes are retrieved with
+ * {@link #toBytes()}.
+ * <p>
+ * ints, longs and chars are written as variable length integers, with zigzag encoding for ints and longs so small negative values
+ * are also short. floats and doubles are written as their raw IEEE 754 bits. Strings are written as UTF-8, prefixed with the byte
+ * length plus one, so null is a single zero byte. I/O errors are thrown as {@link UncheckedIOException}. */
+public class BinaryOutput {
+	private byte[] buffer;
+	private int position;
+	private OutputStream outputStream;
+	private ByteBuffer byteBuffer;
+
+	/** Creates an output that grows its buffer as needed. */
+	public BinaryOutput () {
+		buffer = new byte[256];
+	}
+
+	public BinaryOutput (OutputStream outputStream) {
+		this(outputStream, 4096);
+	}
+
+	public BinaryOutput (OutputStream outputStream, int bufferSize) {
+		buffer = new byte[bufferSize];
+		this.outputStream = outputStream;
+	}
+
+	/** @param byteBuffer Bytes are written to the buffer when this output is flushed. */
+	public BinaryOutput (ByteBuffer byteBuffer) {
+		buffer = new byte[4096];
+		this.byteBuffer = byteBuffer;
+	}
+
+	/** Sets a new target stream and discards any unflushed bytes, so the buffer can be reused. */
+	public void setOutputStream (OutputStream outputStream) {
+		this.outputStream = outputStream;
+		byteBuffer = null;
+		position = 0;
+	}
+
+	/** Sets a new target buffer and discards any unflushed bytes, so the buffer can be reused. */
+	public void setByteBuffer (ByteBuffer byteBuffer) {
+		this.byteBuffer = byteBuffer;
+		outputStream = null;
+		position = 0;
+	}
+
+	/** Discards any unflushed bytes. */
+	public void reset () {
+		position = 0;
+	}
+
+	/** Returns the number of bytes in the buffer that have not been flushed. */
+	public int position () {
+		return position;
+	}
+
+	/** Returns the internal buffer. The bytes that have not been flushed are from 0 to {@link #position()}. The buffer is replaced
+	 * when it grows. */
+	public byte[] getBuffer () {
+		return buffer;
+	}
+
+	/** Returns a copy of the bytes that have not been flushed. */
+	public byte[] toBytes () {
+		return Arrays.copyOf(buffer, position);
+	}
+
+	/** Writes the buffered bytes to the target stream or buffer. Does nothing if there is no target.
+	 * @throws java.nio.BufferOverflowException if the target ByteBuffer doesn't have enough space. */
+	public void flush () {
+		if (outputStream != null) {
+			try {
+				outputStream.write(buffer, 0, position);
+				outputStream.flush();
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+			position = 0;
+		} else if (byteBuffer != null) {
+			byteBuffer.put(buffer, 0, position);
+			position = 0;
+		}
+	}
+
+	/** Ensures there is space in the buffer for the specified number of bytes, flushing or growing it if needed. */
+	private void require (int count) {
+		if (buffer.length - position >= count) return;
+		if (outputStream != null) {
+			try {
+				outputStream.write(buffer, 0, position);
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+			position = 0;
+		} else if (byteBuffer != null) {
+			byteBuffer.put(buffer, 0, position);
+			position = 0;
+		}
+		if (buffer.length - position < count) buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + count));
+	}
+
+	public void writeBoolean (boolean value) {
+		require(1);
+		buffer[position++] = (byte)(value ? 1 : 0);
+	}
+
+	public void writeByte (byte value) {
+		require(1);
+		buffer[position++] = value;
+	}
+
+	public void writeShort (short value) {
+		require(2);
+		byte[] buffer = this.buffer;
+		buffer[position++] = (byte)(value >>> 8);
+		buffer[position++] = (byte)value;
+	}
+
+	public void writeChar (char value) {
+		writeVarInt(value);
+	}
+
+	/** Writes a zigzag encoded variable length int, 1 to 5 bytes. */
+	public void writeInt (int value) {
+		writeVarInt((value << 1) ^ (value >> 31));
+	}
+
+	/** Writes a zigzag encoded variable length long, 1 to 10 bytes. */
+	public void writeLong (long value) {
+		writeVarLong((value << 1) ^ (value >> 63));
+	}
+
+	public void writeFloat (float value) {
+		writeFixedInt(Float.floatToRawIntBits(value));
+	}
+
+	public void writeDouble (double value) {
+		writeFixedLong(Double.doubleToRawLongBits(value));
+	}
+
+	/** Writes an unsigned variable length int, 1 to 5 bytes. Negative values use 5 bytes. */
+	public void writeVarInt (int value) {
+		require(5);
+		byte[] buffer = this.buffer;
+		while ((value & ~0x7F) != 0) {
+			buffer[position++] = (byte)((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[position++] = (byte)value;
+	}
+
+	/** Writes an unsigned variable length long, 1 to 10 bytes. Negative values use 10 bytes. */
+	public void writeVarLong (long value) {
+		require(10);
+		byte[] buffer = this.buffer;
+		while ((value & ~0x7FL) != 0) {
+			buffer[position++] = (byte)((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[position++] = (byte)value;
+	}
+
+	/** Writes a big endian int, 4 bytes. */
+	public void writeFixedInt (int value) {
+		require(4);
+		byte[] buffer = this.buffer;
+		buffer[position++] = (byte)(value >>> 24);
+		buffer[position++] = (byte)(value >>> 16);
+		buffer[position++] = (byte)(value >>> 8);
+		buffer[position++] = (byte)value;
+	}
+
+	/** Writes a big endian long, 8 bytes. */
+	public void writeFixedLong (long value) {
+		writeFixedInt((int)(value >>> 32));
+		writeFixedInt((int)value);
+	}
+
+	public void writeBytes (byte[] bytes, int offset, int count) {
+		while (count > 0) {
+			require(1);
+			int copy = Math.min(count, buffer.length - position);
+			System.arraycopy(bytes, offset, buffer, position, copy);
+			position += copy;
+			offset += copy;
+			count -= copy;
+		}
+	}
+
+	/** Writes the string as UTF-8 prefixed by its byte length plus one. The string may be null. */
+	public void writeString (String value) {
+		if (value == null) {
+			writeVarInt(0);
+			return;
+		}
+		int charCount = value.length(), byteCount = 0;
+		for (int i = 0; i < charCount; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80)
+				byteCount++;
+			else if (c < 0x800)
+				byteCount += 2;
+			else if (Character.isHighSurrogate(c) && i + 1 < charCount && Character.isLowSurrogate(value.charAt(i + 1))) {
+				byteCount += 4;
+				i++;
+			} else
+				byteCount += 3;
+		}
+		writeVarInt(byteCount + 1);
+		if (byteCount == charCount) { // ASCII.
+			int i = 0;
+			while (i < charCount) {
+				require(1);
+				byte[] buffer = this.buffer;
+				int position = this.position;
+				int end = Math.min(charCount, i + buffer.length - position);
+				while (i < end)
+					buffer[position++] = (byte)value.charAt(i++);
+				this.position = position;
+			}
+			return;
+		}
+		for (int i = 0; i < charCount; i++) {
+			require(4);
+			byte[] buffer = this.buffer;
+			char c = value.charAt(i);
+			if (c < 0x80)
+				buffer[position++] = (byte)c;
+			else if (c < 0x800) {
+				buffer[position++] = (byte)(0xC0 | (c >> 6));
+				buffer[position++] = (byte)(0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < charCount && Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				buffer[position++] = (byte)(0xF0 | (codePoint >> 18));
+				buffer[position++] = (byte)(0x80 | ((codePoint >> 12) & 0x3F));
+				buffer[position++] = (byte)(0x80 | ((codePoint >> 6) & 0x3F));
+				buffer[position++] = (byte)(0x80 | (codePoint & 0x3F));
+			} else {
+				buffer[position++] = (byte)(0xE0 | (c >> 12));
+				buffer[position++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+				buffer[position++] = (byte)(0x80 | (c & 0x3F));
+			}
+		}
+	}
+}
@@ -0,0 +1,439 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** Writes object graphs to a {@link BinaryOutput} and reads them from a {@link BinaryInput}, using a generated
+ * {@link SerializerAccess} for each class. Objects are created with {@link ConstructorAccess}.
+ * <p>
+ * Each reference is written as a marker (null or not null, or with {@link #setReferences(boolean) references} enabled, a back
+ * reference to an object already written), followed by the class name when the declared type of the value is not final, then
+ * the value. Class names are written once per call and later referenced by ID. Primitive values, strings, enums, arrays, JDK
+ * collections and maps and classes that have a generated SerializerAccess are supported. Sorted collections and maps must use
+ * natural ordering.
+ * <p>
+ * By default, a class name read from the input is only accepted if the class was {@link #register(Class) registered}, so reading
+ * untrusted bytes can't load or create instances of arbitrary classes. String, the primitive wrappers and the common JDK
+ * collections and maps are registered by default. Enums and classes with a SerializerAccess must be registered. Arrays are
+ * accepted if their element type is a primitive or registered. Writing doesn't check registration.
+ * <p>
+ * This class is not thread safe, use one instance per thread. */
+public class BinarySerializer {
+	static private final int NULL = 0, NOT_NULL = 1;
+
+	private final HashMap<Class, SerializerAccess> accessCache = new HashMap();
+	private final HashMap<Class, ConstructorAccess> collectionConstructors = new HashMap();
+	private final HashMap<String, Class> registeredClasses = new HashMap();
+	private boolean references, registrationRequired = true;
+	private ClassLoader classLoader = getClass().getClassLoader();
+
+	private final IdentityHashMap<Object, Integer> writtenObjects = new IdentityHashMap();
+	private final ArrayList readObjects = new ArrayList();
+	private final HashMap<Class, Integer> writtenClasses = new HashMap();
+	private final ArrayList<Class> readClasses = new ArrayList();
+	private int depth;
+
+	public BinarySerializer () {
+		register(String.class);
+		register(Boolean.class);
+		register(Byte.class);
+		register(Character.class);
+		register(Short.class);
+		register(Integer.class);
+		register(Long.class);
+		register(Float.class);
+		register(Double.class);
+		register(ArrayList.class);
+		register(LinkedList.class);
+		register(ArrayDeque.class);
+		register(HashSet.class);
+		register(LinkedHashSet.class);
+		register(TreeSet.class);
+		register(HashMap.class);
+		register(LinkedHashMap.class);
+		register(TreeMap.class);
+	}
+
+	/** If true, each object is written only once and later references to it are written as a back reference, which allows graphs
+	 * with cycles. Both sides must use the same setting. Default is false. */
+	public void setReferences (boolean references) {
+		this.references = references;
+	}
+
+	/** Allows the class to be read when its name is in the input. */
+	public void register (Class type) {
+		if (type.isArray() || type.isPrimitive())
+			throw new IllegalArgumentException("The type must not be an array or a primitive type: " + type.getName());
+		registeredClasses.put(type.getName(), type);
+	}
+
+	/** If false, any class named in the input is loaded with the {@link #setClassLoader(ClassLoader) class loader}. This must
+	 * only be used when the input is trusted. Default is true. */
+	public void setRegistrationRequired (boolean registrationRequired) {
+		this.registrationRequired = registrationRequired;
+	}
+
+	/** Sets the class loader used to find classes by name when reading, if registration is not required. Default is the class
+	 * loader that loaded this class. */
+	public void setClassLoader (ClassLoader classLoader) {
+		this.classLoader = classLoader;
+	}
+
+	/** Writes the object and its class, so it can be read with {@link #readObject(BinaryInput)}. The output is not flushed. */
+	public void writeObject (BinaryOutput output, Object object) {
+		writeObject(output, object, Object.class);
+	}
+
+	/** Writes the object. The class is only written if it can't be determined from the type.
+	 * @param type The type that will be passed to {@link #readObject(BinaryInput, Class)}. */
+	public void writeObject (BinaryOutput output, Object object, Class type) {
+		depth++;
+		try {
+			writeValue(output, object, type);
+		} finally {
+			if (--depth == 0) {
+				writtenObjects.clear();
+				writtenClasses.clear();
+			}
+		}
+	}
+
+	public Object readObject (BinaryInput input) {
+		return readObject(input, Object.class);
+	}
+
+	public <T> T readObject (BinaryInput input, Class<T> type) {
+		depth++;
+		try {
+			return (T)readValue(input, type);
+		} finally {
+			if (--depth == 0) {
+				readObjects.clear();
+				readClasses.clear();
+			}
+		}
+	}
+
+	/** Writes a value. This is called by the generated {@link SerializerAccess} classes for each field that isn't a primitive or
+	 * String.
+	 * @param type The declared type of the value. */
+	public void writeValue (BinaryOutput output, Object value, Class type) {
+		if (type.isPrimitive()) {
+			writePrimitive(output, value, type);
+			return;
+		}
+		if (type == String.class) {
+			output.writeString((String)value);
+			return;
+		}
+		if (value == null) {
+			output.writeVarInt(NULL);
+			return;
+		}
+		if (references) {
+			Integer id = writtenObjects.get(value);
+			if (id != null) {
+				output.writeVarInt(id + 2);
+				return;
+			}
+			writtenObjects.put(value, writtenObjects.size());
+		}
+		output.writeVarInt(NOT_NULL);
+
+		Class valueType = value.getClass();
+		if (!isFinal(type)) {
+			if (!valueType.isEnum() && valueType.getSuperclass() != null && valueType.getSuperclass().isEnum())
+				valueType = valueType.getSuperclass(); // Enum constant with a body.
+			writeClass(output, valueType);
+		}
+
+		if (valueType == String.class)
+			output.writeString((String)value);
+		else if (value instanceof Enum)
+			output.writeVarInt(((Enum)value).ordinal());
+		else if (valueType.isArray())
+			writeArray(output, value, valueType.getComponentType());
+		else if (isWrapper(valueType))
+			writePrimitive(output, value, MapperAccess.unwrap(valueType));
+		else if (value instanceof Collection) {
+			if (value instanceof SortedSet && ((SortedSet)value).comparator() != null)
+				throw new IllegalArgumentException("Unable to serialize sorted set with a comparator: " + valueType.getName());
+			Collection collection = (Collection)value;
+			output.writeVarInt(collection.size());
+			for (Object element : collection)
+				writeValue(output, element, Object.class);
+		} else if (value instanceof Map) {
+			if (value instanceof SortedMap && ((SortedMap)value).comparator() != null)
+				throw new IllegalArgumentException("Unable to serialize sorted map with a comparator: " + valueType.getName());
+			Map<Object, Object> map = (Map)value;
+			output.writeVarInt(map.size());
+			for (Entry entry : map.entrySet()) {
+				writeValue(output, entry.getKey(), Object.class);
+				writeValue(output, entry.getValue(), Object.class);
+			}
+		} else
+			getSerializerAccess(valueType).write(value, output, this);
+	}
+
+	/** Reads a value written by {@link #writeValue(BinaryOutput, Object, Class)}. This is called by the generated
+	 * {@link SerializerAccess} classes for each field that isn't a primitive or String.
+	 * @param type The declared type of the value. */
+	public Object readValue (BinaryInput input, Class type) {
+		if (type.isPrimitive()) return readPrimitive(input, type);
+		if (type == String.class) return input.readString();
+		int marker = input.readVarInt();
+		if (marker == NULL) return null;
+		if (marker != NOT_NULL) return readObjects.get(marker - 2);
+		int id = -1;
+		if (references) {
+			id = readObjects.size();
+			readObjects.add(null);
+		}
+
+		Class valueType = isFinal(type) ? type : readClass(input);
+		Object value;
+		if (valueType == String.class)
+			value = input.readString();
+		else if (valueType.isEnum())
+			value = valueType.getEnumConstants()[input.readVarInt()];
+		else if (valueType.isArray()) {
+			Class componentType = valueType.getComponentType();
+			int length = input.readVarInt();
+			value = Array.newInstance(componentType, length);
+			if (id != -1) readObjects.set(id, value);
+			readArray(input, value, componentType, length);
+		} else if (isWrapper(valueType))
+			value = readPrimitive(input, MapperAccess.unwrap(valueType));
+		else if (Collection.class.isAssignableFrom(valueType)) {
+			Collection collection = (Collection)newCollection(valueType);
+			if (id != -1) readObjects.set(id, collection);
+			for (int i = 0, n = input.readVarInt(); i < n; i++)
+				collection.add(readValue(input, Object.class));
+			value = collection;
+		} else if (Map.class.isAssignableFrom(valueType)) {
+			Map map = (Map)newCollection(valueType);
+			if (id != -1) readObjects.set(id, map);
+			for (int i = 0, n = input.readVarInt(); i < n; i++)
+				map.put(readValue(input, Object.class), readValue(input, Object.class));
+			value = map;
+		} else {
+			SerializerAccess access = getSerializerAccess(valueType);
+			value = access.newInstance();
+			if (id != -1) readObjects.set(id, value);
+			access.read(value, input, this);
+		}
+		if (id != -1) readObjects.set(id, value);
+		return value;
+	}
+
+	/** Returns true if values of the type are always instances of exactly the type, so the class doesn't need to be written. */
+	static private boolean isFinal (Class type) {
+		if (type.isArray()) {
+			Class componentType = type.getComponentType();
+			return componentType.isPrimitive() || isFinal(componentType);
+		}
+		return Modifier.isFinal(type.getModifiers()) || type.isEnum();
+	}
+
+	static private boolean isWrapper (Class type) {
+		return type != MapperAccess.unwrap(type);
+	}
+
+	private void writeClass (BinaryOutput output, Class type) {
+		Integer id = writtenClasses.get(type);
+		if (id != null) {
+			output.writeVarInt(id + 1);
+			return;
+		}
+		writtenClasses.put(type, writtenClasses.size());
+		output.writeVarInt(0);
+		output.writeString(type.getName());
+	}
+
+	private Class readClass (BinaryInput input) {
+		int id = input.readVarInt();
+		if (id != 0) return readClasses.get(id - 1);
+		String name = input.readString();
+		Class type;
+		try {
+			type = registrationRequired ? getRegisteredClass(name) : Class.forName(name, false, classLoader);
+		} catch (ClassNotFoundException ex) {
+			throw new IllegalArgumentException("Unable to find class: " + name, ex);
+		}
+		readClasses.add(type);
+		return type;
+	}
+
+	/** Returns the registered class, or an array class whose element type is a primitive or registered. No other class is
+	 * loaded.
+	 * @throws IllegalArgumentException if the class is not registered. */
+	private Class getRegisteredClass (String name) throws ClassNotFoundException {
+		int dimensions = 0;
+		while (dimensions < name.length() && name.charAt(dimensions) == '[')
+			dimensions++;
+		if (dimensions == 0) {
+			Class type = registeredClasses.get(name);
+			if (type == null) throw new IllegalArgumentException("Class is not registered: " + name);
+			return type;
+		}
+		if (dimensions == name.length()) throw new ClassNotFoundException(name);
+		if (name.charAt(dimensions) != 'L') return Class.forName(name, false, null); // Primitive element type.
+		if (!name.endsWith(";")) throw new ClassNotFoundException(name);
+		Class elementType = getRegisteredClass(name.substring(dimensions + 1, name.length() - 1));
+		return Array.newInstance(elementType, new int[dimensions]).getClass();
+	}
+
+	private void writePrimitive (BinaryOutput output, Object value, Class type) {
+		if (type == int.class)
+			output.writeInt((Integer)value);
+		else if (type == long.class)
+			output.writeLong((Long)value);
+		else if (type == double.class)
+			output.writeDouble((Double)value);
+		else if (type == float.class)
+			output.writeFloat((Float)value);
+		else if (type == boolean.class)
+			output.writeBoolean((Boolean)value);
+		else if (type == byte.class)
+			output.writeByte((Byte)value);
+		else if (type == short.class)
+			output.writeShort((Short)value);
+		else
+			output.writeChar((Character)value);
+	}
+
+	private Object readPrimitive (BinaryInput input, Class type) {
+		if (type == int.class) return input.readInt();
+		if (type == long.class) return input.readLong();
+		if (type == double.class) return input.readDouble();
+		if (type == float.class) return input.readFloat();
+		if (type == boolean.class) return input.readBoolean();
+		if (type == byte.class) return input.readByte();
+		if (type == short.class) return input.readShort();
+		return input.readChar();
+	}
+
+	private void writeArray (BinaryOutput output, Object array, Class componentType) {
+		int length = Array.getLength(array);
+		output.writeVarInt(length);
+		if (componentType == byte.class)
+			output.writeBytes((byte[])array, 0, length);
+		else if (componentType == int.class) {
+			for (int value : (int[])array)
+				output.writeInt(value);
+		} else if (componentType == long.class) {
+			for (long value : (long[])array)
+				output.writeLong(value);
+		} else if (componentType == double.class) {
+			for (double value : (double[])array)
+				output.writeDouble(value);
+		} else if (componentType == float.class) {
+			for (float value : (float[])array)
+				output.writeFloat(value);
+		} else if (componentType == boolean.class) {
+			for (boolean value : (boolean[])array)
+				output.writeBoolean(value);
+		} else if (componentType == short.class) {
+			for (short value : (short[])array)
+				output.writeShort(value);
+		} else if (componentType == char.class) {
+			for (char value : (char[])array)
+				output.writeChar(value);
+		} else {
+			for (Object value : (Object[])array)
+				writeValue(output, value, componentType);
+		}
+	}
+
+	private void readArray (BinaryInput input, Object array, Class componentType, int length) {
+		if (componentType == byte.class)
+			input.readBytes((byte[])array, 0, length);
+		else if (componentType == int.class) {
+			int[] values = (int[])array;
+			for (int i = 0; i < length; i++)
+				values[i] = input.readInt();
+		} else if (componentType == long.class) {
+			long[] values = (long[])array;
+			for (int i = 0; i < length; i++)
+				values[i] = input.readLong();
+		} else if (componentType == double.class) {
+			double[] values = (double[])array;
+			for (int i = 0; i < length; i++)
+				values[i] = input.readDouble();
+		} else if (componentType == float.class) {
+			float[] values = (float[])array;
+			for (int i = 0; i < length; i++)
+				values[i] = input.readFloat();
+		} else if (componentType == boolean.class) {
+			boolean[] values = (boolean[])array;
+			for (int i = 0; i < length; i++)
+				values[i] = input.readBoolean();
+		} else if (componentType == short.class) {
+			short[] values = (short[])array;
+			for (int i = 0; i < length; i++)
+				values[i] = input.readShort();
+		} else if (componentType == char.class) {
+			char[] values = (char[])array;
+			for (int i = 0; i < length; i++)
+				values[i] = input.readChar();
+		} else {
+			Object[] values = (Object[])array;
+			for (int i = 0; i < length; i++)
+				values[i] = readValue(input, componentType);
+		}
+	}
+
+	private SerializerAccess getSerializerAccess (Class type) {
+		SerializerAccess access = accessCache.get(type);
+		if (access == null) {
+			if (type.getName().startsWith("java."))
+				throw new IllegalArgumentException("Unable to serialize JDK class: " + type.getName());
+			access = SerializerAccess.get(type);
+			accessCache.put(type, access);
+		}
+		return access;
+	}
+
+	private Object newCollection (Class type) {
+		ConstructorAccess access = collectionConstructors.get(type);
+		if (access == null) {
+			try {
+				access = ConstructorAccess.get(type);
+			} catch (RuntimeException ex) {
+				throw new IllegalArgumentException("Unable to deserialize collection or map (no public no-arg constructor): "
+					+ type.getName(), ex);
+			}
+			collectionConstructors.put(type, access);
+		}
+		return access.newInstance();
+	}
+}
@@ -0,0 +1,346 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import static org.objectweb.asm.Opcodes.*;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+/** Field, method and constructor access for a class, generated as a single access class. Fields are accessed with the
+ * {@link FieldAccess} methods, methods with {@link #invoke(Object, int, Object...)} and the no-arg constructor with
+ * {@link #newInstance()}. The members are scanned once and one class is defined, instead of one each for FieldAccess,
+ * MethodAccess and ConstructorAccess. Methods are invoked with a switch in the access class, so no lambda classes are created. */
+public abstract class ClassAccess extends FieldAccess {
+	private MemberMetadata methodMetadata;
+	// Copies of the shared metadata returned to users, made the first time they are asked for.
+	private String[] methodNames;
+	private Class[][] parameterTypes;
+	private Class[] returnTypes;
+	boolean isNonStaticMemberClass;
+
+	abstract public Object invoke (Object instance, int methodIndex, Object... args);
+
+	/** Invokes the method with the specified name and the specified param types. */
+	public Object invoke (Object instance, String methodName, Class[] paramTypes, Object... args) {
+		return invoke(instance, getMethodIndex(methodName, paramTypes), args);
+	}
+
+	/** Invokes the first method with the specified name and the specified number of arguments. */
+	public Object invoke (Object instance, String methodName, Object... args) {
+		return invoke(instance, getMethodIndex(methodName, args == null ? 0 : args.length), args);
+	}
+
+	/** Returns the index of the first method with the specified name. */
+	public int getMethodIndex (String methodName) {
+		int index = methodMetadata.indexOf(methodName);
+		if (index == -1) throw new IllegalArgumentException("Unable to find non-private method: " + methodName);
+		return index;
+	}
+
+	/** Returns the index of the first method with the specified name and param types. */
+	public int getMethodIndex (String methodName, Class... paramTypes) {
+		int index = methodMetadata.indexOf(methodName, paramTypes);
+		if (index == -1)
+			throw new IllegalArgumentException("Unable to find non-private method: " + methodName + " " + Arrays.toString(paramTypes));
+		return index;
+	}
+
+	/** Returns the index of the first method with the specified name and the specified number of arguments. */
+	public int getMethodIndex (String methodName, int paramsCount) {
+		int index = methodMetadata.indexOf(methodName, paramsCount);
+		if (index == -1) {
+			throw new IllegalArgumentException(
+				"Unable to find non-private method: " + methodName + " with " + paramsCount + " params.");
+		}
+		return index;
+	}
+
+	/** @see MethodAccess#getMethodNames() */
+	public String[] getMethodNames () {
+		String[] methodNames = this.methodNames;
+		if (methodNames == null) this.methodNames = methodNames = methodMetadata.names.clone();
+		return methodNames;
+	}
+
+	/** @see MethodAccess#getParameterTypes() */
+	public Class[][] getParameterTypes () {
+		Class[][] parameterTypes = this.parameterTypes;
+		if (parameterTypes != null) return parameterTypes;
+		parameterTypes = methodMetadata.getParameterTypes().clone();
+		for (int i = 0, n = parameterTypes.length; i < n; i++)
+			parameterTypes[i] = parameterTypes[i].clone();
+		this.parameterTypes = parameterTypes;
+		return parameterTypes;
+	}
+
+	/** @see MethodAccess#getReturnTypes() */
+	public Class[] getReturnTypes () {
+		Class[] returnTypes = this.returnTypes;
+		if (returnTypes == null) this.returnTypes = returnTypes = methodMetadata.getTypes().clone();
+		return returnTypes;
+	}
+
+	public int getMethodCount () {
+		return methodMetadata.size();
+	}
+
+	/** @see MethodAccess#getMethodName(int) */
+	public String getMethodName (int methodIndex) {
+		return methodMetadata.names[methodIndex];
+	}
+
+	/** @see MethodAccess#getParameterTypes(int) */
+	public Class[] getParameterTypes (int methodIndex) {
+		return methodMetadata.getParameterTypes()[methodIndex].clone();
+	}
+
+	/** @see MethodAccess#getReturnType(int) */
+	public Class getReturnType (int methodIndex) {
+		return methodMetadata.getTypes()[methodIndex];
+	}
+
+	public boolean isNonStaticMemberClass () {
+		return isNonStaticMemberClass;
+	}
+
+	/** Creates an instance with the no-arg constructor.
+	 * @throws UnsupportedOperationException if the class has no accessible no-arg constructor, or is an inner (non-static nested)
+	 *            class. */
+	abstract public Object newInstance ();
+
+	/** Creates an instance of an inner (non-static nested) class.
+	 * @see ConstructorAccess#newInstance(Object) */
+	abstract public Object newInstance (Object enclosingInstance);
+
+	/** Returns a ClassAccess whose access class is defined with the lookup.
+	 * @see FieldAccess#get(Class, MethodHandles.Lookup) */
+	static public ClassAccess get (Class type, MethodHandles.Lookup lookup) {
+		AccessClassLoader.get(type).addLookup(type, lookup);
+		return get(type);
+	}
+
+	/** @param type Must not be the Object class, an interface, a primitive type, or void. Unlike {@link ConstructorAccess}, a class
+	 *           without a no-arg constructor is allowed and {@link #newInstance()} throws instead. */
+	static public ClassAccess get (Class type) {
+		if (type.getSuperclass() == null)
+			throw new IllegalArgumentException("The type must not be the Object class, an interface, a primitive type, or void.");
+
+		Class enclosingType = type.getEnclosingClass();
+		boolean isNonStaticMemberClass = enclosingType != null && type.isMemberClass() && !Modifier.isStatic(type.getModifiers());
+
+		String className = type.getName();
+		String accessClassName = className + "ClassAccess";
+		if (accessClassName.startsWith("java.")) accessClassName = "reflectasm." + accessClassName;
+
+		Class accessClass;
+		MemberMetadata[] metadata;
+		ArrayList<MemberInfo> fields = null, methods = null;
+		AccessClassLoader loader = AccessClassLoader.get(type);
+		loader.lock(accessClassName);
+		try {
+			accessClass = loader.loadAccessClass(accessClassName);
+			if (accessClass == null) {
+				fields = MemberScanner.getFields(type);
+				methods = MemberScanner.getMethods(type);
+				String accessClassNameInternal = accessClassName.replace('.', '/');
+				String classNameInternal = className.replace('.', '/');
+
+				ClassWriter cw = new ClassWriter(0);
+				cw.visit(V1_6, ACC_PUBLIC + ACC_SUPER, accessClassNameInternal, null, "com/esotericsoftware/reflectasm/ClassAccess",
+					null);
+				insertConstructor(cw);
+				FieldAccess.insertMethods(cw, classNameInternal, loader, type, fields);
+				insertInvoke(cw, classNameInternal, methods);
+				if (isNonStaticMemberClass) {
+					insertThrowUnsupported(cw, "newInstance", "()Ljava/lang/Object;",
+						"Inner class requires an enclosing instance: " + className);
+					Constructor constructor = getConstructor(loader, type, enclosingType);
+					if (constructor != null)
+						ConstructorAccess.insertNewInstanceInner(cw, classNameInternal, enclosingType.getName().replace('.', '/'));
+					else {
+						insertThrowUnsupported(cw, "newInstance", "(Ljava/lang/Object;)Ljava/lang/Object;",
+							"Non-static member class cannot be created (missing or inaccessible enclosing class constructor): " + className);
+					}
+				} else {
+					if (getConstructor(loader, type) != null)
+						ConstructorAccess.insertNewInstance(cw, classNameInternal);
+					else {
+						insertThrowUnsupported(cw, "newInstance", "()Ljava/lang/Object;",
+							"Class cannot be created (missing or inaccessible no-arg constructor): " + className);
+					}
+					ConstructorAccess.insertNewInstanceInner(cw, classNameInternal, null);
+				}
+				cw.visitEnd();
+				accessClass = loader.defineAccessClass(type, accessClassName, cw.toByteArray());
+			}
+			metadata = MemberMetadata.get(accessClass);
+			if (metadata == null) {
+				if (fields == null) {
+					fields = MemberScanner.getFields(type);
+					methods = MemberScanner.getMethods(type);
+				}
+				metadata = MemberMetadata.put(accessClass, new MemberMetadata[] {new MemberMetadata(fields), new MemberMetadata(methods)});
+			}
+		} finally {
+			loader.unlock(accessClassName);
+		}
+		try {
+			ClassAccess access = (ClassAccess)accessClass.newInstance();
+			access.setFieldMetadata(metadata[0]);
+			access.methodMetadata = metadata[1];
+			access.isNonStaticMemberClass = isNonStaticMemberClass;
+			return access;
+		} catch (Throwable t) {
+			throw new RuntimeException("Error constructing class access class: " + accessClassName, t);
+		}
+	}
+
+	/** Returns the constructor with the parameter types if the access class can call it, else null. */
+	static private Constructor getConstructor (AccessClassLoader loader, Class type, Class... parameterTypes) {
+		if (Modifier.isAbstract(type.getModifiers())) return null;
+		try {
+			Constructor constructor = type.getDeclaredConstructor(parameterTypes);
+			return loader.isAccessible(type, type, constructor.getModifiers()) ? constructor : null;
+		} catch (NoSuchMethodException ex) {
+			return null;
+		}
+	}
+
+	static private void insertConstructor (ClassWriter cw) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, "com/esotericsoftware/reflectasm/ClassAccess", "<init>", "()V");
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(1, 1);
+		mv.visitEnd();
+	}
+
+	static private void insertInvoke (ClassWriter cw, String classNameInternal, ArrayList<MemberInfo> methods) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC + ACC_VARARGS, "invoke",
+			"(Ljava/lang/Object;I[Ljava/lang/Object;)Ljava/lang/Object;", null, null);
+		mv.visitCode();
+		int maxStack = 5;
+
+		if (!methods.isEmpty()) {
+			mv.visitVarInsn(ILOAD, 2);
+			Label[] labels = new Label[methods.size()];
+			for (int i = 0, n = labels.length; i < n; i++)
+				labels[i] = new Label();
+			Label defaultLabel = new Label();
+			mv.visitTableSwitchInsn(0, labels.length - 1, defaultLabel, labels);
+
+			for (int i = 0, n = labels.length; i < n; i++) {
+				MemberInfo method = methods.get(i);
+				boolean isStatic = Modifier.isStatic(method.getModifiers());
+				mv.visitLabel(labels[i]);
+				mv.visitFrame(F_SAME, 0, null, 0, null);
+				int stack = 0;
+				if (!isStatic) {
+					mv.visitVarInsn(ALOAD, 1);
+					mv.visitTypeInsn(CHECKCAST, classNameInternal);
+					stack++;
+				}
+
+				Type[] paramTypes = Type.getArgumentTypes(method.getDescriptor());
+				for (int paramIndex = 0; paramIndex < paramTypes.length; paramIndex++) {
+					mv.visitVarInsn(ALOAD, 3);
+					mv.visitIntInsn(SIPUSH, paramIndex);
+					mv.visitInsn(AALOAD);
+					Type paramType = paramTypes[paramIndex];
+					if (paramType.getSort() < Type.ARRAY) {
+						String wrapperInternal = getWrapperInternalName(paramType);
+						mv.visitTypeInsn(CHECKCAST, wrapperInternal);
+						mv.visitMethodInsn(INVOKEVIRTUAL, wrapperInternal, paramType.getClassName() + "Value",
+							"()" + paramType.getDescriptor());
+					} else if (!paramType.getDescriptor().equals("Ljava/lang/Object;"))
+						mv.visitTypeInsn(CHECKCAST, paramType.getSort() == Type.ARRAY ? paramType.getDescriptor() : paramType.getInternalName());
+					stack += paramType.getSize();
+				}
+				maxStack = Math.max(maxStack, stack + 2);
+
+				mv.visitMethodInsn(isStatic ? INVOKESTATIC : INVOKEVIRTUAL, classNameInternal, method.getName(), method.getDescriptor());
+				Type returnType = Type.getReturnType(method.getDescriptor());
+				if (returnType.getSort() == Type.VOID)
+					mv.visitInsn(ACONST_NULL);
+				else if (returnType.getSort() < Type.ARRAY) {
+					String wrapperInternal = getWrapperInternalName(returnType);
+					mv.visitMethodInsn(INVOKESTATIC, wrapperInternal, "valueOf",
+						"(" + returnType.getDescriptor() + ")L" + wrapperInternal + ";");
+				}
+				mv.visitInsn(ARETURN);
+			}
+
+			mv.visitLabel(defaultLabel);
+			mv.visitFrame(F_SAME, 0, null, 0, null);
+		}
+		mv.visitTypeInsn(NEW, "java/lang/IllegalArgumentException");
+		mv.visitInsn(DUP);
+		mv.visitTypeInsn(NEW, "java/lang/StringBuilder");
+		mv.visitInsn(DUP);
+		mv.visitLdcInsn("Method not found: ");
+		mv.visitMethodInsn(INVOKESPECIAL, "java/lang/StringBuilder", "<init>", "(Ljava/lang/String;)V");
+		mv.visitVarInsn(ILOAD, 2);
+		mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/StringBuilder", "append", "(I)Ljava/lang/StringBuilder;");
+		mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/StringBuilder", "toString", "()Ljava/lang/String;");
+		mv.visitMethodInsn(INVOKESPECIAL, "java/lang/IllegalArgumentException", "<init>", "(Ljava/lang/String;)V");
+		mv.visitInsn(ATHROW);
+		mv.visitMaxs(maxStack, 4);
+		mv.visitEnd();
+	}
+
+	/** @param type A primitive type. */
+	static private String getWrapperInternalName (Type type) {
+		switch (type.getSort()) {
+		case Type.BOOLEAN:
+			return "java/lang/Boolean";
+		case Type.CHAR:
+			return "java/lang/Character";
+		case Type.BYTE:
+			return "java/lang/Byte";
+		case Type.SHORT:
+			return "java/lang/Short";
+		case Type.INT:
+			return "java/lang/Integer";
+		case Type.FLOAT:
+			return "java/lang/Float";
+		case Type.LONG:
+			return "java/lang/Long";
+		default:
+			return "java/lang/Double";
+		}
+	}
+
+	static private void insertThrowUnsupported (ClassWriter cw, String name, String desc, String message) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, name, desc, null, null);
+		mv.visitCode();
+		mv.visitTypeInsn(NEW, "java/lang/UnsupportedOperationException");
+		mv.visitInsn(DUP);
+		mv.visitLdcInsn(message);
+		mv.visitMethodInsn(INVOKESPECIAL, "java/lang/UnsupportedOperationException", "<init>", "(Ljava/lang/String;)V");
+		mv.visitInsn(ATHROW);
+		mv.visitMaxs(3, Type.getArgumentsAndReturnSizes(desc) >> 2);
+		mv.visitEnd();
+	}
+}
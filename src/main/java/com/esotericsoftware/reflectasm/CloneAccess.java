@@ -0,0 +1,246 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import static org.objectweb.asm.Opcodes.*;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.UUID;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+/** Copies instances of a single class for a {@link DeepCopier}. The copy routine is generated: primitive and immutable fields
+ * are assigned directly and other references are copied recursively by the DeepCopier. Fields the access class can't reference
+ * (private or final fields, for example) are copied using reflection. */
+public abstract class CloneAccess {
+	static private final HashSet<Class> immutableTypes = new HashSet();
+	static {
+		immutableTypes.add(String.class);
+		immutableTypes.add(Boolean.class);
+		immutableTypes.add(Byte.class);
+		immutableTypes.add(Character.class);
+		immutableTypes.add(Short.class);
+		immutableTypes.add(Integer.class);
+		immutableTypes.add(Long.class);
+		immutableTypes.add(Float.class);
+		immutableTypes.add(Double.class);
+		immutableTypes.add(Class.class);
+		immutableTypes.add(BigInteger.class);
+		immutableTypes.add(BigDecimal.class);
+		immutableTypes.add(UUID.class);
+	}
+
+	private ConstructorAccess constructorAccess;
+	private Field[] reflectedFields;
+	private boolean[] reflectedFieldsCopied;
+	private boolean acyclic;
+
+	/** Copies the fields the access class can reference from the source to the copy. */
+	abstract public void copyFields (Object source, Object copy, DeepCopier copier, Map references);
+
+	/** Returns a copy of the object.
+	 * @param references Maps objects to their copies, or null if the object graph can't have cycles. */
+	public Object copy (Object object, DeepCopier copier, Map references) {
+		Object copy = constructorAccess.newInstance();
+		if (references != null) references.put(object, copy);
+		copyFields(object, copy, copier, references);
+		if (reflectedFields != null) {
+			try {
+				for (int i = 0, n = reflectedFields.length; i < n; i++) {
+					Field field = reflectedFields[i];
+					Object value = field.get(object);
+					field.set(copy, reflectedFieldsCopied[i] ? copier.copy(value, references) : value);
+				}
+			} catch (IllegalAccessException ex) {
+				throw new RuntimeException("Error copying: " + object.getClass().getName(), ex);
+			}
+		}
+		return copy;
+	}
+
+	/** Returns true if no object reachable from an instance of the class can reference an object that was already visited, so
+	 * copying doesn't need to track references to handle cycles. */
+	public boolean isAcyclic () {
+		return acyclic;
+	}
+
+	/** Returns true if instances of the type never need to be copied. */
+	static public boolean isImmutable (Class type) {
+		return type.isPrimitive() || type.isEnum() || immutableTypes.contains(type)
+			|| (type.getSuperclass() != null && type.getSuperclass().isEnum()); // Enum constant with a body.
+	}
+
+	/** @param type Must not be an array, an interface, abstract, or a primitive type. */
+	static public CloneAccess get (Class type) {
+		if (type.isArray() || type.isInterface() || type.isPrimitive() || Modifier.isAbstract(type.getModifiers()))
+			throw new IllegalArgumentException("The type must not be an array, an interface, abstract, or a primitive type: " + type.getName());
+
+		ArrayList<Field> fields = new ArrayList();
+		Class nextClass = type;
+		while (nextClass != Object.class) {
+			for (Field field : nextClass.getDeclaredFields())
+				if (!Modifier.isStatic(field.getModifiers())) fields.add(field);
+			nextClass = nextClass.getSuperclass();
+		}
+
+		String className = type.getName();
+		String accessClassName = className + "CloneAccess";
+		if (accessClassName.startsWith("java.")) accessClassName = "reflectasm." + accessClassName;
+
+		ArrayList<Field> generatedFields = new ArrayList();
+		ArrayList<Field> reflectedFields = new ArrayList();
+		Class accessClass;
+		AccessClassLoader loader = AccessClassLoader.get(type);
+		loader.lock(accessClassName);
+		try {
+			for (Field field : fields) {
+				int modifiers = field.getModifiers();
+				if (!Modifier.isFinal(modifiers) && loader.isAccessible(type, field.getDeclaringClass(), modifiers)
+					&& (isImmutable(field.getType()) || isTypeAccessible(loader, type, field.getType())))
+					generatedFields.add(field);
+				else
+					reflectedFields.add(field);
+			}
+
+			accessClass = loader.loadAccessClass(accessClassName);
+			if (accessClass == null) {
+				String accessClassNameInternal = accessClassName.replace('.', '/');
+				String classNameInternal = className.replace('.', '/');
+
+				ClassWriter cw = new ClassWriter(0);
+				cw.visit(V1_6, ACC_PUBLIC + ACC_SUPER, accessClassNameInternal, null, "com/esotericsoftware/reflectasm/CloneAccess",
+					null);
+				insertConstructor(cw);
+				insertCopyFields(cw, classNameInternal, generatedFields);
+				cw.visitEnd();
+				accessClass = loader.defineAccessClass(type, accessClassName, cw.toByteArray());
+			}
+		} finally {
+			loader.unlock(accessClassName);
+		}
+
+		boolean[] reflectedFieldsCopied = new boolean[reflectedFields.size()];
+		for (int i = 0, n = reflectedFields.size(); i < n; i++) {
+			Field field = reflectedFields.get(i);
+			try {
+				field.setAccessible(true);
+			} catch (Exception ex) {
+				throw new IllegalArgumentException("Unable to copy field: " + field, ex);
+			}
+			reflectedFieldsCopied[i] = !isImmutable(field.getType());
+		}
+
+		ConstructorAccess constructorAccess;
+		try {
+			constructorAccess = ConstructorAccess.get(type);
+		} catch (RuntimeException ex) {
+			// Every field is overwritten, so the constructor doesn't need to run.
+			constructorAccess = ConstructorAccess.getBypassingConstructor(type);
+		}
+
+		try {
+			CloneAccess access = (CloneAccess)accessClass.newInstance();
+			access.constructorAccess = constructorAccess;
+			if (!reflectedFields.isEmpty()) {
+				access.reflectedFields = reflectedFields.toArray(new Field[reflectedFields.size()]);
+				access.reflectedFieldsCopied = reflectedFieldsCopied;
+			}
+			HashSet<Class> visiting = new HashSet();
+			visiting.add(type);
+			access.acyclic = isAcyclic(fields, visiting);
+			return access;
+		} catch (Throwable t) {
+			throw new RuntimeException("Error constructing clone access class: " + accessClassName, t);
+		}
+	}
+
+	static private boolean isTypeAccessible (AccessClassLoader loader, Class type, Class fieldType) {
+		while (fieldType.isArray())
+			fieldType = fieldType.getComponentType();
+		return fieldType.isPrimitive() || loader.isAccessible(type, fieldType, Modifier.PUBLIC);
+	}
+
+	/** An object can only reference an object of its own class (or a subclass) if a field's type is not final or if the field's
+	 * type can reach the class through its own fields. */
+	static private boolean isAcyclic (ArrayList<Field> fields, HashSet<Class> visiting) {
+		for (Field field : fields) {
+			Class fieldType = field.getType();
+			while (fieldType.isArray())
+				fieldType = fieldType.getComponentType();
+			if (isImmutable(fieldType)) continue;
+			if (!Modifier.isFinal(fieldType.getModifiers()) || fieldType.getName().startsWith("java.")) return false;
+			if (!visiting.add(fieldType)) return false;
+			ArrayList<Field> typeFields = new ArrayList();
+			for (Class nextClass = fieldType; nextClass != Object.class; nextClass = nextClass.getSuperclass())
+				for (Field typeField : nextClass.getDeclaredFields())
+					if (!Modifier.isStatic(typeField.getModifiers())) typeFields.add(typeField);
+			if (!isAcyclic(typeFields, visiting)) return false;
+			visiting.remove(fieldType);
+		}
+		return true;
+	}
+
+	static private void insertConstructor (ClassWriter cw) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, "com/esotericsoftware/reflectasm/CloneAccess", "<init>", "()V");
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(1, 1);
+		mv.visitEnd();
+	}
+
+	static private void insertCopyFields (ClassWriter cw, String classNameInternal, ArrayList<Field> fields) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "copyFields",
+			"(Ljava/lang/Object;Ljava/lang/Object;Lcom/esotericsoftware/reflectasm/DeepCopier;Ljava/util/Map;)V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitTypeInsn(CHECKCAST, classNameInternal);
+		mv.visitVarInsn(ASTORE, 5);
+		mv.visitVarInsn(ALOAD, 2);
+		mv.visitTypeInsn(CHECKCAST, classNameInternal);
+		mv.visitVarInsn(ASTORE, 6);
+		for (int i = 0, n = fields.size(); i < n; i++) {
+			Field field = fields.get(i);
+			String declaringClassInternal = field.getDeclaringClass().getName().replace('.', '/');
+			Type fieldType = Type.getType(field.getType());
+			mv.visitVarInsn(ALOAD, 6);
+			if (isImmutable(field.getType())) {
+				mv.visitVarInsn(ALOAD, 5);
+				mv.visitFieldInsn(GETFIELD, declaringClassInternal, field.getName(), fieldType.getDescriptor());
+			} else {
+				mv.visitVarInsn(ALOAD, 3);
+				mv.visitVarInsn(ALOAD, 5);
+				mv.visitFieldInsn(GETFIELD, declaringClassInternal, field.getName(), fieldType.getDescriptor());
+				mv.visitVarInsn(ALOAD, 4);
+				mv.visitMethodInsn(INVOKEVIRTUAL, "com/esotericsoftware/reflectasm/DeepCopier", "copy",
+					"(Ljava/lang/Object;Ljava/util/Map;)Ljava/lang/Object;");
+				mv.visitTypeInsn(CHECKCAST, fieldType.getSort() == Type.ARRAY ? fieldType.getDescriptor() : fieldType.getInternalName());
+			}
+			mv.visitFieldInsn(PUTFIELD, declaringClassInternal, field.getName(), fieldType.getDescriptor());
+		}
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(4, 7);
+		mv.visitEnd();
+	}
+}
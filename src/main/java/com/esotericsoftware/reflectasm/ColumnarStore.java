@@ -0,0 +1,447 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+
+/** Stores the fields of many objects of one class as columns, one per field, instead of as objects on the heap. Numeric and
+ * char fields are stored in primitive columns, booleans are packed 8 per byte and strings are dictionary encoded, so each
+ * distinct string is stored once. Columns are kept in ByteBuffers; reading one field of every row only touches that field's
+ * column.
+ * <p>
+ * Fields are read and written with {@link FieldAccess}, so only non-private fields that its access class can reference are
+ * stored. Final, transient and static fields and fields of other reference types are not stored.
+ * <p>
+ * A store can be saved to a directory with one file per column and opened again with the columns memory-mapped, so they are not
+ * loaded onto the heap. Opened stores are read-only. This class is not thread safe. */
+public class ColumnarStore<T> {
+	static private final String metaFileName = "store.meta";
+
+	private final Class<T> type;
+	private final FieldAccess access;
+	private final Column[] columns;
+	private final String[] columnNames;
+	private final Class[] columnTypes;
+	private ConstructorAccess<T> constructorAccess;
+	private int size, capacity;
+	private boolean readOnly;
+
+	public ColumnarStore (Class<T> type) {
+		this.type = type;
+		access = FieldAccess.get(type);
+		AccessClassLoader loader = AccessClassLoader.get(type);
+		ArrayList<Column> columns = new ArrayList();
+		Field[] fields = access.getFields();
+		for (int i = 0, n = fields.length; i < n; i++) {
+			Field field = fields[i];
+			int modifiers = field.getModifiers();
+			if (Modifier.isFinal(modifiers) || Modifier.isTransient(modifiers)) continue;
+			Class fieldType = field.getType();
+			if (!fieldType.isPrimitive() && fieldType != String.class) continue;
+			if (!loader.isAccessible(type, field.getDeclaringClass(), modifiers)) continue;
+			columns.add(new Column(field.getName(), fieldType, i));
+		}
+		this.columns = columns.toArray(new Column[columns.size()]);
+		columnNames = new String[this.columns.length];
+		columnTypes = new Class[this.columns.length];
+		for (int i = 0, n = columnNames.length; i < n; i++) {
+			columnNames[i] = this.columns[i].name;
+			columnTypes[i] = this.columns[i].type;
+		}
+		ensureCapacity(16);
+	}
+
+	/** Returns the number of rows. */
+	public int size () {
+		return size;
+	}
+
+	/** Returns the names of the stored fields, one per column. */
+	public String[] getColumnNames () {
+		return columnNames;
+	}
+
+	public Class[] getColumnTypes () {
+		return columnTypes;
+	}
+
+	public int getColumnIndex (String fieldName) {
+		for (int i = 0, n = columnNames.length; i < n; i++)
+			if (columnNames[i].equals(fieldName)) return i;
+		throw new IllegalArgumentException("Unable to find column: " + fieldName);
+	}
+
+	/** Returns the number of distinct non-null strings in a String column. */
+	public int getDictionarySize (int column) {
+		return column(column, String.class).dictionary.size();
+	}
+
+	/** Adds a row with the values of the object's fields. */
+	public void add (T object) {
+		if (readOnly) throw new IllegalStateException("The store is read-only.");
+		if (size == capacity) ensureCapacity(capacity * 2);
+		int row = size;
+		FieldAccess access = this.access;
+		for (Column column : columns) {
+			ByteBuffer data = column.data;
+			int fieldIndex = column.fieldIndex;
+			switch (column.kind) {
+			case Column.INT:
+				data.putInt(row << 2, access.getInt(object, fieldIndex));
+				break;
+			case Column.LONG:
+				data.putLong(row << 3, access.getLong(object, fieldIndex));
+				break;
+			case Column.FLOAT:
+				data.putFloat(row << 2, access.getFloat(object, fieldIndex));
+				break;
+			case Column.DOUBLE:
+				data.putDouble(row << 3, access.getDouble(object, fieldIndex));
+				break;
+			case Column.SHORT:
+				data.putShort(row << 1, access.getShort(object, fieldIndex));
+				break;
+			case Column.CHAR:
+				data.putChar(row << 1, access.getChar(object, fieldIndex));
+				break;
+			case Column.BYTE:
+				data.put(row, access.getByte(object, fieldIndex));
+				break;
+			case Column.BOOLEAN:
+				int index = row >>> 3, bit = 1 << (row & 7);
+				byte bits = data.get(index);
+				data.put(index, (byte)(access.getBoolean(object, fieldIndex) ? bits | bit : bits & ~bit));
+				break;
+			case Column.STRING:
+				data.putInt(row << 2, column.encode(access.getString(object, fieldIndex)));
+				break;
+			}
+		}
+		size++;
+	}
+
+	public void addAll (Collection<? extends T> objects) {
+		if (readOnly) throw new IllegalStateException("The store is read-only.");
+		ensureCapacity(size + objects.size());
+		for (T object : objects)
+			add(object);
+	}
+
+	/** Creates a new object with the field values of the row. The class must have a no-arg constructor. */
+	public T get (int row) {
+		if (constructorAccess == null) constructorAccess = ConstructorAccess.get(type);
+		T object = constructorAccess.newInstance();
+		get(row, object);
+		return object;
+	}
+
+	/** Sets the fields of the object to the values of the row. */
+	public void get (int row, T object) {
+		checkRow(row);
+		FieldAccess access = this.access;
+		for (Column column : columns) {
+			ByteBuffer data = column.data;
+			int fieldIndex = column.fieldIndex;
+			switch (column.kind) {
+			case Column.INT:
+				access.setInt(object, fieldIndex, data.getInt(row << 2));
+				break;
+			case Column.LONG:
+				access.setLong(object, fieldIndex, data.getLong(row << 3));
+				break;
+			case Column.FLOAT:
+				access.setFloat(object, fieldIndex, data.getFloat(row << 2));
+				break;
+			case Column.DOUBLE:
+				access.setDouble(object, fieldIndex, data.getDouble(row << 3));
+				break;
+			case Column.SHORT:
+				access.setShort(object, fieldIndex, data.getShort(row << 1));
+				break;
+			case Column.CHAR:
+				access.setChar(object, fieldIndex, data.getChar(row << 1));
+				break;
+			case Column.BYTE:
+				access.setByte(object, fieldIndex, data.get(row));
+				break;
+			case Column.BOOLEAN:
+				access.setBoolean(object, fieldIndex, (data.get(row >>> 3) & (1 << (row & 7))) != 0);
+				break;
+			case Column.STRING:
+				access.set(object, fieldIndex, column.decode(data.getInt(row << 2)));
+				break;
+			}
+		}
+	}
+
+	public int getInt (int row, int column) {
+		checkRow(row);
+		return column(column, int.class).data.getInt(row << 2);
+	}
+
+	public long getLong (int row, int column) {
+		checkRow(row);
+		return column(column, long.class).data.getLong(row << 3);
+	}
+
+	public float getFloat (int row, int column) {
+		checkRow(row);
+		return column(column, float.class).data.getFloat(row << 2);
+	}
+
+	public double getDouble (int row, int column) {
+		checkRow(row);
+		return column(column, double.class).data.getDouble(row << 3);
+	}
+
+	public short getShort (int row, int column) {
+		checkRow(row);
+		return column(column, short.class).data.getShort(row << 1);
+	}
+
+	public char getChar (int row, int column) {
+		checkRow(row);
+		return column(column, char.class).data.getChar(row << 1);
+	}
+
+	public byte getByte (int row, int column) {
+		checkRow(row);
+		return column(column, byte.class).data.get(row);
+	}
+
+	public boolean getBoolean (int row, int column) {
+		checkRow(row);
+		return (column(column, boolean.class).data.get(row >>> 3) & (1 << (row & 7))) != 0;
+	}
+
+	public String getString (int row, int column) {
+		checkRow(row);
+		Column stringColumn = column(column, String.class);
+		return stringColumn.decode(stringColumn.data.getInt(row << 2));
+	}
+
+	/** Returns a read-only view of a column's bytes, for scanning it directly. Values are stored big endian at row * size for
+	 * primitive columns, as bits (row % 8) of byte (row / 8) for boolean columns and as an int dictionary code (-1 for null) for
+	 * String columns. */
+	public ByteBuffer getColumnBuffer (int column) {
+		ByteBuffer buffer = columns[column].data.asReadOnlyBuffer();
+		buffer.limit(columns[column].bytes(size));
+		return buffer;
+	}
+
+	private void checkRow (int row) {
+		if (row < 0 || row >= size) throw new IndexOutOfBoundsException("row: " + row + ", size: " + size);
+	}
+
+	private Column column (int column, Class type) {
+		Column result = columns[column];
+		if (result.type != type) throw new IllegalArgumentException("Column not declared as " + type.getName() + ": " + column);
+		return result;
+	}
+
+	private void ensureCapacity (int capacity) {
+		if (capacity <= this.capacity) return;
+		for (Column column : columns) {
+			ByteBuffer data = ByteBuffer.allocate(column.bytes(capacity));
+			if (column.data != null) {
+				ByteBuffer old = column.data.duplicate();
+				old.clear();
+				old.limit(column.bytes(size));
+				data.put(old);
+				data.clear();
+			}
+			column.data = data;
+		}
+		this.capacity = capacity;
+	}
+
+	/** Writes the columns to files in the directory, replacing any store already saved there. */
+	public void save (File directory) {
+		directory.mkdirs();
+		try {
+			for (int i = 0, n = columns.length; i < n; i++) {
+				Column column = columns[i];
+				ByteBuffer data = getColumnBuffer(i);
+				FileOutputStream output = new FileOutputStream(new File(directory, i + ".column"));
+				try {
+					FileChannel channel = output.getChannel();
+					while (data.hasRemaining())
+						channel.write(data);
+				} finally {
+					output.close();
+				}
+				if (column.kind == Column.STRING) {
+					FileOutputStream dictionaryOutput = new FileOutputStream(new File(directory, i + ".dictionary"));
+					try {
+						BinaryOutput dictionary = new BinaryOutput(dictionaryOutput);
+						dictionary.writeVarInt(column.dictionary.size());
+						for (String value : column.dictionary)
+							dictionary.writeString(value);
+						dictionary.flush();
+					} finally {
+						dictionaryOutput.close();
+					}
+				}
+			}
+			FileOutputStream metaOutput = new FileOutputStream(new File(directory, metaFileName));
+			try {
+				BinaryOutput meta = new BinaryOutput(metaOutput);
+				meta.writeString(type.getName());
+				meta.writeVarInt(size);
+				meta.writeVarInt(columns.length);
+				for (Column column : columns) {
+					meta.writeString(column.name);
+					meta.writeString(column.type.getName());
+				}
+				meta.flush();
+			} finally {
+				metaOutput.close();
+			}
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	/** Opens a store saved with {@link #save(File)}, memory-mapping its columns. The stored fields must match the fields of the
+	 * type. The returned store is read-only. */
+	static public <T> ColumnarStore<T> open (Class<T> type, File directory) {
+		ColumnarStore<T> store = new ColumnarStore(type);
+		try {
+			FileInputStream metaInput = new FileInputStream(new File(directory, metaFileName));
+			try {
+				BinaryInput meta = new BinaryInput(metaInput);
+				String typeName = meta.readString();
+				if (!typeName.equals(type.getName()))
+					throw new IllegalArgumentException("Store was saved for a different type: " + typeName);
+				store.size = store.capacity = meta.readVarInt();
+				int columnCount = meta.readVarInt();
+				if (columnCount != store.columns.length)
+					throw new IllegalArgumentException("Stored columns don't match the fields of the type: " + type.getName());
+				for (Column column : store.columns) {
+					String name = meta.readString(), columnTypeName = meta.readString();
+					if (!column.name.equals(name) || !column.type.getName().equals(columnTypeName))
+						throw new IllegalArgumentException("Stored column " + name + " (" + columnTypeName + ") doesn't match field: "
+							+ column.name + " (" + column.type.getName() + ")");
+				}
+			} finally {
+				metaInput.close();
+			}
+
+			for (int i = 0, n = store.columns.length; i < n; i++) {
+				Column column = store.columns[i];
+				RandomAccessFile file = new RandomAccessFile(new File(directory, i + ".column"), "r");
+				try {
+					column.data = file.getChannel().map(MapMode.READ_ONLY, 0, column.bytes(store.size));
+				} finally {
+					file.close(); // The mapping stays valid.
+				}
+				if (column.kind == Column.STRING) {
+					FileInputStream dictionaryInput = new FileInputStream(new File(directory, i + ".dictionary"));
+					try {
+						BinaryInput dictionary = new BinaryInput(dictionaryInput);
+						for (int ii = 0, nn = dictionary.readVarInt(); ii < nn; ii++)
+							column.encode(dictionary.readString());
+					} finally {
+						dictionaryInput.close();
+					}
+				}
+			}
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		store.readOnly = true;
+		return store;
+	}
+
+	static private class Column {
+		static final int INT = 0, LONG = 1, FLOAT = 2, DOUBLE = 3, SHORT = 4, CHAR = 5, BYTE = 6, BOOLEAN = 7, STRING = 8;
+
+		final String name;
+		final Class type;
+		final int fieldIndex, kind, width;
+		ByteBuffer data;
+		ArrayList<String> dictionary;
+		HashMap<String, Integer> codes;
+
+		Column (String name, Class type, int fieldIndex) {
+			this.name = name;
+			this.type = type;
+			this.fieldIndex = fieldIndex;
+			if (type == int.class) {
+				kind = INT;
+				width = 4;
+			} else if (type == long.class) {
+				kind = LONG;
+				width = 8;
+			} else if (type == float.class) {
+				kind = FLOAT;
+				width = 4;
+			} else if (type == double.class) {
+				kind = DOUBLE;
+				width = 8;
+			} else if (type == short.class) {
+				kind = SHORT;
+				width = 2;
+			} else if (type == char.class) {
+				kind = CHAR;
+				width = 2;
+			} else if (type == byte.class) {
+				kind = BYTE;
+				width = 1;
+			} else if (type == boolean.class) {
+				kind = BOOLEAN;
+				width = 0;
+			} else {
+				kind = STRING;
+				width = 4;
+				dictionary = new ArrayList();
+				codes = new HashMap();
+			}
+		}
+
+		/** Returns the number of bytes used by the specified number of rows. */
+		int bytes (int rows) {
+			return width == 0 ? (rows + 7) >>> 3 : rows * width;
+		}
+
+		int encode (String value) {
+			if (value == null) return -1;
+			Integer code = codes.get(value);
+			if (code == null) {
+				code = dictionary.size();
+				dictionary.add(value);
+				codes.put(value, code);
+			}
+			return code;
+		}
+
+		String decode (int code) {
+			return code == -1 ? null : dictionary.get(code);
+		}
+	}
+}
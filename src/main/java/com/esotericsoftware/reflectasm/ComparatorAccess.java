@@ -0,0 +1,366 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import static org.objectweb.asm.Opcodes.*;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Comparator;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+/** Compares instances field by field using generated bytecode. Each method reads the fields directly and compares primitives
+ * without boxing, with no per-field dispatch. Fields are compared in order: floats and doubles the same way as
+ * {@link Float#equals(Object)} and {@link Double#equals(Object)}, arrays by content, and other objects with equals, hashCode and
+ * compareTo. The hash code is computed like {@link java.util.Objects#hash(Object...)} of the field values, except that arrays are
+ * hashed by content with {@link java.util.Arrays#hashCode(Object[])} or {@link java.util.Arrays#deepHashCode(Object[])}. Private
+ * fields are never compared. */
+public abstract class ComparatorAccess<T> implements Comparator<T>, Equivalence<T> {
+	private String[] fieldNames;
+
+	/** Returns true if the instances are the same, or neither is null and all fields are equal. */
+	abstract public boolean equals (T a, T b);
+
+	/** @param object Must not be null. */
+	abstract public int hashCode (T object);
+
+	/** Compares the fields in order and returns the first non-zero result. Field values that are objects must implement
+	 * {@link Comparable}, null is less than any other value. Arrays are compared element by element.
+	 * @param a Must not be null.
+	 * @param b Must not be null. */
+	abstract public int compare (T a, T b);
+
+	public boolean equivalent (T a, T b) {
+		return equals(a, b);
+	}
+
+	public int hash (T object) {
+		return object == null ? 0 : hashCode(object);
+	}
+
+	/** Returns the names of the compared fields, in the order they are compared. */
+	public String[] getFieldNames () {
+		return fieldNames;
+	}
+
+	/** Called by the generated compare method for object fields. */
+	static protected int compareObjects (Object a, Object b) {
+		if (a == b) return 0;
+		if (a == null) return -1;
+		if (b == null) return 1;
+		if (a.getClass().isArray() && b.getClass().isArray()) {
+			for (int i = 0, n = Math.min(Array.getLength(a), Array.getLength(b)); i < n; i++) {
+				int result = compareObjects(Array.get(a, i), Array.get(b, i));
+				if (result != 0) return result;
+			}
+			return Integer.compare(Array.getLength(a), Array.getLength(b));
+		}
+		if (!(a instanceof Comparable)) throw new ClassCastException("Field value is not Comparable: " + a.getClass().getName());
+		return ((Comparable)a).compareTo(b);
+	}
+
+	/** Creates a ComparatorAccess which compares all non-private, non-transient fields, including fields of superclasses.
+	 * Protected and package-private fields are skipped if the access class can't reference them, for example fields inherited from
+	 * a class in another package. Instances that differ only in skipped fields are equal.
+	 * @param type Must not be the Object class, an interface, a primitive type, or void. */
+	static public <T> ComparatorAccess<T> get (Class<T> type) {
+		return get(type, (String[])null);
+	}
+
+	/** Creates a ComparatorAccess which compares the specified fields, in the specified order.
+	 * @param type Must not be the Object class, an interface, a primitive type, or void.
+	 * @param fieldNames Names of non-private fields of the type or its superclasses. If null, the fields are chosen as described in
+	 *           {@link #get(Class)}.
+	 * @throws IllegalArgumentException if a field can't be found or can't be referenced by the access class. */
+	static public <T> ComparatorAccess<T> get (Class<T> type, String... fieldNames) {
+		if (type.getSuperclass() == null)
+			throw new IllegalArgumentException("The type must not be the Object class, an interface, a primitive type, or void.");
+
+		ArrayList<Field> allFields = new ArrayList();
+		Class nextClass = type;
+		while (nextClass != Object.class) {
+			for (Field field : nextClass.getDeclaredFields()) {
+				int modifiers = field.getModifiers();
+				if (Modifier.isStatic(modifiers)) continue;
+				if (Modifier.isPrivate(modifiers)) continue;
+				allFields.add(field);
+			}
+			nextClass = nextClass.getSuperclass();
+		}
+
+		String className = type.getName();
+		String accessClassName = className + "ComparatorAccess";
+		if (fieldNames != null) {
+			// Each field name is prefixed with its length, so different field lists never have the same access class name.
+			StringBuilder buffer = new StringBuilder(accessClassName).append("$Fields");
+			for (String fieldName : fieldNames)
+				buffer.append('$').append(fieldName.length()).append('$').append(fieldName);
+			accessClassName = buffer.toString();
+		}
+		if (accessClassName.startsWith("java.")) accessClassName = "reflectasm." + accessClassName;
+
+		ArrayList<Field> fields = new ArrayList();
+		Class accessClass;
+		AccessClassLoader loader = AccessClassLoader.get(type);
+		loader.lock(accessClassName);
+		try {
+			if (fieldNames == null) {
+				for (Field field : allFields) {
+					int modifiers = field.getModifiers();
+					if (Modifier.isTransient(modifiers)) continue;
+					if (loader.isAccessible(type, field.getDeclaringClass(), modifiers)) fields.add(field);
+				}
+			} else {
+				outer:
+				for (String fieldName : fieldNames) {
+					for (Field field : allFields) {
+						if (!field.getName().equals(fieldName)) continue;
+						if (!loader.isAccessible(type, field.getDeclaringClass(), field.getModifiers()))
+							throw new IllegalArgumentException("Field cannot be accessed by the access class: " + field);
+						fields.add(field);
+						continue outer;
+					}
+					throw new IllegalArgumentException("Unable to find non-private field: " + fieldName);
+				}
+			}
+
+			accessClass = loader.loadAccessClass(accessClassName);
+			if (accessClass == null) {
+				String accessClassNameInternal = accessClassName.replace('.', '/');
+				String classNameInternal = className.replace('.', '/');
+
+				ClassWriter cw = new ClassWriter(0);
+				cw.visit(V1_6, ACC_PUBLIC + ACC_SUPER, accessClassNameInternal, null,
+					"com/esotericsoftware/reflectasm/ComparatorAccess", null);
+				insertConstructor(cw);
+				insertEquals(cw, classNameInternal, fields);
+				insertHashCode(cw, classNameInternal, fields);
+				insertCompare(cw, classNameInternal, fields);
+				cw.visitEnd();
+				accessClass = loader.defineAccessClass(type, accessClassName, cw.toByteArray());
+			}
+		} finally {
+			loader.unlock(accessClassName);
+		}
+		try {
+			ComparatorAccess<T> access = (ComparatorAccess<T>)accessClass.newInstance();
+			access.fieldNames = new String[fields.size()];
+			for (int i = 0, n = fields.size(); i < n; i++)
+				access.fieldNames[i] = fields.get(i).getName();
+			return access;
+		} catch (Throwable t) {
+			throw new RuntimeException("Error constructing comparator access class: " + accessClassName, t);
+		}
+	}
+
+	static private void insertConstructor (ClassWriter cw) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, "com/esotericsoftware/reflectasm/ComparatorAccess", "<init>", "()V");
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(1, 1);
+		mv.visitEnd();
+	}
+
+	static private void insertGetField (MethodVisitor mv, String classNameInternal, Field field, int var) {
+		mv.visitVarInsn(ALOAD, var);
+		mv.visitTypeInsn(CHECKCAST, classNameInternal);
+		mv.visitFieldInsn(GETFIELD, field.getDeclaringClass().getName().replace('.', '/'), field.getName(),
+			Type.getDescriptor(field.getType()));
+	}
+
+	static private void insertEquals (ClassWriter cw, String classNameInternal, ArrayList<Field> fields) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "equals", "(Ljava/lang/Object;Ljava/lang/Object;)Z", null, null);
+		mv.visitCode();
+		Label notSameLabel = new Label();
+		Label falseLabel = new Label();
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitVarInsn(ALOAD, 2);
+		mv.visitJumpInsn(IF_ACMPNE, notSameLabel);
+		mv.visitInsn(ICONST_1);
+		mv.visitInsn(IRETURN);
+		mv.visitLabel(notSameLabel);
+		mv.visitFrame(F_SAME, 0, null, 0, null);
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitJumpInsn(IFNULL, falseLabel);
+		mv.visitVarInsn(ALOAD, 2);
+		mv.visitJumpInsn(IFNULL, falseLabel);
+
+		for (int i = 0, n = fields.size(); i < n; i++) {
+			Field field = fields.get(i);
+			Type fieldType = Type.getType(field.getType());
+			insertGetField(mv, classNameInternal, field, 1);
+			insertGetField(mv, classNameInternal, field, 2);
+			switch (fieldType.getSort()) {
+			case Type.BOOLEAN:
+			case Type.BYTE:
+			case Type.CHAR:
+			case Type.SHORT:
+			case Type.INT:
+				mv.visitJumpInsn(IF_ICMPNE, falseLabel);
+				break;
+			case Type.LONG:
+				mv.visitInsn(LCMP);
+				mv.visitJumpInsn(IFNE, falseLabel);
+				break;
+			case Type.FLOAT:
+				mv.visitMethodInsn(INVOKESTATIC, "java/lang/Float", "compare", "(FF)I");
+				mv.visitJumpInsn(IFNE, falseLabel);
+				break;
+			case Type.DOUBLE:
+				mv.visitMethodInsn(INVOKESTATIC, "java/lang/Double", "compare", "(DD)I");
+				mv.visitJumpInsn(IFNE, falseLabel);
+				break;
+			case Type.ARRAY:
+				String arrayDescriptor = arrayDescriptor(fieldType);
+				mv.visitMethodInsn(INVOKESTATIC, "java/util/Arrays", arrayDescriptor.length() == 2 ? "equals" : "deepEquals",
+					"(" + arrayDescriptor + arrayDescriptor + ")Z");
+				mv.visitJumpInsn(IFEQ, falseLabel);
+				break;
+			default:
+				mv.visitMethodInsn(INVOKESTATIC, "java/util/Objects", "equals", "(Ljava/lang/Object;Ljava/lang/Object;)Z");
+				mv.visitJumpInsn(IFEQ, falseLabel);
+				break;
+			}
+		}
+		mv.visitInsn(ICONST_1);
+		mv.visitInsn(IRETURN);
+
+		mv.visitLabel(falseLabel);
+		mv.visitFrame(F_SAME, 0, null, 0, null);
+		mv.visitInsn(ICONST_0);
+		mv.visitInsn(IRETURN);
+		mv.visitMaxs(4, 3);
+		mv.visitEnd();
+	}
+
+	static private void insertHashCode (ClassWriter cw, String classNameInternal, ArrayList<Field> fields) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "hashCode", "(Ljava/lang/Object;)I", null, null);
+		mv.visitCode();
+		mv.visitInsn(ICONST_1);
+		for (int i = 0, n = fields.size(); i < n; i++) {
+			Field field = fields.get(i);
+			Type fieldType = Type.getType(field.getType());
+			mv.visitIntInsn(BIPUSH, 31);
+			mv.visitInsn(IMUL);
+			insertGetField(mv, classNameInternal, field, 1);
+			switch (fieldType.getSort()) {
+			case Type.BOOLEAN:
+				mv.visitMethodInsn(INVOKESTATIC, "java/lang/Boolean", "hashCode", "(Z)I");
+				break;
+			case Type.BYTE:
+				mv.visitMethodInsn(INVOKESTATIC, "java/lang/Byte", "hashCode", "(B)I");
+				break;
+			case Type.CHAR:
+				mv.visitMethodInsn(INVOKESTATIC, "java/lang/Character", "hashCode", "(C)I");
+				break;
+			case Type.SHORT:
+				mv.visitMethodInsn(INVOKESTATIC, "java/lang/Short", "hashCode", "(S)I");
+				break;
+			case Type.INT:
+				break;
+			case Type.LONG:
+				mv.visitMethodInsn(INVOKESTATIC, "java/lang/Long", "hashCode", "(J)I");
+				break;
+			case Type.FLOAT:
+				mv.visitMethodInsn(INVOKESTATIC, "java/lang/Float", "hashCode", "(F)I");
+				break;
+			case Type.DOUBLE:
+				mv.visitMethodInsn(INVOKESTATIC, "java/lang/Double", "hashCode", "(D)I");
+				break;
+			case Type.ARRAY:
+				String arrayDescriptor = arrayDescriptor(fieldType);
+				mv.visitMethodInsn(INVOKESTATIC, "java/util/Arrays", arrayDescriptor.length() == 2 ? "hashCode" : "deepHashCode",
+					"(" + arrayDescriptor + ")I");
+				break;
+			default:
+				mv.visitMethodInsn(INVOKESTATIC, "java/util/Objects", "hashCode", "(Ljava/lang/Object;)I");
+				break;
+			}
+			mv.visitInsn(IADD);
+		}
+		mv.visitInsn(IRETURN);
+		mv.visitMaxs(3, 2);
+		mv.visitEnd();
+	}
+
+	static private void insertCompare (ClassWriter cw, String classNameInternal, ArrayList<Field> fields) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "compare", "(Ljava/lang/Object;Ljava/lang/Object;)I", null, null);
+		mv.visitCode();
+		Label returnLabel = new Label();
+		for (int i = 0, n = fields.size(); i < n; i++) {
+			Field field = fields.get(i);
+			Type fieldType = Type.getType(field.getType());
+			insertGetField(mv, classNameInternal, field, 1);
+			insertGetField(mv, classNameInternal, field, 2);
+			switch (fieldType.getSort()) {
+			case Type.BOOLEAN:
+				mv.visitMethodInsn(INVOKESTATIC, "java/lang/Boolean", "compare", "(ZZ)I");
+				break;
+			case Type.BYTE:
+				mv.visitMethodInsn(INVOKESTATIC, "java/lang/Byte", "compare", "(BB)I");
+				break;
+			case Type.CHAR:
+				mv.visitMethodInsn(INVOKESTATIC, "java/lang/Character", "compare", "(CC)I");
+				break;
+			case Type.SHORT:
+				mv.visitMethodInsn(INVOKESTATIC, "java/lang/Short", "compare", "(SS)I");
+				break;
+			case Type.INT:
+				mv.visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "compare", "(II)I");
+				break;
+			case Type.LONG:
+				mv.visitMethodInsn(INVOKESTATIC, "java/lang/Long", "compare", "(JJ)I");
+				break;
+			case Type.FLOAT:
+				mv.visitMethodInsn(INVOKESTATIC, "java/lang/Float", "compare", "(FF)I");
+				break;
+			case Type.DOUBLE:
+				mv.visitMethodInsn(INVOKESTATIC, "java/lang/Double", "compare", "(DD)I");
+				break;
+			default:
+				mv.visitMethodInsn(INVOKESTATIC, "com/esotericsoftware/reflectasm/ComparatorAccess", "compareObjects",
+					"(Ljava/lang/Object;Ljava/lang/Object;)I");
+				break;
+			}
+			mv.visitInsn(DUP);
+			mv.visitJumpInsn(IFNE, returnLabel);
+			mv.visitInsn(POP);
+		}
+		mv.visitInsn(ICONST_0);
+		mv.visitInsn(IRETURN);
+
+		if (!fields.isEmpty()) {
+			mv.visitLabel(returnLabel);
+			mv.visitFrame(F_SAME1, 0, null, 1, new Object[] {INTEGER});
+			mv.visitInsn(IRETURN);
+		}
+		mv.visitMaxs(5, 3);
+		mv.visitEnd();
+	}
+
+	/** Returns the descriptor of the Arrays method parameter for the array type: the primitive array, or Object[]. */
+	static private String arrayDescriptor (Type arrayType) {
+		if (arrayType.getDimensions() == 1 && arrayType.getElementType().getSort() != Type.OBJECT) return arrayType.getDescriptor();
+		return "[Ljava/lang/Object;";
+	}
+}
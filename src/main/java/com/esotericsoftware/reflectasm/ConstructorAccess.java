@@ -16,8 +16,10 @@ package com.esotericsoftware.reflectasm;
 
 import static org.objectweb.asm.Opcodes.*;
 
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.MethodVisitor;
@@ -41,7 +43,41 @@ abstract public class ConstructorAccess<T> {
 	 *           synthetic this$0 field). */
 	abstract public T newInstance (Object enclosingInstance);
 
+	/** Returns a ConstructorAccess that creates instances without invoking any constructor, in the same way Java serialization
+	 * does. All fields of the new instances have their default values, and the class doesn't need a no-arg constructor. This is
+	 * useful when every field is overwritten after the instance is created, for example when deserializing.
+	 * <p>
+	 * For inner (non-static nested) classes, {@link #newInstance(Object)} assigns the synthetic this$0 field using
+	 * reflection.
+	 * @param type Must not be abstract, an interface, an array, or a primitive type. */
+	static public <T> ConstructorAccess<T> getBypassingConstructor (Class<T> type) {
+		Class enclosingType = type.getEnclosingClass();
+		boolean isNonStaticMemberClass = enclosingType != null && type.isMemberClass() && !Modifier.isStatic(type.getModifiers());
+		ConstructorAccess<T> access = SerializationConstructorAccess.get(type, isNonStaticMemberClass);
+		access.isNonStaticMemberClass = isNonStaticMemberClass;
+		return access;
+	}
+
+	/** Returns a ConstructorAccess whose access class is defined with the lookup, so protected and package-private constructors
+	 * can be used when the package is not open to reflectasm.
+	 * @see FieldAccess#get(Class, MethodHandles.Lookup) */
+	static public <T> ConstructorAccess<T> get (Class<T> type, MethodHandles.Lookup lookup) {
+		AccessClassLoader.get(type).addLookup(type, lookup);
+		return get(type);
+	}
+
+	/** Returns a new ConstructorAccess for the type. For types loaded by the bootstrap or platform class loader the access class
+	 * is generated once and used by all callers. */
 	static public <T> ConstructorAccess<T> get (Class<T> type) {
+		ConstructorAccess<T> access = create(type);
+		if (AccessClassLoader.isShared(type)) sharedAccessClasses.putIfAbsent(type, access.getClass());
+		return access;
+	}
+
+	// Holds the access classes for shared types, so their AccessClassLoader isn't collected.
+	static private final ConcurrentHashMap<Class, Class> sharedAccessClasses = new ConcurrentHashMap();
+
+	static private <T> ConstructorAccess<T> create (Class<T> type) {
 		Class enclosingType = type.getEnclosingClass();
 		boolean isNonStaticMemberClass = enclosingType != null && type.isMemberClass() && !Modifier.isStatic(type.getModifiers());
 
@@ -51,7 +87,8 @@ abstract public class ConstructorAccess<T> {
 
 		Class accessClass;
 		AccessClassLoader loader = AccessClassLoader.get(type);
-		synchronized (loader) {
+		loader.lock(accessClassName);
+		try {
 			accessClass = loader.loadAccessClass(accessClassName);
 			if (accessClass == null) {
 				String accessClassNameInternal = accessClassName.replace('.', '/');
@@ -96,8 +133,10 @@ abstract public class ConstructorAccess<T> {
 				insertNewInstanceInner(cw, classNameInternal, enclosingClassNameInternal);
 
 				cw.visitEnd();
-				accessClass = loader.defineAccessClass(accessClassName, cw.toByteArray());
+				accessClass = loader.defineAccessClass(type, accessClassName, cw.toByteArray());
 			}
+		} finally {
+			loader.unlock(accessClassName);
 		}
 		ConstructorAccess<T> access;
 		try {
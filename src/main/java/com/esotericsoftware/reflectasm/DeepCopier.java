@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Copies object graphs using a generated {@link CloneAccess} for each class. Primitive and immutable values are shared with the
+ * original, arrays and other objects are copied recursively.
+ * <p>
+ * Reference tracking with an identity map is only used when the class of the copied object could be part of a cycle. For
+ * acyclic classes, an object referenced more than once in the graph is copied once for each reference, unless
+ * {@link #setReferences(boolean)} is enabled.
+ * <p>
+ * JDK collections and maps are copied by creating a new instance of the same class and adding copies of the elements. Other
+ * JDK classes that are not immutable can't be copied. This class is thread safe. */
+public class DeepCopier {
+	private final ConcurrentHashMap<Class, CloneAccess> accessCache = new ConcurrentHashMap();
+	private final ConcurrentHashMap<Class, ConstructorAccess> collectionConstructors = new ConcurrentHashMap();
+	private final Set<Class> immutableTypes = Collections.newSetFromMap(new ConcurrentHashMap());
+	private volatile boolean references;
+
+	/** If true, an identity map is always used so objects referenced more than once in the graph are copied only once. Default is
+	 * false, an identity map is only used when the graph could have cycles. */
+	public void setReferences (boolean references) {
+		this.references = references;
+	}
+
+	/** Registers a type whose instances are shared rather than copied. */
+	public void addImmutableType (Class type) {
+		immutableTypes.add(type);
+	}
+
+	/** Returns a deep copy of the object. */
+	public <T> T copy (T object) {
+		if (object == null) return null;
+		Class type = object.getClass();
+		if (isImmutable(type)) return object;
+		Map referenceMap = null;
+		if (references || !isAcyclic(type)) referenceMap = new IdentityHashMap();
+		return (T)copy(object, referenceMap);
+	}
+
+	/** Returns a copy of the object. This is called by the generated {@link CloneAccess} classes for each field.
+	 * @param references Maps objects to their copies, or null if the object graph can't have cycles. */
+	public Object copy (Object object, Map references) {
+		if (object == null) return null;
+		Class type = object.getClass();
+		if (isImmutable(type)) return object;
+		if (references != null) {
+			Object copy = references.get(object);
+			if (copy != null) return copy;
+		}
+		if (type.isArray()) return copyArray(object, type, references);
+		if (object instanceof Collection) return copyCollection((Collection)object, type, references);
+		if (object instanceof Map) return copyMap((Map)object, type, references);
+		return getCloneAccess(type).copy(object, this, references);
+	}
+
+	private boolean isImmutable (Class type) {
+		return CloneAccess.isImmutable(type) || (!immutableTypes.isEmpty() && immutableTypes.contains(type));
+	}
+
+	private boolean isAcyclic (Class type) {
+		while (type.isArray())
+			type = type.getComponentType();
+		if (type.isPrimitive()) return true;
+		if (Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type)) return false;
+		if (type.getName().startsWith("java.") || Modifier.isAbstract(type.getModifiers())) return false;
+		return getCloneAccess(type).isAcyclic();
+	}
+
+	private CloneAccess getCloneAccess (Class type) {
+		CloneAccess access = accessCache.get(type);
+		if (access == null) {
+			if (type.getName().startsWith("java."))
+				throw new IllegalArgumentException("Unable to copy JDK class that is not immutable: " + type.getName());
+			access = CloneAccess.get(type);
+			CloneAccess existing = accessCache.putIfAbsent(type, access);
+			if (existing != null) access = existing;
+		}
+		return access;
+	}
+
+	private Object copyArray (Object array, Class type, Map references) {
+		int length = Array.getLength(array);
+		Class componentType = type.getComponentType();
+		Object copy = Array.newInstance(componentType, length);
+		if (componentType.isPrimitive()) {
+			System.arraycopy(array, 0, copy, 0, length);
+			return copy;
+		}
+		if (references != null) references.put(array, copy);
+		Object[] objects = (Object[])array, objectsCopy = (Object[])copy;
+		for (int i = 0; i < length; i++)
+			objectsCopy[i] = copy(objects[i], references);
+		return copy;
+	}
+
+	private Collection copyCollection (Collection collection, Class type, Map references) {
+		Collection copy;
+		if (collection instanceof SortedSet && type == TreeSet.class)
+			copy = new TreeSet(((SortedSet)collection).comparator());
+		else
+			copy = (Collection)newCollection(type);
+		if (references != null) references.put(collection, copy);
+		for (Object element : collection)
+			copy.add(copy(element, references));
+		return copy;
+	}
+
+	private Map copyMap (Map<Object, Object> map, Class type, Map references) {
+		Map copy;
+		if (map instanceof SortedMap && type == TreeMap.class)
+			copy = new TreeMap(((SortedMap)map).comparator());
+		else
+			copy = (Map)newCollection(type);
+		if (references != null) references.put(map, copy);
+		for (Entry entry : map.entrySet())
+			copy.put(copy(entry.getKey(), references), copy(entry.getValue(), references));
+		return copy;
+	}
+
+	private Object newCollection (Class type) {
+		ConstructorAccess access = collectionConstructors.get(type);
+		if (access == null) {
+			try {
+				access = ConstructorAccess.get(type);
+			} catch (RuntimeException ex) {
+				throw new IllegalArgumentException("Unable to copy collection or map (no public no-arg constructor): " + type.getName(),
+					ex);
+			}
+			collectionConstructors.putIfAbsent(type, access);
+		}
+		return access.newInstance();
+	}
+}
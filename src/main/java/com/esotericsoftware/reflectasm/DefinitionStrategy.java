@@ -0,0 +1,37 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+/** How access classes are defined. The strategy is chosen once per class loader, by checking what the JVM allows rather than by
+ * trying each way for every access class. All but {@link #ACCESS_LOADER} put the access class in the runtime package of the
+ * accessed type, so it can access protected and package-private members. */
+public enum DefinitionStrategy {
+	/** Java 15+: hidden classes defined with a Lookup in the package of the type. Each access class can be unloaded when it is no
+	 * longer reachable. */
+	HIDDEN,
+	/** Java 9+: Lookup.defineClass in the package of the type. Used when hidden classes are not available, and for access classes
+	 * that must be loadable by name. */
+	LOOKUP,
+	/** ClassLoader.defineClass on the type's class loader, called with reflection. Used on Java 8. */
+	PARENT,
+	/** The access class is defined by reflectasm's own class loader, a child of the type's class loader. Protected and
+	 * package-private members are not accessible. */
+	ACCESS_LOADER;
+
+	/** Returns the strategy used to define access classes for the type. */
+	static public DefinitionStrategy get (Class type) {
+		return AccessClassLoader.get(type).getStrategy(type, true);
+	}
+}
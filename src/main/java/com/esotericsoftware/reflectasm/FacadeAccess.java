@@ -0,0 +1,237 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import static org.objectweb.asm.Opcodes.*;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+/** Generates an implementation of a user interface whose methods are bound to the fields and methods of a class. The first
+ * parameter of each interface method is the instance the method acts on. Each method is bound, in order of preference, to:
+ * <ul>
+ * <li>a method of the class with the same name and the remaining parameter types,
+ * <li>a property (getter, setter or field, as found by {@link PropertyAccess}) when named getX/isX with no other parameters or
+ * setX with one other parameter,
+ * <li>a property with the same name as the method, which is read with no other parameters and written with one.
+ * </ul>
+ * For example:
+ * 
+ * <pre>
+ * interface OrderView {
+ * 	long getId (Order order);
+ * 
+ * 	void setQty (Order order, int qty);
+ * }
+ * 
+ * OrderView view = FacadeAccess.get(OrderView.class, Order.class);
+ * </pre>
+ * 
+ * Calls have no boxing and no index lookup. Values are not converted, so primitive types must match exactly and reference types
+ * must be assignable. Methods that can't be bound cause an IllegalArgumentException when the facade is created. Default and
+ * static interface methods are not bound. */
+public final class FacadeAccess {
+	private FacadeAccess () {
+	}
+
+	/** @param facadeType A public interface, visible from the class loader of the type.
+	 * @param type The class the interface methods are bound to. Must not be a primitive type or array. */
+	static public <T> T get (Class<T> facadeType, Class type) {
+		if (!facadeType.isInterface()) throw new IllegalArgumentException("The facade type must be an interface: " + facadeType.getName());
+		if (type.isPrimitive() || type.isArray()) throw new IllegalArgumentException("The type must not be a primitive type or array.");
+		if (!isVisible(facadeType, type.getClassLoader()))
+			throw new IllegalArgumentException("The facade type is not visible from the class loader of the type: " + facadeType.getName());
+
+		String className = type.getName();
+		String accessClassName = AccessClassLoader
+			.appendName(new StringBuilder(64).append(className).append("FacadeAccess"), facadeType.getName()).toString();
+		if (accessClassName.startsWith("java.")) accessClassName = "reflectasm." + accessClassName;
+
+		Class accessClass;
+		AccessClassLoader loader = AccessClassLoader.get(type);
+		loader.lock(accessClassName);
+		try {
+			if (!loader.isAccessible(type, facadeType, Modifier.PUBLIC))
+				throw new IllegalArgumentException("The facade type is not accessible: " + facadeType.getName());
+
+			accessClass = loader.loadAccessClass(accessClassName);
+			if (accessClass == null) {
+				ArrayList<Property> properties = Property.getProperties(type, loader, type);
+				ArrayList<Method> methods = getMethods(type, loader);
+				String accessClassNameInternal = accessClassName.replace('.', '/');
+				String classNameInternal = className.replace('.', '/');
+
+				ClassWriter cw = new ClassWriter(0);
+				cw.visit(V1_6, ACC_PUBLIC + ACC_SUPER, accessClassNameInternal, null, "java/lang/Object",
+					new String[] {Type.getInternalName(facadeType)});
+				insertConstructor(cw);
+				HashSet<String> signatures = new HashSet();
+				for (Method facadeMethod : facadeType.getMethods()) {
+					if (Modifier.isStatic(facadeMethod.getModifiers()) || facadeMethod.isDefault()) continue;
+					if (isObjectMethod(facadeMethod)) continue; // Inherited from Object.
+					if (!signatures.add(facadeMethod.getName() + Type.getMethodDescriptor(facadeMethod))) continue; // Declared twice.
+					insertMethod(cw, classNameInternal, type, facadeMethod, methods, properties);
+				}
+				cw.visitEnd();
+				accessClass = loader.defineAccessClass(type, accessClassName, cw.toByteArray());
+			}
+		} finally {
+			loader.unlock(accessClassName);
+		}
+		try {
+			return (T)accessClass.newInstance();
+		} catch (Throwable t) {
+			throw new RuntimeException("Error constructing facade access class: " + accessClassName, t);
+		}
+	}
+
+	static private boolean isVisible (Class type, ClassLoader loader) {
+		try {
+			return Class.forName(type.getName(), false, loader) == type;
+		} catch (ClassNotFoundException ex) {
+			return false;
+		}
+	}
+
+	/** Returns the non-static methods of the type and its superclasses and interfaces that the access class can call. Overridden
+	 * methods are listed after the methods that override them. */
+	static private ArrayList<Method> getMethods (Class type, AccessClassLoader loader) {
+		ArrayList<Method> methods = new ArrayList();
+		for (Class nextClass = type; nextClass != null; nextClass = nextClass.getSuperclass()) {
+			for (Method method : nextClass.getDeclaredMethods()) {
+				int modifiers = method.getModifiers();
+				if (Modifier.isStatic(modifiers) || method.isBridge()) continue;
+				if (loader.isAccessible(type, nextClass, modifiers)) methods.add(method);
+			}
+		}
+		for (Method method : type.getMethods())
+			if (method.getDeclaringClass().isInterface() && !Modifier.isStatic(method.getModifiers())) methods.add(method);
+		return methods;
+	}
+
+	static private void insertConstructor (ClassWriter cw) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(1, 1);
+		mv.visitEnd();
+	}
+
+	static private void insertMethod (ClassWriter cw, String classNameInternal, Class type, Method facadeMethod,
+		ArrayList<Method> methods, ArrayList<Property> properties) {
+		String name = facadeMethod.getName();
+		Class[] parameterTypes = facadeMethod.getParameterTypes();
+		Class returnType = facadeMethod.getReturnType();
+		if (parameterTypes.length == 0 || !parameterTypes[0].isAssignableFrom(type))
+			throw bindError(facadeMethod, "the first parameter must accept " + type.getName());
+		Class[] argumentTypes = Arrays.copyOfRange(parameterTypes, 1, parameterTypes.length);
+
+		// Find the target: a method with the same name and parameters, otherwise a property.
+		Method target = null;
+		for (Method method : methods) {
+			if (method.getName().equals(name) && Arrays.equals(method.getParameterTypes(), argumentTypes)) {
+				target = method;
+				break;
+			}
+		}
+		Property property = null;
+		boolean write = false;
+		if (target == null) {
+			String propertyName = null;
+			if (argumentTypes.length == 0) {
+				if (name.startsWith("get") && name.length() > 3)
+					propertyName = Property.decapitalize(name.substring(3));
+				else if (name.startsWith("is") && name.length() > 2 && returnType == boolean.class)
+					propertyName = Property.decapitalize(name.substring(2));
+			} else if (argumentTypes.length == 1 && name.startsWith("set") && name.length() > 3) {
+				propertyName = Property.decapitalize(name.substring(3));
+				write = true;
+			}
+			property = findProperty(properties, propertyName);
+			if (property == null && argumentTypes.length <= 1) {
+				property = findProperty(properties, name);
+				write = argumentTypes.length == 1;
+			}
+			if (property == null) throw bindError(facadeMethod, "no matching method or property in " + type.getName());
+			if (write) {
+				if (!property.isWritable()) throw bindError(facadeMethod, "property is not writable: " + property);
+				if (!isAssignable(argumentTypes[0], property.type))
+					throw bindError(facadeMethod, "parameter type doesn't match property: " + property);
+			} else if (!property.isReadable())
+				throw bindError(facadeMethod, "property is not readable: " + property);
+		}
+		Class valueType = target != null ? target.getReturnType() : (write ? void.class : property.type);
+		if (returnType != void.class && !isAssignable(valueType, returnType))
+			throw bindError(facadeMethod, "return type doesn't match " + (target != null ? target : property));
+
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, name, Type.getMethodDescriptor(facadeMethod), null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitTypeInsn(CHECKCAST, classNameInternal);
+		int local = 2;
+		for (Class argumentType : argumentTypes) {
+			Type argument = Type.getType(argumentType);
+			mv.visitVarInsn(argument.getOpcode(ILOAD), local);
+			local += argument.getSize();
+		}
+		if (target != null)
+			Property.insertInvoke(mv, target);
+		else if (write)
+			property.insertSet(mv);
+		else
+			property.insertGet(mv);
+		if (returnType == void.class) {
+			if (valueType != void.class) mv.visitInsn(Type.getType(valueType).getSize() == 2 ? POP2 : POP);
+		}
+		mv.visitInsn(Type.getType(returnType).getOpcode(IRETURN));
+		mv.visitMaxs(Math.max(local - 1, 2), local);
+		mv.visitEnd();
+	}
+
+	static private boolean isObjectMethod (Method method) {
+		try {
+			Object.class.getMethod(method.getName(), method.getParameterTypes());
+			return true;
+		} catch (NoSuchMethodException ex) {
+			return false;
+		}
+	}
+
+	static private Property findProperty (ArrayList<Property> properties, String name) {
+		if (name == null) return null;
+		for (Property property : properties)
+			if (property.name.equals(name)) return property;
+		return null;
+	}
+
+	/** Returns true if a value of the first type can be used as the second type without conversion. */
+	static private boolean isAssignable (Class from, Class to) {
+		if (from.isPrimitive() || to.isPrimitive()) return from == to;
+		return to.isAssignableFrom(from);
+	}
+
+	static private IllegalArgumentException bindError (Method facadeMethod, String message) {
+		return new IllegalArgumentException("Unable to bind facade method " + facadeMethod + ": " + message);
+	}
+}
@@ -16,27 +16,34 @@ package com.esotericsoftware.reflectasm;
 
 import static org.objectweb.asm.Opcodes.*;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Type;
 
 public abstract class FieldAccess {
+	private MemberMetadata fieldMetadata;
+	private Field[] fields;
+	// Copies of the shared metadata returned to users, made the first time they are asked for.
 	private String[] fieldNames;
 	private Class[] fieldTypes;
-	private Field[] fields;
 
 	public int getIndex (String fieldName) {
-		for (int i = 0, n = fieldNames.length; i < n; i++)
-			if (fieldNames[i].equals(fieldName)) return i;
-		throw new IllegalArgumentException("Unable to find non-private field: " + fieldName);
+		int index = fieldMetadata.indexOf(fieldName);
+		if (index == -1) throw new IllegalArgumentException("Unable to find non-private field: " + fieldName);
+		return index;
 	}
 
 	public int getIndex (Field field) {
+		Field[] fields = this.fields != null ? this.fields : fieldMetadata.getFields();
 		for (int i = 0, n = fields.length; i < n; i++)
 			if (fields[i].equals(field)) return i;
 		throw new IllegalArgumentException("Unable to find non-private field: " + field);
@@ -50,22 +57,51 @@ public abstract class FieldAccess {
 		return get(instance, getIndex(fieldName));
 	}
 
+	/** Returns the field names. The names are interned, the array is copied once per FieldAccess from the names shared by all
+	 * FieldAccess instances for the type. */
 	public String[] getFieldNames () {
+		String[] fieldNames = this.fieldNames;
+		if (fieldNames == null) this.fieldNames = fieldNames = fieldMetadata.names.clone();
 		return fieldNames;
 	}
 
+	/** Returns the field types, which are looked up the first time this is called for the type. The array is copied once per
+	 * FieldAccess. */
 	public Class[] getFieldTypes () {
+		Class[] fieldTypes = this.fieldTypes;
+		if (fieldTypes == null) this.fieldTypes = fieldTypes = fieldMetadata.getTypes().clone();
 		return fieldTypes;
 	}
 
 	public int getFieldCount () {
-		return fieldTypes.length;
+		return fieldMetadata.size();
+	}
+
+	/** Returns the name of the field at the index, without copying the field names. */
+	public String getFieldName (int fieldIndex) {
+		return fieldMetadata.names[fieldIndex];
 	}
 
+	/** Returns the type of the field at the index, without copying the field types. */
+	public Class getFieldType (int fieldIndex) {
+		return fieldMetadata.getTypes()[fieldIndex];
+	}
+
+	/** Returns the reflective field at the index, without copying the fields. */
+	public Field getField (int fieldIndex) {
+		Field[] fields = this.fields;
+		return fields != null ? fields[fieldIndex] : fieldMetadata.getFields()[fieldIndex];
+	}
+
+	/** Returns the reflective fields, which are looked up the first time this is called for the type. The array is copied once
+	 * per FieldAccess, unless it was set with {@link #setFields(Field[])}. */
 	public Field[] getFields () {
+		Field[] fields = this.fields;
+		if (fields == null) this.fields = fields = fieldMetadata.getFields().clone();
 		return fields;
 	}
 
+	/** Sets the reflective fields returned by this FieldAccess only. */
 	public void setFields (Field[] fields) {
 		this.fields = fields;
 	}
@@ -108,41 +144,202 @@ public abstract class FieldAccess {
 
 	abstract public float getFloat (Object instance, int fieldIndex);
 
-	/** @param type Must not be the Object class, an interface, a primitive type, or void. */
+	/** Copies the values of all non-final fields from the source to the target instance (a shallow copy). Protected and
+	 * package-private fields are skipped if the access class could not be defined in the same package as the type. Generated
+	 * access classes override this with straight-line bytecode, this implementation calls {@link #set(Object, int, Object)} for
+	 * each field. */
+	public void copy (Object source, Object target) {
+		Field[] fields = this.fields != null ? this.fields : fieldMetadata.getFields();
+		for (int i = 0, n = fields.length; i < n; i++)
+			if (!Modifier.isFinal(fields[i].getModifiers())) set(target, i, get(source, i));
+	}
+
+	/** Sets all non-final fields of the instance to their default values (null, 0 or false). Protected and package-private
+	 * fields are skipped if the access class could not be defined in the same package as the type. Generated access classes
+	 * override this with straight-line bytecode, this implementation calls {@link #set(Object, int, Object)} for each field. */
+	public void reset (Object instance) {
+		Field[] fields = this.fields != null ? this.fields : fieldMetadata.getFields();
+		for (int i = 0, n = fields.length; i < n; i++) {
+			Field field = fields[i];
+			if (!Modifier.isFinal(field.getModifiers())) set(instance, i, getDefaultValue(field.getType()));
+		}
+	}
+
+	/** Returns null, or the boxed zero or false value of a primitive type. */
+	static Object getDefaultValue (Class type) {
+		if (!type.isPrimitive()) return null;
+		if (type == boolean.class) return Boolean.FALSE;
+		if (type == char.class) return Character.valueOf((char)0);
+		if (type == byte.class) return Byte.valueOf((byte)0);
+		if (type == short.class) return Short.valueOf((short)0);
+		if (type == int.class) return Integer.valueOf(0);
+		if (type == long.class) return Long.valueOf(0);
+		if (type == float.class) return Float.valueOf(0);
+		return Double.valueOf(0);
+	}
+
+	/** Passes the value of each field to the visitor in field index order, using a single generated method. Protected and
+	 * package-private fields are skipped if the access class could not be defined in the same package as the type. Generated
+	 * access classes override this, this implementation calls the typed get method for each field. */
+	public void accept (Object instance, FieldValueVisitor visitor) {
+		Field[] fields = this.fields != null ? this.fields : fieldMetadata.getFields();
+		for (int i = 0, n = fields.length; i < n; i++) {
+			Class type = fields[i].getType();
+			if (type == boolean.class)
+				visitor.visitBoolean(i, getBoolean(instance, i));
+			else if (type == byte.class)
+				visitor.visitByte(i, getByte(instance, i));
+			else if (type == short.class)
+				visitor.visitShort(i, getShort(instance, i));
+			else if (type == char.class)
+				visitor.visitChar(i, getChar(instance, i));
+			else if (type == int.class)
+				visitor.visitInt(i, getInt(instance, i));
+			else if (type == long.class)
+				visitor.visitLong(i, getLong(instance, i));
+			else if (type == float.class)
+				visitor.visitFloat(i, getFloat(instance, i));
+			else if (type == double.class)
+				visitor.visitDouble(i, getDouble(instance, i));
+			else
+				visitor.visitObject(i, get(instance, i));
+		}
+	}
+
+	/** Returns a FieldAccess for a type whose package is not open to reflectasm, for example a type in a named module. The access
+	 * class is defined in the package of the type using the lookup, so protected and package-private fields are accessible
+	 * without --add-opens. The lookup is also used for later access classes of any kind for types in the same package. The
+	 * module of the type must read reflectasm.
+	 * @param lookup Must have private access to the package of the type, for example MethodHandles.lookup() called from a class in
+	 *           that package. */
+	static public FieldAccess get (Class type, MethodHandles.Lookup lookup) {
+		AccessClassLoader.get(type).addLookup(type, lookup);
+		return get(type);
+	}
+
+	/** Returns a new FieldAccess for the type. For types loaded by the bootstrap or platform class loader, such as JDK classes,
+	 * the access class is generated once and used by all callers, whatever their class loader.
+	 * @param type Must not be the Object class, an interface, a primitive type, or void. */
 	static public FieldAccess get (Class type) {
-		if (type.getSuperclass() == null)
-			throw new IllegalArgumentException("The type must not be the Object class, an interface, a primitive type, or void.");
+		FieldAccess access = create(type);
+		if (AccessClassLoader.isShared(type)) sharedAccessClasses.putIfAbsent(type, access.getClass());
+		return access;
+	}
 
-		ArrayList<Field> fields = new ArrayList<Field>();
-		Class nextClass = type;
-		while (nextClass != Object.class) {
-			Field[] declaredFields = nextClass.getDeclaredFields();
-			for (int i = 0, n = declaredFields.length; i < n; i++) {
-				Field field = declaredFields[i];
-				int modifiers = field.getModifiers();
-				if (Modifier.isStatic(modifiers)) continue;
-				if (Modifier.isPrivate(modifiers)) continue;
-				fields.add(field);
-			}
-			nextClass = nextClass.getSuperclass();
+	// Holds the access classes for shared types, so their AccessClassLoader isn't collected and the classes generated again.
+	// Not a ClassValue: its entries would be stored in the JDK classes and keep this class loader from being unloaded.
+	static private final ConcurrentHashMap<Class, Class> sharedAccessClasses = new ConcurrentHashMap();
+
+	/** Returns a FieldAccess for each type, all backed by a single access class. Each generated method switches on the type and
+	 * then on the field index, so this costs one extra switch per call but defines only one class for many small types.
+	 * @param types Must all be in the same package and loaded by the same class loader. None may be the Object class, an
+	 *           interface, a primitive type, or void. */
+	static public FieldAccess[] getBundle (Class... types) {
+		if (types.length == 0) throw new IllegalArgumentException("At least one type is required.");
+		String packageName = AccessClassLoader.getPackageName(types[0]);
+		// Each type name is prefixed with its length, so different type lists never have the same access class name.
+		StringBuilder names = new StringBuilder(64);
+		if (packageName.length() > 0) names.append(packageName).append('.');
+		names.append("FieldAccessBundle");
+		for (Class type : types) {
+			if (type.getSuperclass() == null)
+				throw new IllegalArgumentException("The type must not be the Object class, an interface, a primitive type, or void: " + type);
+			if (type.getClassLoader() != types[0].getClassLoader()
+				|| !AccessClassLoader.getPackageName(type).equals(packageName))
+				throw new IllegalArgumentException("All types must be in the same package and class loader: " + type);
+			String name = packageName.length() == 0 ? type.getName() : type.getName().substring(packageName.length() + 1);
+			names.append('$').append(name.length()).append('$').append(name);
 		}
 
-		String[] fieldNames = new String[fields.size()];
-		Class[] fieldTypes = new Class[fields.size()];
-		for (int i = 0, n = fieldNames.length; i < n; i++) {
-			fieldNames[i] = fields.get(i).getName();
-			fieldTypes[i] = fields.get(i).getType();
+		String accessClassName = names.toString();
+		if (accessClassName.startsWith("java.")) accessClassName = "reflectasm." + accessClassName;
+
+		Class accessClass;
+		MemberMetadata[] metadata;
+		ArrayList<MemberInfo>[] fields = null;
+		AccessClassLoader loader = AccessClassLoader.get(types[0]);
+		loader.lock(accessClassName);
+		try {
+			accessClass = loader.loadAccessClass(accessClassName);
+			if (accessClass == null) {
+				fields = getFields(types);
+				final String accessClassNameInternal = accessClassName.replace('.', '/');
+
+				ClassWriter cw = new ClassWriter(0);
+				cw.visit(V1_6, ACC_PUBLIC + ACC_SUPER, accessClassNameInternal, null, "com/esotericsoftware/reflectasm/FieldAccess",
+					null);
+				cw.visitField(ACC_PRIVATE + ACC_FINAL, "typeId", "I", null, null).visitEnd();
+				insertBundleConstructor(cw, accessClassNameInternal);
+
+				// Each type's methods are renamed with the type ID as a suffix and made private.
+				final ArrayList<String> methods = new ArrayList();
+				for (int i = 0, n = types.length; i < n; i++) {
+					final String suffix = "$" + i;
+					final boolean first = i == 0;
+					ClassVisitor typeVisitor = new ClassVisitor(ASM5, cw) {
+						public MethodVisitor visitMethod (int access, String name, String desc, String signature, String[] exceptions) {
+							if (first) {
+								methods.add(name);
+								methods.add(desc);
+							}
+							return super.visitMethod(ACC_PRIVATE, name + suffix, desc, signature, exceptions);
+						}
+					};
+					insertMethods(typeVisitor, types[i].getName().replace('.', '/'), loader, types[i], fields[i]);
+				}
+				for (int i = 0, n = methods.size(); i < n; i += 2)
+					insertBundleMethod(cw, accessClassNameInternal, methods.get(i), methods.get(i + 1), types.length);
+				cw.visitEnd();
+				accessClass = loader.defineAccessClass(types[0], accessClassName, cw.toByteArray());
+			}
+			metadata = MemberMetadata.get(accessClass);
+			if (metadata == null) {
+				if (fields == null) fields = getFields(types);
+				metadata = new MemberMetadata[types.length];
+				for (int i = 0, n = types.length; i < n; i++)
+					metadata[i] = new MemberMetadata(fields[i]);
+				metadata = MemberMetadata.put(accessClass, metadata);
+			}
+		} finally {
+			loader.unlock(accessClassName);
+		}
+		try {
+			Constructor constructor = accessClass.getConstructor(int.class);
+			FieldAccess[] accesses = new FieldAccess[types.length];
+			for (int i = 0, n = types.length; i < n; i++) {
+				accesses[i] = (FieldAccess)constructor.newInstance(i);
+				accesses[i].fieldMetadata = metadata[i];
+			}
+			return accesses;
+		} catch (Throwable t) {
+			throw new RuntimeException("Error constructing field access class: " + accessClassName, t);
 		}
+	}
+
+	static private ArrayList<MemberInfo>[] getFields (Class[] types) {
+		ArrayList<MemberInfo>[] fields = new ArrayList[types.length];
+		for (int i = 0, n = types.length; i < n; i++)
+			fields[i] = MemberScanner.getFields(types[i]);
+		return fields;
+	}
+
+	static private FieldAccess create (Class type) {
+		if (type.getSuperclass() == null)
+			throw new IllegalArgumentException("The type must not be the Object class, an interface, a primitive type, or void.");
 
 		String className = type.getName();
 		String accessClassName = className + "FieldAccess";
 		if (accessClassName.startsWith("java.")) accessClassName = "reflectasm." + accessClassName;
 
 		Class accessClass;
+		MemberMetadata[] metadata;
+		ArrayList<MemberInfo> fields = null;
 		AccessClassLoader loader = AccessClassLoader.get(type);
-		synchronized (loader) {
+		loader.lock(accessClassName);
+		try {
 			accessClass = loader.loadAccessClass(accessClassName);
 			if (accessClass == null) {
+				fields = MemberScanner.getFields(type);
 				String accessClassNameInternal = accessClassName.replace('.', '/');
 				String classNameInternal = className.replace('.', '/');
 
@@ -150,41 +347,72 @@ public abstract class FieldAccess {
 				cw.visit(V1_6, ACC_PUBLIC + ACC_SUPER, accessClassNameInternal, null, "com/esotericsoftware/reflectasm/FieldAccess",
 					null);
 				insertConstructor(cw);
-				insertGetObject(cw, classNameInternal, fields);
-				insertSetObject(cw, classNameInternal, fields);
-				insertGetPrimitive(cw, classNameInternal, fields, Type.BOOLEAN_TYPE);
-				insertSetPrimitive(cw, classNameInternal, fields, Type.BOOLEAN_TYPE);
-				insertGetPrimitive(cw, classNameInternal, fields, Type.BYTE_TYPE);
-				insertSetPrimitive(cw, classNameInternal, fields, Type.BYTE_TYPE);
-				insertGetPrimitive(cw, classNameInternal, fields, Type.SHORT_TYPE);
-				insertSetPrimitive(cw, classNameInternal, fields, Type.SHORT_TYPE);
-				insertGetPrimitive(cw, classNameInternal, fields, Type.INT_TYPE);
-				insertSetPrimitive(cw, classNameInternal, fields, Type.INT_TYPE);
-				insertGetPrimitive(cw, classNameInternal, fields, Type.LONG_TYPE);
-				insertSetPrimitive(cw, classNameInternal, fields, Type.LONG_TYPE);
-				insertGetPrimitive(cw, classNameInternal, fields, Type.DOUBLE_TYPE);
-				insertSetPrimitive(cw, classNameInternal, fields, Type.DOUBLE_TYPE);
-				insertGetPrimitive(cw, classNameInternal, fields, Type.FLOAT_TYPE);
-				insertSetPrimitive(cw, classNameInternal, fields, Type.FLOAT_TYPE);
-				insertGetPrimitive(cw, classNameInternal, fields, Type.CHAR_TYPE);
-				insertSetPrimitive(cw, classNameInternal, fields, Type.CHAR_TYPE);
-				insertGetString(cw, classNameInternal, fields);
+				insertMethods(cw, classNameInternal, loader, type, fields);
 				cw.visitEnd();
-				accessClass = loader.defineAccessClass(accessClassName, cw.toByteArray());
+				accessClass = loader.defineAccessClass(type, accessClassName, cw.toByteArray());
 			}
+			metadata = MemberMetadata.get(accessClass);
+			if (metadata == null) {
+				if (fields == null) fields = MemberScanner.getFields(type);
+				metadata = MemberMetadata.put(accessClass, new MemberMetadata[] {new MemberMetadata(fields)});
+			}
+		} finally {
+			loader.unlock(accessClassName);
 		}
 		try {
 			FieldAccess access = (FieldAccess)accessClass.newInstance();
-			access.fieldNames = fieldNames;
-			access.fieldTypes = fieldTypes;
-			access.fields = fields.toArray(new Field[fields.size()]);
+			access.fieldMetadata = metadata[0];
 			return access;
 		} catch (Throwable t) {
 			throw new RuntimeException("Error constructing field access class: " + accessClassName, t);
 		}
 	}
 
-	static private void insertConstructor (ClassWriter cw) {
+	void setFieldMetadata (MemberMetadata fieldMetadata) {
+		this.fieldMetadata = fieldMetadata;
+	}
+
+	/** Adds every method of the access class except the constructor. */
+	static void insertMethods (ClassVisitor cw, String classNameInternal, AccessClassLoader loader, Class type,
+		ArrayList<MemberInfo> fields) {
+		insertGetObject(cw, classNameInternal, fields);
+		insertSetObject(cw, classNameInternal, fields);
+		insertGetPrimitive(cw, classNameInternal, fields, Type.BOOLEAN_TYPE);
+		insertSetPrimitive(cw, classNameInternal, fields, Type.BOOLEAN_TYPE);
+		insertGetPrimitive(cw, classNameInternal, fields, Type.BYTE_TYPE);
+		insertSetPrimitive(cw, classNameInternal, fields, Type.BYTE_TYPE);
+		insertGetPrimitive(cw, classNameInternal, fields, Type.SHORT_TYPE);
+		insertSetPrimitive(cw, classNameInternal, fields, Type.SHORT_TYPE);
+		insertGetPrimitive(cw, classNameInternal, fields, Type.INT_TYPE);
+		insertSetPrimitive(cw, classNameInternal, fields, Type.INT_TYPE);
+		insertGetPrimitive(cw, classNameInternal, fields, Type.LONG_TYPE);
+		insertSetPrimitive(cw, classNameInternal, fields, Type.LONG_TYPE);
+		insertGetPrimitive(cw, classNameInternal, fields, Type.DOUBLE_TYPE);
+		insertSetPrimitive(cw, classNameInternal, fields, Type.DOUBLE_TYPE);
+		insertGetPrimitive(cw, classNameInternal, fields, Type.FLOAT_TYPE);
+		insertSetPrimitive(cw, classNameInternal, fields, Type.FLOAT_TYPE);
+		insertGetPrimitive(cw, classNameInternal, fields, Type.CHAR_TYPE);
+		insertSetPrimitive(cw, classNameInternal, fields, Type.CHAR_TYPE);
+		insertGetString(cw, classNameInternal, fields);
+		ArrayList<MemberInfo> accessibleFields = getAccessibleFields(loader, type, fields);
+		insertCopy(cw, classNameInternal, accessibleFields);
+		insertReset(cw, classNameInternal, accessibleFields);
+		insertAccept(cw, classNameInternal, loader, type, fields);
+	}
+
+	/** Returns the non-final fields which bytecode in the access class can always reference. Methods that touch every field use
+	 * only these fields, so they don't fail when the access class can't be defined in the package of the type. */
+	static ArrayList<MemberInfo> getAccessibleFields (AccessClassLoader loader, Class type, ArrayList<MemberInfo> fields) {
+		ArrayList<MemberInfo> accessibleFields = new ArrayList(fields.size());
+		for (MemberInfo field : fields) {
+			int modifiers = field.getModifiers();
+			if (Modifier.isFinal(modifiers)) continue;
+			if (loader.isAccessible(type, field.getDeclaringClass(), modifiers)) accessibleFields.add(field);
+		}
+		return accessibleFields;
+	}
+
+	static private void insertConstructor (ClassVisitor cw) {
 		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
 		mv.visitCode();
 		mv.visitVarInsn(ALOAD, 0);
@@ -194,7 +422,62 @@ public abstract class FieldAccess {
 		mv.visitEnd();
 	}
 
-	static private void insertSetObject (ClassWriter cw, String classNameInternal, ArrayList<Field> fields) {
+	static private void insertBundleConstructor (ClassVisitor cw, String accessClassNameInternal) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "(I)V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, "com/esotericsoftware/reflectasm/FieldAccess", "<init>", "()V");
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitVarInsn(ILOAD, 1);
+		mv.visitFieldInsn(PUTFIELD, accessClassNameInternal, "typeId", "I");
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(2, 2);
+		mv.visitEnd();
+	}
+
+	/** Adds a method which switches on the type ID and calls the renamed method for that type. */
+	static private void insertBundleMethod (ClassVisitor cw, String accessClassNameInternal, String name, String desc,
+		int typeCount) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, name, desc, null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitFieldInsn(GETFIELD, accessClassNameInternal, "typeId", "I");
+
+		Label[] labels = new Label[typeCount];
+		for (int i = 0; i < typeCount; i++)
+			labels[i] = new Label();
+		Label defaultLabel = new Label();
+		mv.visitTableSwitchInsn(0, typeCount - 1, defaultLabel, labels);
+
+		Type[] argumentTypes = Type.getArgumentTypes(desc);
+		Type returnType = Type.getReturnType(desc);
+		int argumentSize = 1;
+		for (Type argumentType : argumentTypes)
+			argumentSize += argumentType.getSize();
+		for (int i = 0; i < typeCount; i++) {
+			mv.visitLabel(labels[i]);
+			mv.visitFrame(F_SAME, 0, null, 0, null);
+			mv.visitVarInsn(ALOAD, 0);
+			int local = 1;
+			for (Type argumentType : argumentTypes) {
+				mv.visitVarInsn(argumentType.getOpcode(ILOAD), local);
+				local += argumentType.getSize();
+			}
+			mv.visitMethodInsn(INVOKESPECIAL, accessClassNameInternal, name + "$" + i, desc);
+			mv.visitInsn(returnType.getOpcode(IRETURN));
+		}
+
+		mv.visitLabel(defaultLabel);
+		mv.visitFrame(F_SAME, 0, null, 0, null);
+		mv.visitTypeInsn(NEW, "java/lang/IllegalStateException");
+		mv.visitInsn(DUP);
+		mv.visitMethodInsn(INVOKESPECIAL, "java/lang/IllegalStateException", "<init>", "()V");
+		mv.visitInsn(ATHROW);
+		mv.visitMaxs(Math.max(argumentSize, 2), argumentSize);
+		mv.visitEnd();
+	}
+
+	static private void insertSetObject (ClassVisitor cw, String classNameInternal, ArrayList<MemberInfo> fields) {
 		int maxStack = 6;
 		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "set", "(Ljava/lang/Object;ILjava/lang/Object;)V", null, null);
 		mv.visitCode();
@@ -209,8 +492,8 @@ public abstract class FieldAccess {
 			mv.visitTableSwitchInsn(0, labels.length - 1, defaultLabel, labels);
 
 			for (int i = 0, n = labels.length; i < n; i++) {
-				Field field = fields.get(i);
-				Type fieldType = Type.getType(field.getType());
+				MemberInfo field = fields.get(i);
+				Type fieldType = Type.getType(field.getDescriptor());
 
 				mv.visitLabel(labels[i]);
 				mv.visitFrame(F_SAME, 0, null, 0, null);
@@ -272,7 +555,7 @@ public abstract class FieldAccess {
 		mv.visitEnd();
 	}
 
-	static private void insertGetObject (ClassWriter cw, String classNameInternal, ArrayList<Field> fields) {
+	static private void insertGetObject (ClassVisitor cw, String classNameInternal, ArrayList<MemberInfo> fields) {
 		int maxStack = 6;
 		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "get", "(Ljava/lang/Object;I)Ljava/lang/Object;", null, null);
 		mv.visitCode();
@@ -287,16 +570,16 @@ public abstract class FieldAccess {
 			mv.visitTableSwitchInsn(0, labels.length - 1, defaultLabel, labels);
 
 			for (int i = 0, n = labels.length; i < n; i++) {
-				Field field = fields.get(i);
+				MemberInfo field = fields.get(i);
 
 				mv.visitLabel(labels[i]);
 				mv.visitFrame(F_SAME, 0, null, 0, null);
 				mv.visitVarInsn(ALOAD, 1);
 				mv.visitTypeInsn(CHECKCAST, classNameInternal);
 				mv.visitFieldInsn(GETFIELD, field.getDeclaringClass().getName().replace('.', '/'), field.getName(),
-					Type.getDescriptor(field.getType()));
+					field.getDescriptor());
 
-				Type fieldType = Type.getType(field.getType());
+				Type fieldType = Type.getType(field.getDescriptor());
 				switch (fieldType.getSort()) {
 				case Type.BOOLEAN:
 					mv.visitMethodInsn(INVOKESTATIC, "java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;");
@@ -335,7 +618,7 @@ public abstract class FieldAccess {
 		mv.visitEnd();
 	}
 
-	static private void insertGetString (ClassWriter cw, String classNameInternal, ArrayList<Field> fields) {
+	static private void insertGetString (ClassVisitor cw, String classNameInternal, ArrayList<MemberInfo> fields) {
 		int maxStack = 6;
 		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "getString", "(Ljava/lang/Object;I)Ljava/lang/String;", null, null);
 		mv.visitCode();
@@ -347,7 +630,7 @@ public abstract class FieldAccess {
 			Label labelForInvalidTypes = new Label();
 			boolean hasAnyBadTypeLabel = false;
 			for (int i = 0, n = labels.length; i < n; i++) {
-				if (fields.get(i).getType().equals(String.class))
+				if (fields.get(i).getDescriptor().equals("Ljava/lang/String;"))
 					labels[i] = new Label();
 				else {
 					labels[i] = labelForInvalidTypes;
@@ -359,7 +642,7 @@ public abstract class FieldAccess {
 
 			for (int i = 0, n = labels.length; i < n; i++) {
 				if (!labels[i].equals(labelForInvalidTypes)) {
-					Field field = fields.get(i);
+					MemberInfo field = fields.get(i);
 					mv.visitLabel(labels[i]);
 					mv.visitFrame(F_SAME, 0, null, 0, null);
 					mv.visitVarInsn(ALOAD, 1);
@@ -384,7 +667,7 @@ public abstract class FieldAccess {
 		mv.visitEnd();
 	}
 
-	static private void insertSetPrimitive (ClassWriter cw, String classNameInternal, ArrayList<Field> fields,
+	static private void insertSetPrimitive (ClassVisitor cw, String classNameInternal, ArrayList<MemberInfo> fields,
 		Type primitiveType) {
 		int maxStack = 6;
 		int maxLocals = 4; // See correction below for LLOAD and DLOAD
@@ -442,7 +725,7 @@ public abstract class FieldAccess {
 			Label labelForInvalidTypes = new Label();
 			boolean hasAnyBadTypeLabel = false;
 			for (int i = 0, n = labels.length; i < n; i++) {
-				if (Type.getType(fields.get(i).getType()).equals(primitiveType))
+				if (Type.getType(fields.get(i).getDescriptor()).equals(primitiveType))
 					labels[i] = new Label();
 				else {
 					labels[i] = labelForInvalidTypes;
@@ -454,7 +737,7 @@ public abstract class FieldAccess {
 
 			for (int i = 0, n = labels.length; i < n; i++) {
 				if (!labels[i].equals(labelForInvalidTypes)) {
-					Field field = fields.get(i);
+					MemberInfo field = fields.get(i);
 					mv.visitLabel(labels[i]);
 					mv.visitFrame(F_SAME, 0, null, 0, null);
 					mv.visitVarInsn(ALOAD, 1);
@@ -480,7 +763,7 @@ public abstract class FieldAccess {
 		mv.visitEnd();
 	}
 
-	static private void insertGetPrimitive (ClassWriter cw, String classNameInternal, ArrayList<Field> fields,
+	static private void insertGetPrimitive (ClassVisitor cw, String classNameInternal, ArrayList<MemberInfo> fields,
 		Type primitiveType) {
 		int maxStack = 6;
 		final String getterMethodName;
@@ -534,7 +817,7 @@ public abstract class FieldAccess {
 			Label labelForInvalidTypes = new Label();
 			boolean hasAnyBadTypeLabel = false;
 			for (int i = 0, n = labels.length; i < n; i++) {
-				if (Type.getType(fields.get(i).getType()).equals(primitiveType))
+				if (Type.getType(fields.get(i).getDescriptor()).equals(primitiveType))
 					labels[i] = new Label();
 				else {
 					labels[i] = labelForInvalidTypes;
@@ -545,7 +828,7 @@ public abstract class FieldAccess {
 			mv.visitTableSwitchInsn(0, labels.length - 1, defaultLabel, labels);
 
 			for (int i = 0, n = labels.length; i < n; i++) {
-				Field field = fields.get(i);
+				MemberInfo field = fields.get(i);
 				if (!labels[i].equals(labelForInvalidTypes)) {
 					mv.visitLabel(labels[i]);
 					mv.visitFrame(F_SAME, 0, null, 0, null);
@@ -571,6 +854,116 @@ public abstract class FieldAccess {
 		mv.visitEnd();
 	}
 
+	static private void insertCopy (ClassVisitor cw, String classNameInternal, ArrayList<MemberInfo> fields) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "copy", "(Ljava/lang/Object;Ljava/lang/Object;)V", null, null);
+		mv.visitCode();
+		for (int i = 0, n = fields.size(); i < n; i++) {
+			MemberInfo field = fields.get(i);
+			String declaringClassInternal = field.getDeclaringClass().getName().replace('.', '/');
+			String descriptor = field.getDescriptor();
+			mv.visitVarInsn(ALOAD, 2);
+			mv.visitTypeInsn(CHECKCAST, classNameInternal);
+			mv.visitVarInsn(ALOAD, 1);
+			mv.visitTypeInsn(CHECKCAST, classNameInternal);
+			mv.visitFieldInsn(GETFIELD, declaringClassInternal, field.getName(), descriptor);
+			mv.visitFieldInsn(PUTFIELD, declaringClassInternal, field.getName(), descriptor);
+		}
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(3, 3);
+		mv.visitEnd();
+	}
+
+	static private void insertReset (ClassVisitor cw, String classNameInternal, ArrayList<MemberInfo> fields) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "reset", "(Ljava/lang/Object;)V", null, null);
+		mv.visitCode();
+		for (int i = 0, n = fields.size(); i < n; i++) {
+			MemberInfo field = fields.get(i);
+			Type fieldType = Type.getType(field.getDescriptor());
+			mv.visitVarInsn(ALOAD, 1);
+			mv.visitTypeInsn(CHECKCAST, classNameInternal);
+			switch (fieldType.getSort()) {
+			case Type.BOOLEAN:
+			case Type.BYTE:
+			case Type.CHAR:
+			case Type.SHORT:
+			case Type.INT:
+				mv.visitInsn(ICONST_0);
+				break;
+			case Type.FLOAT:
+				mv.visitInsn(FCONST_0);
+				break;
+			case Type.LONG:
+				mv.visitInsn(LCONST_0);
+				break;
+			case Type.DOUBLE:
+				mv.visitInsn(DCONST_0);
+				break;
+			default:
+				mv.visitInsn(ACONST_NULL);
+				break;
+			}
+			mv.visitFieldInsn(PUTFIELD, field.getDeclaringClass().getName().replace('.', '/'), field.getName(),
+				fieldType.getDescriptor());
+		}
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(3, 2);
+		mv.visitEnd();
+	}
+
+	static private void insertAccept (ClassVisitor cw, String classNameInternal, AccessClassLoader loader, Class type,
+		ArrayList<MemberInfo> fields) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "accept",
+			"(Ljava/lang/Object;Lcom/esotericsoftware/reflectasm/FieldValueVisitor;)V", null, null);
+		mv.visitCode();
+		for (int i = 0, n = fields.size(); i < n; i++) {
+			MemberInfo field = fields.get(i);
+			if (!loader.isAccessible(type, field.getDeclaringClass(), field.getModifiers())) continue;
+			Type fieldType = Type.getType(field.getDescriptor());
+			String visitName;
+			switch (fieldType.getSort()) {
+			case Type.BOOLEAN:
+				visitName = "visitBoolean";
+				break;
+			case Type.BYTE:
+				visitName = "visitByte";
+				break;
+			case Type.CHAR:
+				visitName = "visitChar";
+				break;
+			case Type.SHORT:
+				visitName = "visitShort";
+				break;
+			case Type.INT:
+				visitName = "visitInt";
+				break;
+			case Type.FLOAT:
+				visitName = "visitFloat";
+				break;
+			case Type.LONG:
+				visitName = "visitLong";
+				break;
+			case Type.DOUBLE:
+				visitName = "visitDouble";
+				break;
+			default:
+				visitName = "visitObject";
+				break;
+			}
+			String visitDescriptor = "(I" + (visitName.equals("visitObject") ? "Ljava/lang/Object;" : fieldType.getDescriptor()) + ")V";
+			mv.visitVarInsn(ALOAD, 2);
+			mv.visitIntInsn(SIPUSH, i);
+			mv.visitVarInsn(ALOAD, 1);
+			mv.visitTypeInsn(CHECKCAST, classNameInternal);
+			mv.visitFieldInsn(GETFIELD, field.getDeclaringClass().getName().replace('.', '/'), field.getName(),
+				fieldType.getDescriptor());
+			mv.visitMethodInsn(INVOKEINTERFACE, "com/esotericsoftware/reflectasm/FieldValueVisitor", visitName, visitDescriptor,
+				true);
+		}
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(4, 3);
+		mv.visitEnd();
+	}
+
 	static private MethodVisitor insertThrowExceptionForFieldNotFound (MethodVisitor mv) {
 		mv.visitTypeInsn(NEW, "java/lang/IllegalArgumentException");
 		mv.visitInsn(DUP);
@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/** A compact map with a fixed set of String keys, created by {@link MapAccess#toMap(Object)}. The key array is shared by all maps
+ * created by the same MapAccess and values are stored in a presized array, so creating a map only allocates the map and its
+ * value array. Lookups compare the keys by identity before equality.
+ * <p>
+ * Values can be replaced and new keys can be added (which copies the key array), but keys can't be removed. */
+public class FieldMap extends AbstractMap<String, Object> {
+	String[] keys;
+	Object[] values;
+	private int size;
+	private Set<Entry<String, Object>> entrySet;
+
+	FieldMap (String[] keys, Object[] values) {
+		this.keys = keys;
+		this.values = values;
+		size = keys.length;
+	}
+
+	private int indexOf (Object key) {
+		String[] keys = this.keys;
+		for (int i = 0; i < size; i++)
+			if (keys[i] == key) return i;
+		if (key != null) {
+			for (int i = 0; i < size; i++)
+				if (keys[i].equals(key)) return i;
+		}
+		return -1;
+	}
+
+	public int size () {
+		return size;
+	}
+
+	public boolean containsKey (Object key) {
+		return indexOf(key) != -1;
+	}
+
+	public Object get (Object key) {
+		int index = indexOf(key);
+		return index == -1 ? null : values[index];
+	}
+
+	public Object put (String key, Object value) {
+		int index = indexOf(key);
+		if (index != -1) {
+			Object oldValue = values[index];
+			values[index] = value;
+			return oldValue;
+		}
+		if (key == null) throw new IllegalArgumentException("key cannot be null.");
+		keys = Arrays.copyOf(keys, size + 1);
+		values = Arrays.copyOf(values, size + 1);
+		keys[size] = key;
+		values[size++] = value;
+		return null;
+	}
+
+	public Set<Entry<String, Object>> entrySet () {
+		if (entrySet == null) {
+			entrySet = new AbstractSet<Entry<String, Object>>() {
+				public int size () {
+					return size;
+				}
+
+				public Iterator<Entry<String, Object>> iterator () {
+					return new Iterator<Entry<String, Object>>() {
+						int index;
+
+						public boolean hasNext () {
+							return index < size;
+						}
+
+						public Entry<String, Object> next () {
+							if (index >= size) throw new NoSuchElementException();
+							final int entryIndex = index++;
+							return new SimpleEntry<String, Object>(keys[entryIndex], values[entryIndex]) {
+								public Object setValue (Object value) {
+									super.setValue(value);
+									Object oldValue = values[entryIndex];
+									values[entryIndex] = value;
+									return oldValue;
+								}
+							};
+						}
+
+						public void remove () {
+							throw new UnsupportedOperationException("Keys can't be removed.");
+						}
+					};
+				}
+			};
+		}
+		return entrySet;
+	}
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+/** Receives the value of each field of an object from {@link FieldAccess#accept(Object, FieldValueVisitor)}, with a typed method
+ * for each primitive type so values are not boxed.
+ * @see FieldAccess#getFieldNames() */
+public interface FieldValueVisitor {
+	public void visitBoolean (int fieldIndex, boolean value);
+
+	public void visitByte (int fieldIndex, byte value);
+
+	public void visitShort (int fieldIndex, short value);
+
+	public void visitChar (int fieldIndex, char value);
+
+	public void visitInt (int fieldIndex, int value);
+
+	public void visitLong (int fieldIndex, long value);
+
+	public void visitFloat (int fieldIndex, float value);
+
+	public void visitDouble (int fieldIndex, double value);
+
+	/** Called for fields of all reference types, including arrays and primitive wrappers. */
+	public void visitObject (int fieldIndex, Object value);
+}
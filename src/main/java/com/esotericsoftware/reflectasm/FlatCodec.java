@@ -0,0 +1,242 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import static org.objectweb.asm.Opcodes.*;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+/** Copies the primitive fields of an object to and from a fixed-size slot in a ByteBuffer, using generated code with one absolute
+ * put or get per field. Works with heap, direct and memory-mapped buffers, using the buffer's byte order.
+ * <p>
+ * The layout only depends on the names and types of the fields: fields are ordered by size, largest first, then by name, so each
+ * field is aligned to its size when the slot offset is a multiple of 8. All non-static, non-final, non-transient primitive fields
+ * are included; other fields are ignored. The access class must be able to reference every included field, so the fields must not
+ * be private, and protected or package-private fields need the access class to be defined in the package of the type. */
+public abstract class FlatCodec {
+	private String[] fieldNames;
+	private Class[] fieldTypes;
+	private int[] offsets;
+	private int size;
+
+	/** Writes the fields of the object to the buffer, starting at the offset. The buffer's position is not changed. */
+	abstract public void write (Object object, ByteBuffer buffer, int offset);
+
+	/** Reads the fields of the object from the buffer, starting at the offset. The buffer's position is not changed. */
+	abstract public void read (ByteBuffer buffer, int offset, Object object);
+
+	/** Writes the fields of the object at the buffer's position and advances the position by {@link #getSize()}. */
+	public void write (Object object, ByteBuffer buffer) {
+		int position = buffer.position();
+		if (buffer.limit() - position < size) throw new BufferOverflowException();
+		write(object, buffer, position);
+		buffer.position(position + size);
+	}
+
+	/** Reads the fields of the object at the buffer's position and advances the position by {@link #getSize()}. */
+	public void read (ByteBuffer buffer, Object object) {
+		int position = buffer.position();
+		if (buffer.limit() - position < size) throw new BufferUnderflowException();
+		read(buffer, position, object);
+		buffer.position(position + size);
+	}
+
+	/** Returns the number of bytes used by an object. */
+	public int getSize () {
+		return size;
+	}
+
+	/** Returns the names of the fields in layout order. */
+	public String[] getFieldNames () {
+		return fieldNames;
+	}
+
+	public Class[] getFieldTypes () {
+		return fieldTypes;
+	}
+
+	/** Returns the offset of each field within the slot, in layout order. */
+	public int[] getOffsets () {
+		return offsets;
+	}
+
+	/** @param type Must not be the Object class, an interface, a primitive type, or void.
+	 * @throws IllegalArgumentException if a field in the layout can't be referenced by the access class. */
+	static public FlatCodec get (Class type) {
+		if (type.getSuperclass() == null)
+			throw new IllegalArgumentException("The type must not be the Object class, an interface, a primitive type, or void.");
+
+		String className = type.getName();
+		String accessClassName = className + "FlatCodec";
+		if (accessClassName.startsWith("java.")) accessClassName = "reflectasm." + accessClassName;
+
+		ArrayList<Field> fields = new ArrayList();
+		Class accessClass;
+		AccessClassLoader loader = AccessClassLoader.get(type);
+		loader.lock(accessClassName);
+		try {
+			for (Class nextClass = type; nextClass != Object.class; nextClass = nextClass.getSuperclass()) {
+				for (Field field : nextClass.getDeclaredFields()) {
+					int modifiers = field.getModifiers();
+					if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) || Modifier.isTransient(modifiers)) continue;
+					if (!field.getType().isPrimitive()) continue;
+					if (!loader.isAccessible(type, nextClass, modifiers))
+						throw new IllegalArgumentException("Unable to access field in the layout: " + field);
+					fields.add(field);
+				}
+			}
+			Collections.sort(fields, new Comparator<Field>() {
+				public int compare (Field field1, Field field2) {
+					int size1 = getSize(field1.getType()), size2 = getSize(field2.getType());
+					if (size1 != size2) return size2 - size1;
+					int result = field1.getName().compareTo(field2.getName());
+					if (result != 0) return result;
+					// A field hidden by a subclass field with the same name.
+					return field1.getDeclaringClass().getName().compareTo(field2.getDeclaringClass().getName());
+				}
+			});
+
+			accessClass = loader.loadAccessClass(accessClassName);
+			if (accessClass == null) {
+				String accessClassNameInternal = accessClassName.replace('.', '/');
+				String classNameInternal = className.replace('.', '/');
+
+				ClassWriter cw = new ClassWriter(0);
+				cw.visit(V1_6, ACC_PUBLIC + ACC_SUPER, accessClassNameInternal, null, "com/esotericsoftware/reflectasm/FlatCodec", null);
+				insertConstructor(cw);
+				insertWrite(cw, classNameInternal, fields);
+				insertRead(cw, classNameInternal, fields);
+				cw.visitEnd();
+				accessClass = loader.defineAccessClass(type, accessClassName, cw.toByteArray());
+			}
+		} finally {
+			loader.unlock(accessClassName);
+		}
+		try {
+			FlatCodec codec = (FlatCodec)accessClass.newInstance();
+			int count = fields.size();
+			codec.fieldNames = new String[count];
+			codec.fieldTypes = new Class[count];
+			codec.offsets = new int[count];
+			int offset = 0;
+			for (int i = 0; i < count; i++) {
+				Field field = fields.get(i);
+				codec.fieldNames[i] = field.getName();
+				codec.fieldTypes[i] = field.getType();
+				codec.offsets[i] = offset;
+				offset += getSize(field.getType());
+			}
+			codec.size = offset;
+			return codec;
+		} catch (Throwable t) {
+			throw new RuntimeException("Error constructing flat codec class: " + accessClassName, t);
+		}
+	}
+
+	static private int getSize (Class type) {
+		if (type == long.class || type == double.class) return 8;
+		if (type == int.class || type == float.class) return 4;
+		if (type == short.class || type == char.class) return 2;
+		return 1;
+	}
+
+	/** Returns the ByteBuffer method name suffix for the type, for example "Int" for getInt and putInt. */
+	static private String getBufferSuffix (Class type) {
+		if (type == boolean.class || type == byte.class) return "";
+		String name = type.getName();
+		return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+	}
+
+	static private void insertConstructor (ClassWriter cw) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, "com/esotericsoftware/reflectasm/FlatCodec", "<init>", "()V");
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(1, 1);
+		mv.visitEnd();
+	}
+
+	/** Pushes the slot offset plus the field offset. */
+	static private void insertOffset (MethodVisitor mv, int offsetLocal, int fieldOffset) {
+		mv.visitVarInsn(ILOAD, offsetLocal);
+		if (fieldOffset == 0) return;
+		if (fieldOffset <= Short.MAX_VALUE)
+			mv.visitIntInsn(SIPUSH, fieldOffset);
+		else
+			mv.visitLdcInsn(fieldOffset);
+		mv.visitInsn(IADD);
+	}
+
+	static private void insertWrite (ClassWriter cw, String classNameInternal, ArrayList<Field> fields) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "write", "(Ljava/lang/Object;Ljava/nio/ByteBuffer;I)V", null, null);
+		mv.visitCode();
+		int offset = 0;
+		for (Field field : fields) {
+			Class fieldType = field.getType();
+			// Booleans are stored as a byte, 0 or 1.
+			String valueDescriptor = fieldType == boolean.class ? "B" : Type.getDescriptor(fieldType);
+			mv.visitVarInsn(ALOAD, 2);
+			insertOffset(mv, 3, offset);
+			mv.visitVarInsn(ALOAD, 1);
+			mv.visitTypeInsn(CHECKCAST, classNameInternal);
+			mv.visitFieldInsn(GETFIELD, field.getDeclaringClass().getName().replace('.', '/'), field.getName(),
+				Type.getDescriptor(fieldType));
+			mv.visitMethodInsn(INVOKEVIRTUAL, "java/nio/ByteBuffer", "put" + getBufferSuffix(fieldType),
+				"(I" + valueDescriptor + ")Ljava/nio/ByteBuffer;");
+			mv.visitInsn(POP);
+			offset += getSize(fieldType);
+		}
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(4, 4);
+		mv.visitEnd();
+	}
+
+	static private void insertRead (ClassWriter cw, String classNameInternal, ArrayList<Field> fields) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "read", "(Ljava/nio/ByteBuffer;ILjava/lang/Object;)V", null, null);
+		mv.visitCode();
+		int offset = 0;
+		for (Field field : fields) {
+			Class fieldType = field.getType();
+			String valueDescriptor = fieldType == boolean.class ? "B" : Type.getDescriptor(fieldType);
+			mv.visitVarInsn(ALOAD, 3);
+			mv.visitTypeInsn(CHECKCAST, classNameInternal);
+			mv.visitVarInsn(ALOAD, 1);
+			insertOffset(mv, 2, offset);
+			mv.visitMethodInsn(INVOKEVIRTUAL, "java/nio/ByteBuffer", "get" + getBufferSuffix(fieldType), "(I)" + valueDescriptor);
+			if (fieldType == boolean.class) {
+				mv.visitInsn(ICONST_1);
+				mv.visitInsn(IAND);
+			}
+			mv.visitFieldInsn(PUTFIELD, field.getDeclaringClass().getName().replace('.', '/'), field.getName(),
+				Type.getDescriptor(fieldType));
+			offset += getSize(fieldType);
+		}
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(4, 4);
+		mv.visitEnd();
+	}
+}
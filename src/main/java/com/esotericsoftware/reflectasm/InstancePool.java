@@ -0,0 +1,189 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/** A bounded, lock-free pool of reusable instances. New instances are created with {@link ConstructorAccess} and freed instances
+ * are reset by the generated {@link FieldAccess#reset(Object)} or {@link FieldAccess#copy(Object, Object)} methods, which
+ * assign every non-private, non-final field with straight-line bytecode.
+ * <p>
+ * The slots are split into stripes. A thread first uses the stripe chosen by its thread ID, so threads rarely contend for the
+ * same slots, and only scans the other stripes when its own stripe is empty (on obtain) or full (on free). When all slots are
+ * full, freed instances are dropped and left to the garbage collector.
+ * <p>
+ * Fields the access class can't reference, such as private fields, are reset or copied using reflection. They are found and made
+ * accessible once when the pool is created. */
+public class InstancePool<T> {
+	private final ConstructorAccess<T> constructorAccess;
+	private final FieldAccess fieldAccess;
+	private final T prototype;
+	private final Field[] reflectedFields;
+	private final AtomicReferenceArray<T> slots;
+	private final int stripeMask, stripeSize;
+	private final LongAdder hits = new LongAdder(), misses = new LongAdder(), drops = new LongAdder();
+
+	/** Creates a pool which resets freed instances to default values.
+	 * @param capacity The maximum number of free instances held by the pool, rounded up to a multiple of the number of stripes. */
+	public InstancePool (Class<T> type, int capacity) {
+		this(type, capacity, null);
+	}
+
+	/** @param capacity The maximum number of free instances held by the pool, rounded up to a multiple of the number of stripes.
+	 * @param prototype If not null, new and freed instances have their fields copied from the prototype instead of being reset to
+	 *           default values. The copy is shallow. */
+	public InstancePool (Class<T> type, int capacity, T prototype) {
+		if (capacity < 1) throw new IllegalArgumentException("capacity must be > 0: " + capacity);
+		constructorAccess = ConstructorAccess.get(type);
+		fieldAccess = FieldAccess.get(type);
+		this.prototype = prototype;
+		reflectedFields = getReflectedFields(type);
+
+		int stripes = 1;
+		int maxStripes = Math.min(capacity, Runtime.getRuntime().availableProcessors() * 2);
+		while (stripes << 1 <= maxStripes)
+			stripes <<= 1;
+		stripeMask = stripes - 1;
+		stripeSize = (capacity + stripes - 1) / stripes;
+		slots = new AtomicReferenceArray(stripes * stripeSize);
+	}
+
+	/** Returns a free instance from the pool, or a new instance if the pool is empty. */
+	public T obtain () {
+		int n = slots.length();
+		for (int i = 0, index = startIndex(); i < n; i++, index++) {
+			if (index == n) index = 0;
+			T object = slots.get(index);
+			if (object != null && slots.compareAndSet(index, object, null)) {
+				hits.increment();
+				return object;
+			}
+		}
+		misses.increment();
+		T object = constructorAccess.newInstance();
+		if (prototype != null) copy(prototype, object);
+		return object;
+	}
+
+	/** Resets the instance and puts it in the pool. The instance is dropped if the pool is full. The instance must not be used
+	 * after it is freed. */
+	public void free (T object) {
+		if (object == null) throw new IllegalArgumentException("object cannot be null.");
+		if (prototype != null)
+			copy(prototype, object);
+		else
+			reset(object);
+		int n = slots.length();
+		for (int i = 0, index = startIndex(); i < n; i++, index++) {
+			if (index == n) index = 0;
+			if (slots.get(index) == null && slots.compareAndSet(index, null, object)) return;
+		}
+		drops.increment();
+	}
+
+	private void copy (T source, T target) {
+		fieldAccess.copy(source, target);
+		try {
+			for (Field field : reflectedFields)
+				field.set(target, field.get(source));
+		} catch (IllegalAccessException ex) {
+			throw new RuntimeException("Error copying field.", ex);
+		}
+	}
+
+	private void reset (T object) {
+		fieldAccess.reset(object);
+		try {
+			for (Field field : reflectedFields)
+				field.set(object, FieldAccess.getDefaultValue(field.getType()));
+		} catch (IllegalAccessException ex) {
+			throw new RuntimeException("Error resetting field.", ex);
+		}
+	}
+
+	/** Returns the non-static, non-final fields of the type and its superclasses that the generated copy and reset methods don't
+	 * assign, made accessible. These are private fields and also fields the access class can't reference, such as a protected
+	 * field inherited from a class in another package.
+	 * @throws IllegalArgumentException if a field can't be made accessible. */
+	static private Field[] getReflectedFields (Class type) {
+		HashSet<String> accessibleFields = new HashSet();
+		for (MemberInfo field : FieldAccess.getAccessibleFields(AccessClassLoader.get(type), type, MemberScanner.getFields(type)))
+			accessibleFields.add(field.getDeclaringClass().getName() + "." + field.getName());
+		ArrayList<Field> fields = new ArrayList();
+		for (Class nextClass = type; nextClass != Object.class; nextClass = nextClass.getSuperclass()) {
+			for (Field field : nextClass.getDeclaredFields()) {
+				int modifiers = field.getModifiers();
+				if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers)
+					|| accessibleFields.contains(nextClass.getName() + "." + field.getName())) continue;
+				try {
+					field.setAccessible(true);
+				} catch (Exception ex) {
+					throw new IllegalArgumentException("Unable to reset field: " + field, ex);
+				}
+				fields.add(field);
+			}
+		}
+		return fields.toArray(new Field[fields.size()]);
+	}
+
+	/** Removes all free instances from the pool. */
+	public void clear () {
+		for (int i = 0, n = slots.length(); i < n; i++)
+			slots.set(i, null);
+	}
+
+	private int startIndex () {
+		long id = Thread.currentThread().getId();
+		return ((int)(id ^ (id >>> 32)) & stripeMask) * stripeSize;
+	}
+
+	/** Returns the maximum number of free instances held by the pool. */
+	public int getCapacity () {
+		return slots.length();
+	}
+
+	/** Returns the number of free instances currently in the pool. The value is approximate when other threads use the pool. */
+	public int getFree () {
+		int free = 0;
+		for (int i = 0, n = slots.length(); i < n; i++)
+			if (slots.get(i) != null) free++;
+		return free;
+	}
+
+	/** Returns the number of times {@link #obtain()} returned a pooled instance. */
+	public long getHits () {
+		return hits.sum();
+	}
+
+	/** Returns the number of times {@link #obtain()} had to create a new instance. */
+	public long getMisses () {
+		return misses.sum();
+	}
+
+	/** Returns the number of times {@link #free(Object)} dropped an instance because the pool was full. */
+	public long getDrops () {
+		return drops.sum();
+	}
+
+	public String toString () {
+		return "InstancePool[hits=" + getHits() + ", misses=" + getMisses() + ", drops=" + getDrops() + ", free=" + getFree() + "/"
+			+ getCapacity() + "]";
+	}
+}
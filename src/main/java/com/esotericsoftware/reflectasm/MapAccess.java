@@ -0,0 +1,398 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import static org.objectweb.asm.Opcodes.*;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+/** Converts objects to maps of field names to values and back with generated bytecode, in one call per object. The map keys are
+ * the names of the non-private fields the access class can reference, including fields of superclasses. A field hidden by a field
+ * with the same name in a subclass has the name of its declaring class as a prefix, for example "com.example.Base.x".
+ * <p>
+ * When setting fields from a map, numbers are converted to the type of numeric primitive fields (for example an Integer can
+ * set a long field), null values don't change primitive fields and keys that are not field names are ignored. A number that
+ * can't be converted exactly, such as a Long too large for an int field or a Double with a fraction, throws
+ * IllegalArgumentException. */
+public abstract class MapAccess {
+	private String[] keys;
+	private Class[] types;
+
+	/** Puts the value of each field in the map, boxing primitive values. */
+	abstract public void toMap (Object instance, Map<String, Object> map);
+
+	/** Stores the value of each field in the array, in the same order as {@link #getKeys()}. */
+	abstract public void getValues (Object instance, Object[] values);
+
+	/** Sets each non-final field from the array, in the same order as {@link #getKeys()}. */
+	abstract public void setValues (Object instance, Object[] values);
+
+	/** Sets the non-final field with the specified name, found using a switch on the name's hash code.
+	 * @return false if there is no such field. */
+	abstract public boolean set (Object instance, String name, Object value);
+
+	/** Returns a new {@link FieldMap} containing the value of each field. The map shares its key array with other maps created by
+	 * this MapAccess. */
+	public FieldMap toMap (Object instance) {
+		Object[] values = new Object[keys.length];
+		getValues(instance, values);
+		return new FieldMap(keys, values);
+	}
+
+	/** Sets the fields of the instance from the map. When the map was created by {@link #toMap(Object)} on this MapAccess, the
+	 * values are set by index without looking up the names. */
+	public void fromMap (Map<String, ?> map, Object instance) {
+		if (map instanceof FieldMap && ((FieldMap)map).keys == keys) {
+			setValues(instance, ((FieldMap)map).values);
+			return;
+		}
+		for (Entry<String, ?> entry : map.entrySet())
+			set(instance, entry.getKey(), entry.getValue());
+	}
+
+	/** Returns the field names used as map keys. The returned array must not be modified. */
+	public String[] getKeys () {
+		return keys;
+	}
+
+	public Class[] getTypes () {
+		return types;
+	}
+
+	/** Called by the generated methods to set long fields. */
+	static protected long toLong (Object value) {
+		Number number = (Number)value;
+		if (number instanceof Double || number instanceof Float) {
+			double d = number.doubleValue();
+			if (d >= -0x1p63 && d < 0x1p63 && d == (long)d) return (long)d;
+		} else if (number instanceof BigInteger) {
+			if (((BigInteger)number).bitLength() < 64) return number.longValue();
+		} else if (number instanceof BigDecimal) {
+			try {
+				return ((BigDecimal)number).longValueExact();
+			} catch (ArithmeticException ignored) {
+			}
+		} else
+			return number.longValue();
+		throw new IllegalArgumentException("Value can't be converted to long: " + value);
+	}
+
+	/** Called by the generated methods to set int fields. */
+	static protected int toInt (Object value) {
+		long result = toLong(value);
+		if (result != (int)result) throw new IllegalArgumentException("Value can't be converted to int: " + value);
+		return (int)result;
+	}
+
+	/** Called by the generated methods to set short fields. */
+	static protected short toShort (Object value) {
+		long result = toLong(value);
+		if (result != (short)result) throw new IllegalArgumentException("Value can't be converted to short: " + value);
+		return (short)result;
+	}
+
+	/** Called by the generated methods to set byte fields. */
+	static protected byte toByte (Object value) {
+		long result = toLong(value);
+		if (result != (byte)result) throw new IllegalArgumentException("Value can't be converted to byte: " + value);
+		return (byte)result;
+	}
+
+	/** Called by the generated methods to set float fields. The value is rounded to the nearest float, so only finite values
+	 * outside the range of float are rejected. */
+	static protected float toFloat (Object value) {
+		double d = toDouble(value);
+		float result = (float)d;
+		if (Float.isInfinite(result) && !Double.isInfinite(d))
+			throw new IllegalArgumentException("Value can't be converted to float: " + value);
+		return result;
+	}
+
+	/** Called by the generated methods to set double fields. The value is rounded to the nearest double, so only finite values
+	 * outside the range of double, such as a large BigDecimal, are rejected. */
+	static protected double toDouble (Object value) {
+		Number number = (Number)value;
+		double result = number.doubleValue();
+		if (Double.isInfinite(result) && !(number instanceof Double) && !(number instanceof Float))
+			throw new IllegalArgumentException("Value can't be converted to double: " + value);
+		return result;
+	}
+
+	/** @param type Must not be the Object class, an interface, a primitive type, or void. */
+	static public MapAccess get (Class type) {
+		if (type.getSuperclass() == null)
+			throw new IllegalArgumentException("The type must not be the Object class, an interface, a primitive type, or void.");
+
+		ArrayList<Field> allFields = new ArrayList();
+		Class nextClass = type;
+		while (nextClass != Object.class) {
+			for (Field field : nextClass.getDeclaredFields()) {
+				int modifiers = field.getModifiers();
+				if (Modifier.isStatic(modifiers)) continue;
+				if (Modifier.isPrivate(modifiers)) continue;
+				allFields.add(field);
+			}
+			nextClass = nextClass.getSuperclass();
+		}
+
+		String className = type.getName();
+		String accessClassName = className + "MapAccess";
+		if (accessClassName.startsWith("java.")) accessClassName = "reflectasm." + accessClassName;
+
+		ArrayList<Field> fields = new ArrayList();
+		ArrayList<String> keys = new ArrayList();
+		Class accessClass;
+		AccessClassLoader loader = AccessClassLoader.get(type);
+		loader.lock(accessClassName);
+		try {
+			for (Field field : allFields) {
+				if (!loader.isAccessible(type, field.getDeclaringClass(), field.getModifiers())) continue;
+				fields.add(field);
+				// Fields are found from the type up, so a field hidden by a subclass field comes later.
+				String key = field.getName();
+				if (keys.contains(key)) key = field.getDeclaringClass().getName() + '.' + key;
+				keys.add(key);
+			}
+
+			accessClass = loader.loadAccessClass(accessClassName);
+			if (accessClass == null) {
+				String accessClassNameInternal = accessClassName.replace('.', '/');
+				String classNameInternal = className.replace('.', '/');
+
+				ClassWriter cw = new ClassWriter(0);
+				cw.visit(V1_6, ACC_PUBLIC + ACC_SUPER, accessClassNameInternal, null, "com/esotericsoftware/reflectasm/MapAccess",
+					null);
+				insertConstructor(cw);
+				insertToMap(cw, classNameInternal, fields, keys);
+				insertGetValues(cw, classNameInternal, fields);
+				insertSetValues(cw, classNameInternal, fields);
+				insertSet(cw, classNameInternal, fields, keys);
+				cw.visitEnd();
+				accessClass = loader.defineAccessClass(type, accessClassName, cw.toByteArray());
+			}
+		} finally {
+			loader.unlock(accessClassName);
+		}
+		try {
+			MapAccess access = (MapAccess)accessClass.newInstance();
+			access.keys = new String[fields.size()];
+			access.types = new Class[fields.size()];
+			for (int i = 0, n = fields.size(); i < n; i++) {
+				access.keys[i] = keys.get(i);
+				access.types[i] = fields.get(i).getType();
+			}
+			return access;
+		} catch (Throwable t) {
+			throw new RuntimeException("Error constructing map access class: " + accessClassName, t);
+		}
+	}
+
+	static private void insertConstructor (ClassWriter cw) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, "com/esotericsoftware/reflectasm/MapAccess", "<init>", "()V");
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(1, 1);
+		mv.visitEnd();
+	}
+
+	static private void insertToMap (ClassWriter cw, String classNameInternal, ArrayList<Field> fields, ArrayList<String> keys) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "toMap", "(Ljava/lang/Object;Ljava/util/Map;)V", null, null);
+		mv.visitCode();
+		for (int i = 0, n = fields.size(); i < n; i++) {
+			Field field = fields.get(i);
+			mv.visitVarInsn(ALOAD, 2);
+			mv.visitLdcInsn(keys.get(i));
+			insertGetBoxed(mv, classNameInternal, field);
+			mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Map", "put", "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;",
+				true);
+			mv.visitInsn(POP);
+		}
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(4, 3);
+		mv.visitEnd();
+	}
+
+	static private void insertGetValues (ClassWriter cw, String classNameInternal, ArrayList<Field> fields) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "getValues", "(Ljava/lang/Object;[Ljava/lang/Object;)V", null, null);
+		mv.visitCode();
+		for (int i = 0, n = fields.size(); i < n; i++) {
+			mv.visitVarInsn(ALOAD, 2);
+			mv.visitIntInsn(SIPUSH, i);
+			insertGetBoxed(mv, classNameInternal, fields.get(i));
+			mv.visitInsn(AASTORE);
+		}
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(4, 3);
+		mv.visitEnd();
+	}
+
+	static private void insertSetValues (ClassWriter cw, String classNameInternal, ArrayList<Field> fields) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "setValues", "(Ljava/lang/Object;[Ljava/lang/Object;)V", null, null);
+		mv.visitCode();
+		for (int i = 0, n = fields.size(); i < n; i++) {
+			Field field = fields.get(i);
+			if (Modifier.isFinal(field.getModifiers())) continue;
+			Label skipLabel = null;
+			if (field.getType().isPrimitive()) {
+				skipLabel = new Label();
+				mv.visitVarInsn(ALOAD, 2);
+				mv.visitIntInsn(SIPUSH, i);
+				mv.visitInsn(AALOAD);
+				mv.visitJumpInsn(IFNULL, skipLabel);
+			}
+			mv.visitVarInsn(ALOAD, 1);
+			mv.visitTypeInsn(CHECKCAST, classNameInternal);
+			mv.visitVarInsn(ALOAD, 2);
+			mv.visitIntInsn(SIPUSH, i);
+			mv.visitInsn(AALOAD);
+			insertSetUnboxed(mv, field);
+			if (skipLabel != null) {
+				mv.visitLabel(skipLabel);
+				mv.visitFrame(F_SAME, 0, null, 0, null);
+			}
+		}
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(4, 3);
+		mv.visitEnd();
+	}
+
+	static private void insertSet (ClassWriter cw, String classNameInternal, ArrayList<Field> fields, ArrayList<String> keys) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "set", "(Ljava/lang/Object;Ljava/lang/String;Ljava/lang/Object;)Z", null,
+			null);
+		mv.visitCode();
+
+		// The indexes of the non-final fields, by the hash code of their key.
+		TreeMap<Integer, ArrayList<Integer>> hashes = new TreeMap();
+		for (int i = 0, n = fields.size(); i < n; i++) {
+			if (Modifier.isFinal(fields.get(i).getModifiers())) continue;
+			int hash = keys.get(i).hashCode();
+			ArrayList<Integer> bucket = hashes.get(hash);
+			if (bucket == null) hashes.put(hash, bucket = new ArrayList());
+			bucket.add(i);
+		}
+
+		Label falseLabel = new Label();
+		if (!hashes.isEmpty()) {
+			int[] hashKeys = new int[hashes.size()];
+			Label[] labels = new Label[hashKeys.length];
+			int i = 0;
+			for (Integer hash : hashes.keySet()) {
+				hashKeys[i] = hash;
+				labels[i++] = new Label();
+			}
+			mv.visitVarInsn(ALOAD, 2);
+			mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "hashCode", "()I");
+			mv.visitLookupSwitchInsn(falseLabel, hashKeys, labels);
+
+			i = 0;
+			for (ArrayList<Integer> bucket : hashes.values()) {
+				mv.visitLabel(labels[i++]);
+				mv.visitFrame(F_SAME, 0, null, 0, null);
+				for (int index : bucket) {
+					Field field = fields.get(index);
+					Label nextLabel = new Label();
+					mv.visitVarInsn(ALOAD, 2);
+					mv.visitLdcInsn(keys.get(index));
+					mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "equals", "(Ljava/lang/Object;)Z");
+					mv.visitJumpInsn(IFEQ, nextLabel);
+					Label trueLabel = new Label();
+					if (field.getType().isPrimitive()) {
+						mv.visitVarInsn(ALOAD, 3);
+						mv.visitJumpInsn(IFNULL, trueLabel);
+					}
+					mv.visitVarInsn(ALOAD, 1);
+					mv.visitTypeInsn(CHECKCAST, classNameInternal);
+					mv.visitVarInsn(ALOAD, 3);
+					insertSetUnboxed(mv, field);
+					mv.visitLabel(trueLabel);
+					mv.visitFrame(F_SAME, 0, null, 0, null);
+					mv.visitInsn(ICONST_1);
+					mv.visitInsn(IRETURN);
+					mv.visitLabel(nextLabel);
+					mv.visitFrame(F_SAME, 0, null, 0, null);
+				}
+				mv.visitJumpInsn(GOTO, falseLabel);
+			}
+			mv.visitLabel(falseLabel);
+			mv.visitFrame(F_SAME, 0, null, 0, null);
+		}
+		mv.visitInsn(ICONST_0);
+		mv.visitInsn(IRETURN);
+		mv.visitMaxs(3, 4);
+		mv.visitEnd();
+	}
+
+	/** Pushes the boxed value of the field of the instance in local 1. */
+	static private void insertGetBoxed (MethodVisitor mv, String classNameInternal, Field field) {
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitTypeInsn(CHECKCAST, classNameInternal);
+		Type fieldType = Type.getType(field.getType());
+		mv.visitFieldInsn(GETFIELD, field.getDeclaringClass().getName().replace('.', '/'), field.getName(),
+			fieldType.getDescriptor());
+		if (field.getType().isPrimitive()) {
+			Class wrapper = MapperAccess.wrap(field.getType());
+			mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(wrapper), "valueOf",
+				"(" + fieldType.getDescriptor() + ")" + Type.getDescriptor(wrapper));
+		}
+	}
+
+	/** Converts the value on the stack to the type of the field and stores it in the instance below it. */
+	static private void insertSetUnboxed (MethodVisitor mv, Field field) {
+		Type fieldType = Type.getType(field.getType());
+		switch (fieldType.getSort()) {
+		case Type.BOOLEAN:
+			mv.visitTypeInsn(CHECKCAST, "java/lang/Boolean");
+			mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Boolean", "booleanValue", "()Z");
+			break;
+		case Type.CHAR:
+			mv.visitTypeInsn(CHECKCAST, "java/lang/Character");
+			mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Character", "charValue", "()C");
+			break;
+		case Type.BYTE:
+		case Type.SHORT:
+		case Type.INT:
+		case Type.LONG:
+		case Type.FLOAT:
+		case Type.DOUBLE:
+			// Range checked, see toLong and toDouble.
+			String name = fieldType.getClassName();
+			mv.visitMethodInsn(INVOKESTATIC, "com/esotericsoftware/reflectasm/MapAccess",
+				"to" + Character.toUpperCase(name.charAt(0)) + name.substring(1), "(Ljava/lang/Object;)" + fieldType.getDescriptor());
+			break;
+		case Type.ARRAY:
+			mv.visitTypeInsn(CHECKCAST, fieldType.getDescriptor());
+			break;
+		case Type.OBJECT:
+			mv.visitTypeInsn(CHECKCAST, fieldType.getInternalName());
+			break;
+		}
+		mv.visitFieldInsn(PUTFIELD, field.getDeclaringClass().getName().replace('.', '/'), field.getName(),
+			fieldType.getDescriptor());
+	}
+}
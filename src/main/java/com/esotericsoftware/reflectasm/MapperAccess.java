@@ -0,0 +1,260 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import static org.objectweb.asm.Opcodes.*;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+/** Copies the properties of a source class to the properties with the same name of a target class, using a single generated
+ * class. Properties are read with a getter or field and written with a setter or field. Values are converted inline when
+ * needed: primitive widening (for example int to long), boxing (int to Integer or Number), unboxing (Integer to int or long)
+ * and widening followed by boxing (int to Long). A null value is not copied to a primitive property. Properties whose types
+ * can't be converted are not copied. */
+public abstract class MapperAccess<S, T> {
+	private Class<T> targetType;
+	private String[] propertyNames;
+	private volatile ConstructorAccess<T> constructorAccess;
+
+	/** Copies the properties from the source to the target. */
+	abstract public void map (S source, T target);
+
+	/** Creates a new target instance using {@link ConstructorAccess} and copies the properties from the source to it. */
+	public T map (S source) {
+		ConstructorAccess<T> constructorAccess = this.constructorAccess;
+		if (constructorAccess == null) this.constructorAccess = constructorAccess = ConstructorAccess.get(targetType);
+		T target = constructorAccess.newInstance();
+		map(source, target);
+		return target;
+	}
+
+	/** Returns the names of the properties that are copied. */
+	public String[] getPropertyNames () {
+		return propertyNames;
+	}
+
+	/** @param sourceType The type of the objects to copy properties from. The target type must be visible from its class loader or
+	 *           the target type's class loader must be able to see it.
+	 * @param targetType The type of the objects to copy properties to. */
+	static public <S, T> MapperAccess<S, T> get (Class<S> sourceType, Class<T> targetType) {
+		if (sourceType.isPrimitive() || sourceType.isArray() || targetType.isPrimitive() || targetType.isArray())
+			throw new IllegalArgumentException("The types must not be primitive types or arrays.");
+
+		// The access class is defined with the target type when possible, so it can reach its protected and package-private members.
+		Class hostType;
+		String accessClassName;
+		if (isVisible(sourceType, targetType.getClassLoader())) {
+			hostType = targetType;
+			accessClassName = AccessClassLoader
+				.appendName(new StringBuilder(64).append(targetType.getName()).append("MapperAccess$From"), sourceType.getName())
+				.toString();
+		} else if (isVisible(targetType, sourceType.getClassLoader())) {
+			hostType = sourceType;
+			accessClassName = AccessClassLoader
+				.appendName(new StringBuilder(64).append(sourceType.getName()).append("MapperAccess$To"), targetType.getName())
+				.toString();
+		} else
+			throw new IllegalArgumentException("The class loaders of the types can't see each other: " + sourceType.getName() + ", "
+				+ targetType.getName());
+		if (accessClassName.startsWith("java.")) accessClassName = "reflectasm." + accessClassName;
+
+		ArrayList<Property[]> mappings = new ArrayList();
+		Class accessClass;
+		AccessClassLoader loader = AccessClassLoader.get(hostType);
+		// The generated map method casts to both types, so a type that isn't public must be in the package of the access class.
+		if (!loader.isAccessible(hostType, sourceType, Modifier.PUBLIC))
+			throw new IllegalArgumentException("Source type cannot be accessed by the access class: " + sourceType.getName());
+		if (!loader.isAccessible(hostType, targetType, Modifier.PUBLIC))
+			throw new IllegalArgumentException("Target type cannot be accessed by the access class: " + targetType.getName());
+		loader.lock(accessClassName);
+		try {
+			HashMap<String, Property> targetProperties = new HashMap();
+			for (Property property : Property.getProperties(targetType, loader, hostType))
+				if (property.isWritable()) targetProperties.put(property.name, property);
+			for (Property sourceProperty : Property.getProperties(sourceType, loader, hostType)) {
+				if (!sourceProperty.isReadable()) continue;
+				Property targetProperty = targetProperties.get(sourceProperty.name);
+				if (targetProperty != null && isConvertible(sourceProperty.type, targetProperty.type))
+					mappings.add(new Property[] {sourceProperty, targetProperty});
+			}
+
+			accessClass = loader.loadAccessClass(accessClassName);
+			if (accessClass == null) {
+				String accessClassNameInternal = accessClassName.replace('.', '/');
+
+				ClassWriter cw = new ClassWriter(0);
+				cw.visit(V1_6, ACC_PUBLIC + ACC_SUPER, accessClassNameInternal, null, "com/esotericsoftware/reflectasm/MapperAccess",
+					null);
+				insertConstructor(cw);
+				insertMap(cw, accessClassNameInternal, Type.getInternalName(sourceType), Type.getInternalName(targetType), mappings);
+				cw.visitEnd();
+				accessClass = loader.defineAccessClass(hostType, accessClassName, cw.toByteArray());
+			}
+		} finally {
+			loader.unlock(accessClassName);
+		}
+		try {
+			MapperAccess<S, T> access = (MapperAccess<S, T>)accessClass.newInstance();
+			access.targetType = targetType;
+			access.propertyNames = new String[mappings.size()];
+			for (int i = 0, n = mappings.size(); i < n; i++)
+				access.propertyNames[i] = mappings.get(i)[0].name;
+			return access;
+		} catch (Throwable t) {
+			throw new RuntimeException("Error constructing mapper access class: " + accessClassName, t);
+		}
+	}
+
+	static private boolean isVisible (Class type, ClassLoader loader) {
+		try {
+			return Class.forName(type.getName(), false, loader) == type;
+		} catch (ClassNotFoundException ex) {
+			return false;
+		}
+	}
+
+	static private void insertConstructor (ClassWriter cw) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, "com/esotericsoftware/reflectasm/MapperAccess", "<init>", "()V");
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(1, 1);
+		mv.visitEnd();
+	}
+
+	static private void insertMap (ClassWriter cw, String accessClassNameInternal, String sourceNameInternal,
+		String targetNameInternal, ArrayList<Property[]> mappings) {
+		Object[] locals = {accessClassNameInternal, "java/lang/Object", "java/lang/Object", sourceNameInternal, targetNameInternal};
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "map", "(Ljava/lang/Object;Ljava/lang/Object;)V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitTypeInsn(CHECKCAST, sourceNameInternal);
+		mv.visitVarInsn(ASTORE, 3);
+		mv.visitVarInsn(ALOAD, 2);
+		mv.visitTypeInsn(CHECKCAST, targetNameInternal);
+		mv.visitVarInsn(ASTORE, 4);
+
+		for (Property[] mapping : mappings) {
+			Property sourceProperty = mapping[0], targetProperty = mapping[1];
+			Class from = sourceProperty.type, to = targetProperty.type;
+			mv.visitVarInsn(ALOAD, 4);
+			mv.visitVarInsn(ALOAD, 3);
+			sourceProperty.insertGet(mv);
+			if (!from.isPrimitive() && to.isPrimitive()) {
+				// Unboxing: a null value leaves the target property unchanged.
+				Label convertLabel = new Label(), endLabel = new Label();
+				mv.visitInsn(DUP);
+				mv.visitJumpInsn(IFNONNULL, convertLabel);
+				mv.visitInsn(POP2);
+				mv.visitJumpInsn(GOTO, endLabel);
+				mv.visitLabel(convertLabel);
+				mv.visitFrame(F_FULL, locals.length, locals, 2, new Object[] {targetNameInternal, Type.getInternalName(from)});
+				insertConvert(mv, from, to);
+				targetProperty.insertSet(mv);
+				mv.visitLabel(endLabel);
+				mv.visitFrame(F_FULL, locals.length, locals, 0, new Object[0]);
+			} else {
+				insertConvert(mv, from, to);
+				targetProperty.insertSet(mv);
+			}
+		}
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(5, 5);
+		mv.visitEnd();
+	}
+
+	static private final Class[] primitives = {boolean.class, byte.class, char.class, short.class, int.class, long.class,
+		float.class, double.class};
+	static private final Class[] wrappers = {Boolean.class, Byte.class, Character.class, Short.class, Integer.class, Long.class,
+		Float.class, Double.class};
+
+	static Class wrap (Class type) {
+		for (int i = 0; i < primitives.length; i++)
+			if (primitives[i] == type) return wrappers[i];
+		return type;
+	}
+
+	static Class unwrap (Class type) {
+		for (int i = 0; i < wrappers.length; i++)
+			if (wrappers[i] == type) return primitives[i];
+		return type;
+	}
+
+	/** Returns true if the JLS allows a widening primitive conversion from one type to the other. */
+	static boolean isWidening (Class from, Class to) {
+		if (from == to) return true;
+		if (from == byte.class) return to == short.class || to == int.class || to == long.class || to == float.class || to == double.class;
+		if (from == short.class || from == char.class) return to == int.class || to == long.class || to == float.class || to == double.class;
+		if (from == int.class) return to == long.class || to == float.class || to == double.class;
+		if (from == long.class) return to == float.class || to == double.class;
+		if (from == float.class) return to == double.class;
+		return false;
+	}
+
+	static boolean isConvertible (Class from, Class to) {
+		if (from.isPrimitive()) {
+			if (to.isPrimitive()) return isWidening(from, to);
+			return to.isAssignableFrom(wrap(from)) || (unwrap(to).isPrimitive() && isWidening(from, unwrap(to)));
+		}
+		if (to.isPrimitive()) return unwrap(from).isPrimitive() && isWidening(unwrap(from), to);
+		return to.isAssignableFrom(from);
+	}
+
+	/** Converts the value on the stack. The value must not be null when unboxing.
+	 * @see #isConvertible(Class, Class) */
+	static void insertConvert (MethodVisitor mv, Class from, Class to) {
+		if (from == to) return;
+		if (!from.isPrimitive()) {
+			if (!to.isPrimitive()) return; // Assignable reference.
+			Class primitive = unwrap(from);
+			mv.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(from), primitive.getName() + "Value",
+				"()" + Type.getDescriptor(primitive));
+			insertWiden(mv, primitive, to);
+			return;
+		}
+		if (to.isPrimitive()) {
+			insertWiden(mv, from, to);
+			return;
+		}
+		Class wrapper = to.isAssignableFrom(wrap(from)) ? wrap(from) : to;
+		Class primitive = unwrap(wrapper);
+		insertWiden(mv, from, primitive);
+		mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(wrapper), "valueOf",
+			"(" + Type.getDescriptor(primitive) + ")" + Type.getDescriptor(wrapper));
+	}
+
+	static private void insertWiden (MethodVisitor mv, Class from, Class to) {
+		if (from == to) return;
+		if (from == long.class) {
+			mv.visitInsn(to == float.class ? L2F : L2D);
+		} else if (from == float.class) {
+			mv.visitInsn(F2D);
+		} else if (to == long.class) {
+			mv.visitInsn(I2L);
+		} else if (to == float.class) {
+			mv.visitInsn(I2F);
+		} else if (to == double.class) {
+			mv.visitInsn(I2D);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+import org.objectweb.asm.Type;
+
+/** The name, descriptor and modifiers of a field or method, as needed to generate bytecode. The reflective Field or Method and
+ * the Class objects for the member's types are only looked up when asked for. */
+final class MemberInfo {
+	final Class declaringClass;
+	final String name, descriptor;
+	final int modifiers;
+	private Object member;
+
+	MemberInfo (Class declaringClass, String name, String descriptor, int modifiers) {
+		this.declaringClass = declaringClass;
+		this.name = name;
+		this.descriptor = descriptor;
+		this.modifiers = modifiers;
+	}
+
+	MemberInfo (Field field) {
+		this(field.getDeclaringClass(), field.getName(), Type.getDescriptor(field.getType()), field.getModifiers());
+		member = field;
+	}
+
+	MemberInfo (Method method) {
+		this(method.getDeclaringClass(), method.getName(), Type.getMethodDescriptor(method), method.getModifiers());
+		member = method;
+	}
+
+	String getName () {
+		return name;
+	}
+
+	String getDescriptor () {
+		return descriptor;
+	}
+
+	int getModifiers () {
+		return modifiers;
+	}
+
+	Class getDeclaringClass () {
+		return declaringClass;
+	}
+
+	/** Returns the type of the field. */
+	Class getType () {
+		return toClass(Type.getType(descriptor));
+	}
+
+	Class getReturnType () {
+		return toClass(Type.getReturnType(descriptor));
+	}
+
+	Class[] getParameterTypes () {
+		Type[] argumentTypes = Type.getArgumentTypes(descriptor);
+		Class[] parameterTypes = new Class[argumentTypes.length];
+		for (int i = 0, n = argumentTypes.length; i < n; i++)
+			parameterTypes[i] = toClass(argumentTypes[i]);
+		return parameterTypes;
+	}
+
+	Field getField () {
+		if (member == null) {
+			try {
+				member = declaringClass.getDeclaredField(name);
+			} catch (NoSuchFieldException ex) {
+				throw new RuntimeException("Field not found: " + declaringClass.getName() + "." + name, ex);
+			}
+		}
+		return (Field)member;
+	}
+
+	Method getMethod () {
+		if (member == null) {
+			try {
+				member = declaringClass.getDeclaredMethod(name, getParameterTypes());
+			} catch (NoSuchMethodException ex) {
+				throw new RuntimeException("Method not found: " + declaringClass.getName() + "." + name + descriptor, ex);
+			}
+		}
+		return (Method)member;
+	}
+
+	private Class toClass (Type type) {
+		switch (type.getSort()) {
+		case Type.VOID:
+			return void.class;
+		case Type.BOOLEAN:
+			return boolean.class;
+		case Type.CHAR:
+			return char.class;
+		case Type.BYTE:
+			return byte.class;
+		case Type.SHORT:
+			return short.class;
+		case Type.INT:
+			return int.class;
+		case Type.FLOAT:
+			return float.class;
+		case Type.LONG:
+			return long.class;
+		case Type.DOUBLE:
+			return double.class;
+		}
+		String className = type.getSort() == Type.ARRAY ? type.getDescriptor().replace('/', '.') : type.getClassName();
+		try {
+			return Class.forName(className, false, declaringClass.getClassLoader());
+		} catch (ClassNotFoundException ex) {
+			throw new RuntimeException("Unable to load type of member: " + declaringClass.getName() + "." + name, ex);
+		}
+	}
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.objectweb.asm.Type;
+
+/** The names and descriptors of the fields or methods of an access class, stored once per access class and shared by all its
+ * access objects, so creating an access object for a type whose access class already exists doesn't scan the type again. Names
+ * and descriptors are interned. The Class objects for the member types and the reflective objects are looked up only when first
+ * asked for. The arrays are never modified after they are created and must not be returned to users without copying them. */
+final class MemberMetadata {
+	static private final ClassValue<AtomicReference<MemberMetadata[]>> accessClassMetadata = new ClassValue<AtomicReference<MemberMetadata[]>>() {
+		protected AtomicReference<MemberMetadata[]> computeValue (Class type) {
+			return new AtomicReference();
+		}
+	};
+
+	final String[] names, descriptors;
+	final Class[] declaringClasses;
+	/** The number of parameters of each method, or null for fields. */
+	final int[] parameterCounts;
+	private volatile Class[] types;
+	private volatile Class[][] parameterTypes;
+	private volatile Field[] fields;
+
+	MemberMetadata (ArrayList<MemberInfo> members) {
+		int n = members.size();
+		names = new String[n];
+		descriptors = new String[n];
+		declaringClasses = new Class[n];
+		for (int i = 0; i < n; i++) {
+			MemberInfo member = members.get(i);
+			names[i] = member.getName().intern();
+			descriptors[i] = member.getDescriptor().intern();
+			declaringClasses[i] = member.getDeclaringClass();
+		}
+		if (n > 0 && descriptors[0].charAt(0) == '(') {
+			parameterCounts = new int[n];
+			for (int i = 0; i < n; i++)
+				parameterCounts[i] = Type.getArgumentTypes(descriptors[i]).length;
+		} else
+			parameterCounts = null;
+	}
+
+	int size () {
+		return names.length;
+	}
+
+	/** Returns the index of the first member with the name, or -1. */
+	int indexOf (String name) {
+		String[] names = this.names;
+		for (int i = 0, n = names.length; i < n; i++)
+			if (names[i].equals(name)) return i;
+		return -1;
+	}
+
+	/** Returns the index of the first method with the name and parameter types, or -1. The parameter types are compared by
+	 * descriptor, so no Class objects are looked up. */
+	int indexOf (String name, Class[] parameterTypes) {
+		StringBuilder buffer = new StringBuilder(32).append('(');
+		if (parameterTypes != null) {
+			for (Class parameterType : parameterTypes)
+				buffer.append(Type.getDescriptor(parameterType));
+		}
+		String arguments = buffer.append(')').toString();
+		for (int i = 0, n = names.length; i < n; i++)
+			if (names[i].equals(name) && descriptors[i].startsWith(arguments)) return i;
+		return -1;
+	}
+
+	/** Returns the index of the first method with the name and number of parameters, or -1. */
+	int indexOf (String name, int parameterCount) {
+		for (int i = 0, n = names.length; i < n; i++)
+			if (names[i].equals(name) && parameterCounts[i] == parameterCount) return i;
+		return -1;
+	}
+
+	/** Returns the type of each field, or the return type of each method. */
+	Class[] getTypes () {
+		Class[] types = this.types;
+		if (types == null) {
+			boolean methods = parameterCounts != null;
+			types = new Class[names.length];
+			for (int i = 0, n = types.length; i < n; i++)
+				types[i] = methods ? getMember(i).getReturnType() : getMember(i).getType();
+			this.types = types;
+		}
+		return types;
+	}
+
+	Class[][] getParameterTypes () {
+		Class[][] parameterTypes = this.parameterTypes;
+		if (parameterTypes == null) {
+			parameterTypes = new Class[names.length][];
+			for (int i = 0, n = parameterTypes.length; i < n; i++)
+				parameterTypes[i] = getMember(i).getParameterTypes();
+			this.parameterTypes = parameterTypes;
+		}
+		return parameterTypes;
+	}
+
+	Field[] getFields () {
+		Field[] fields = this.fields;
+		if (fields == null) {
+			fields = new Field[names.length];
+			for (int i = 0, n = fields.length; i < n; i++)
+				fields[i] = getMember(i).getField();
+			this.fields = fields;
+		}
+		return fields;
+	}
+
+	private MemberInfo getMember (int index) {
+		return new MemberInfo(declaringClasses[index], names[index], descriptors[index], 0);
+	}
+
+	/** Returns the metadata stored for the access class, or null. */
+	static MemberMetadata[] get (Class accessClass) {
+		return accessClassMetadata.get(accessClass).get();
+	}
+
+	/** Stores the metadata for the access class, unless metadata was already stored.
+	 * @return The metadata stored for the access class. */
+	static MemberMetadata[] put (Class accessClass, MemberMetadata[] metadata) {
+		AtomicReference<MemberMetadata[]> reference = accessClassMetadata.get(accessClass);
+		if (!reference.compareAndSet(null, metadata)) return reference.get();
+		return metadata;
+	}
+}
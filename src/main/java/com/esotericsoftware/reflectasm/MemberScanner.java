@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import static org.objectweb.asm.Opcodes.*;
+
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+
+/** Finds the fields and methods that {@link FieldAccess}, {@link MethodAccess} and {@link ClassAccess} generate code for.
+ * <p>
+ * By default the members are found with reflection. When reading class files is enabled, the members are instead read from
+ * each class file with ASM's ClassReader, which gives the names, descriptors and modifiers without creating reflective objects or
+ * filling the JDK's reflection caches. The reflective objects are then created only when an access object is asked for them. A
+ * class whose class file can't be found or read, such as a generated class, is scanned with reflection. Methods may be indexed in
+ * a different order than with reflection. */
+public final class MemberScanner {
+	static private volatile boolean readClassFiles;
+
+	private MemberScanner () {
+	}
+
+	/** If true, members are read from class files rather than found with reflection. Default is false. */
+	static public void setReadClassFiles (boolean readClassFiles) {
+		MemberScanner.readClassFiles = readClassFiles;
+	}
+
+	static public boolean getReadClassFiles () {
+		return readClassFiles;
+	}
+
+	/** Returns the non-static, non-private fields of the type and its superclasses. */
+	static ArrayList<MemberInfo> getFields (Class type) {
+		ArrayList<MemberInfo> fields = new ArrayList<MemberInfo>();
+		Class nextClass = type;
+		while (nextClass != Object.class) {
+			if (!readClassFiles || !readMembers(nextClass, fields, true)) {
+				Field[] declaredFields = nextClass.getDeclaredFields();
+				for (int i = 0, n = declaredFields.length; i < n; i++) {
+					Field field = declaredFields[i];
+					int modifiers = field.getModifiers();
+					if (Modifier.isStatic(modifiers)) continue;
+					if (Modifier.isPrivate(modifiers)) continue;
+					fields.add(new MemberInfo(field));
+				}
+			}
+			nextClass = nextClass.getSuperclass();
+		}
+		return fields;
+	}
+
+	/** Returns the non-private methods of the type and its superclasses, or of the interface and its superinterfaces. */
+	static ArrayList<MemberInfo> getMethods (Class type) {
+		ArrayList<MemberInfo> methods = new ArrayList<MemberInfo>();
+		if (!type.isInterface()) {
+			Class nextClass = type;
+			while (nextClass != Object.class) {
+				addDeclaredMethods(nextClass, methods);
+				nextClass = nextClass.getSuperclass();
+			}
+		} else
+			addInterfaceMethods(type, methods);
+		return methods;
+	}
+
+	static private void addInterfaceMethods (Class interfaceType, ArrayList<MemberInfo> methods) {
+		addDeclaredMethods(interfaceType, methods);
+		for (Class nextInterface : interfaceType.getInterfaces())
+			addInterfaceMethods(nextInterface, methods);
+	}
+
+	static private void addDeclaredMethods (Class type, ArrayList<MemberInfo> methods) {
+		if (readClassFiles && readMembers(type, methods, false)) return;
+		for (Method method : type.getDeclaredMethods()) {
+			if (Modifier.isPrivate(method.getModifiers())) continue;
+			methods.add(new MemberInfo(method));
+		}
+	}
+
+	/** Adds the members declared by the type's class file, if it can be read.
+	 * @return false if the class file could not be read, in which case nothing was added. */
+	static private boolean readMembers (final Class type, ArrayList<MemberInfo> members, final boolean fields) {
+		ClassReader reader;
+		try {
+			InputStream input = type.getResourceAsStream("/" + type.getName().replace('.', '/') + ".class");
+			if (input == null) return false;
+			try {
+				reader = new ClassReader(input);
+			} finally {
+				input.close();
+			}
+		} catch (Exception ex) { // IllegalArgumentException for class file versions newer than ASM supports.
+			return false;
+		}
+		final ArrayList<MemberInfo> declared = new ArrayList<MemberInfo>();
+		reader.accept(new ClassVisitor(ASM5) {
+			public FieldVisitor visitField (int access, String name, String desc, String signature, Object value) {
+				if (fields && (access & (ACC_STATIC | ACC_PRIVATE)) == 0) declared.add(new MemberInfo(type, name, desc, access & 0xffff));
+				return null;
+			}
+
+			public MethodVisitor visitMethod (int access, String name, String desc, String signature, String[] exceptions) {
+				if (!fields && (access & ACC_PRIVATE) == 0 && name.charAt(0) != '<')
+					declared.add(new MemberInfo(type, name, desc, access & 0xffff));
+				return null;
+			}
+		}, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		members.addAll(declared);
+		return true;
+	}
+}
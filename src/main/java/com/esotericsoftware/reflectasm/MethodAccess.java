@@ -15,14 +15,17 @@ package com.esotericsoftware.reflectasm;
 
 import org.objectweb.asm.*;
 
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.objectweb.asm.Opcodes.*;
 
 public abstract class MethodAccess {
+    private MemberMetadata metadata;
+    // Copies of the shared metadata returned to users, made the first time they are asked for.
     private String[] methodNames;
     private Class[][] parameterTypes;
     private Class[] returnTypes;
@@ -48,77 +51,106 @@ public abstract class MethodAccess {
 
     /** Returns the index of the first method with the specified name. */
     public int getIndex(String methodName) {
-        for (int i = 0, n = methodNames.length; i < n; i++){
-            if (methodNames[i].equals(methodName)) {
-                return i;
-            }
+        int index = metadata.indexOf(methodName);
+        if (index == -1) {
+            throw new IllegalArgumentException("Unable to find non-private method: " + methodName);
         }
-        throw new IllegalArgumentException("Unable to find non-private method: " + methodName);
+        return index;
     }
 
     /** Returns the index of the first method with the specified name and param types. */
     public int getIndex(String methodName, Class... paramTypes) {
-        for (int i = 0, n = methodNames.length; i < n; i++){
-            if (methodNames[i].equals(methodName) && Arrays.equals(paramTypes, parameterTypes[i])) {
-                return i;
-            }
+        int index = metadata.indexOf(methodName, paramTypes);
+        if (index == -1) {
+            throw new IllegalArgumentException("Unable to find non-private method: " + methodName + " " + Arrays.toString(paramTypes));
         }
-        throw new IllegalArgumentException("Unable to find non-private method: " + methodName + " " + Arrays.toString(paramTypes));
+        return index;
     }
 
     /** Returns the index of the first method with the specified name and the specified number of arguments. */
     public int getIndex(String methodName, int paramsCount) {
-        for (int i = 0, n = methodNames.length; i < n; i++){
-            if (methodNames[i].equals(methodName) && parameterTypes[i].length == paramsCount){
-                return i;
-            }
+        int index = metadata.indexOf(methodName, paramsCount);
+        if (index == -1) {
+            throw new IllegalArgumentException(
+                    "Unable to find non-private method: " + methodName + " with " + paramsCount + " params.");
         }
-        throw new IllegalArgumentException(
-                "Unable to find non-private method: " + methodName + " with " + paramsCount + " params.");
+        return index;
     }
 
+    /** Returns the method names. The names are interned, the array is copied once per MethodAccess from the names shared by all
+     * MethodAccess instances for the type. */
     public String[] getMethodNames() {
+        String[] methodNames = this.methodNames;
+        if (methodNames == null) this.methodNames = methodNames = metadata.names.clone();
         return methodNames;
     }
 
+    /** Returns the parameter types of each method, which are looked up the first time this is called for the type. The arrays
+     * are copied once per MethodAccess. */
     public Class[][] getParameterTypes() {
+        Class[][] parameterTypes = this.parameterTypes;
+        if (parameterTypes != null) return parameterTypes;
+        parameterTypes = metadata.getParameterTypes().clone();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            parameterTypes[i] = parameterTypes[i].clone();
+        }
+        this.parameterTypes = parameterTypes;
         return parameterTypes;
     }
 
+    /** Returns the return types, which are looked up the first time this is called for the type. The array is copied once per
+     * MethodAccess. */
     public Class[] getReturnTypes() {
+        Class[] returnTypes = this.returnTypes;
+        if (returnTypes == null) this.returnTypes = returnTypes = metadata.getTypes().clone();
         return returnTypes;
     }
 
-    /** Creates a new MethodAccess for the specified type.
+    public int getMethodCount() {
+        return metadata.size();
+    }
+
+    /** Returns the name of the method at the index, without copying the method names. */
+    public String getMethodName(int methodIndex) {
+        return metadata.names[methodIndex];
+    }
+
+    /** Returns a copy of the parameter types of the method at the index, without copying the parameter types of every method. */
+    public Class[] getParameterTypes(int methodIndex) {
+        return metadata.getParameterTypes()[methodIndex].clone();
+    }
+
+    /** Returns the return type of the method at the index, without copying the return types. */
+    public Class getReturnType(int methodIndex) {
+        return metadata.getTypes()[methodIndex];
+    }
+
+    /** Creates a new MethodAccess for the specified type, defining the access class with the lookup.
+     * @see FieldAccess#get(Class, MethodHandles.Lookup) */
+    static public MethodAccess get(Class type, MethodHandles.Lookup lookup) {
+        AccessClassLoader.get(type).addLookup(type, lookup);
+        return get(type);
+    }
+
+    /** Returns a new MethodAccess for the specified type. For types loaded by the bootstrap or platform class loader the access
+     * class is generated once and used by all callers.
      * @param type Must not be a primitive type, or void. */
     static public MethodAccess get(Class type) {
+        MethodAccess access = create(type);
+        if (AccessClassLoader.isShared(type)) sharedAccessClasses.putIfAbsent(type, access.getClass());
+        return access;
+    }
+
+    // Holds the access classes for shared types, so their AccessClassLoader isn't collected.
+    static private final ConcurrentHashMap<Class, Class> sharedAccessClasses = new ConcurrentHashMap<Class, Class>();
+
+    /** Creates a new MethodAccess for the specified type. */
+    static private MethodAccess create(Class type) {
         boolean isInterface = type.isInterface();
         if (!isInterface && type.getSuperclass() == null && type != Object.class){
             throw new IllegalArgumentException("The type must not be an interface, a primitive type, or void.");
         }
 
-        ArrayList<Method> methods = new ArrayList<Method>();
-        if (!isInterface) {
-            Class nextClass = type;
-            while (nextClass != Object.class) {
-                addDeclaredMethodsToList(nextClass, methods);
-                nextClass = nextClass.getSuperclass();
-            }
-        } else{
-            recursiveAddInterfaceMethodsToList(type, methods);
-        }
-
-        int n = methods.size();
-        String[] methodNames = new String[n];
-        Class[][] parameterTypes = new Class[n][];
-        Class[] returnTypes = new Class[n];
-        for (int i = 0; i < n; i++) {
-            Method method = methods.get(i);
-            methodNames[i] = method.getName();
-            parameterTypes[i] = method.getParameterTypes();
-            returnTypes[i] = method.getReturnType();
-        }
-
         String className = type.getName();
         String accessClassName = className + "MethodAccess";
         if (accessClassName.startsWith("java.")) {
@@ -126,10 +158,15 @@ public abstract class MethodAccess {
         }
 
         Class accessClass;
+        MemberMetadata[] metadata;
+        ArrayList<MemberInfo> methods = null;
         AccessClassLoader loader = AccessClassLoader.get(type);
-        synchronized (loader) {
+        loader.lock(accessClassName);
+        try {
             accessClass = loader.loadAccessClass(accessClassName);
             if (accessClass == null) {
+                methods = MemberScanner.getMethods(type);
+                int n = methods.size();
                 String accessClassNameInternal = accessClassName.replace('.', '/');
                 String classNameInternal = className.replace('.', '/');
 
@@ -238,14 +275,14 @@ public abstract class MethodAccess {
                             buffer.setLength(0);
                             buffer.append('(');
 
-                            Class[] paramTypes = parameterTypes[i];
-                            Class returnType = returnTypes[i];
+                            Type[] paramTypes = Type.getArgumentTypes(methods.get(i).getDescriptor());
+                            Type returnType = Type.getReturnType(methods.get(i).getDescriptor());
                             mv.visitVarInsn(ALOAD, 2);
                             for (int paramIndex = 0; paramIndex < paramTypes.length; paramIndex++) {
                                 mv.visitVarInsn(ALOAD, 1);
                                 mv.visitIntInsn(SIPUSH, paramIndex);
                                 mv.visitInsn(AALOAD);
-                                Type paramType = Type.getType(paramTypes[paramIndex]);
+                                Type paramType = paramTypes[paramIndex];
                                 switch (paramType.getSort()) {
                                     case Type.BOOLEAN:
                                         mv.visitTypeInsn(CHECKCAST, "java/lang/Boolean");
@@ -292,7 +329,7 @@ public abstract class MethodAccess {
                             }
 
                             buffer.append(')');
-                            buffer.append(Type.getDescriptor(returnType));
+                            buffer.append(returnType.getDescriptor());
                             int invoke;
                             if (isInterface) {
                                 invoke = INVOKEINTERFACE;
@@ -302,8 +339,8 @@ public abstract class MethodAccess {
                                 invoke = INVOKEVIRTUAL;
                             }
 
-                            mv.visitMethodInsn(invoke, classNameInternal, methodNames[i], buffer.toString());
-                            switch (Type.getType(returnType).getSort()) {
+                            mv.visitMethodInsn(invoke, classNameInternal, methods.get(i).getName(), buffer.toString());
+                            switch (returnType.getSort()) {
                                 case Type.VOID:
                                     mv.visitInsn(ACONST_NULL);
                                     break;
@@ -349,36 +386,25 @@ public abstract class MethodAccess {
                 }
                 cw.visitEnd();
                 byte[] data = cw.toByteArray();
-                accessClass = loader.defineAccessClass(accessClassName, data);
+                // Not a hidden class: the lambda classes created for the invokedynamic call sites reference the access class by name.
+                accessClass = loader.defineAccessClass(type, accessClassName, data, false);
+            }
+            metadata = MemberMetadata.get(accessClass);
+            if (metadata == null) {
+                if (methods == null) {
+                    methods = MemberScanner.getMethods(type);
+                }
+                metadata = MemberMetadata.put(accessClass, new MemberMetadata[] {new MemberMetadata(methods)});
             }
+        } finally {
+            loader.unlock(accessClassName);
         }
         try {
             MethodAccess access = (MethodAccess) accessClass.newInstance();
-            access.methodNames = methodNames;
-            access.parameterTypes = parameterTypes;
-            access.returnTypes = returnTypes;
+            access.metadata = metadata[0];
             return access;
         } catch (Throwable t) {
             throw new RuntimeException("Error constructing method access class: " + accessClassName, t);
         }
     }
-
-    static private void addDeclaredMethodsToList(Class type, ArrayList<Method> methods) {
-        Method[] declaredMethods = type.getDeclaredMethods();
-        for (Method method : declaredMethods) {
-            int modifiers = method.getModifiers();
-            // if (Modifier.isStatic(modifiers)) continue;
-            if (Modifier.isPrivate(modifiers)) {
-                continue;
-            }
-            methods.add(method);
-        }
-    }
-
-    static private void recursiveAddInterfaceMethodsToList(Class interfaceType, ArrayList<Method> methods) {
-        addDeclaredMethodsToList(interfaceType, methods);
-        for (Class nextInterface : interfaceType.getInterfaces()) {
-            recursiveAddInterfaceMethodsToList(nextInterface, methods);
-        }
-    }
 }
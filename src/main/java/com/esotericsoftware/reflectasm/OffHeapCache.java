@@ -0,0 +1,270 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/** A cache that stores its values serialized in direct memory rather than as objects on the heap. Values are serialized with a
+ * {@link BinarySerializer}, which uses a generated {@link SerializerAccess} for each class, and are only deserialized (created
+ * with {@link ConstructorAccess}) when they are retrieved. Keys are kept on the heap.
+ * <p>
+ * Direct memory is allocated in chunks, up to the byte budget, and divided into fixed-size blocks. A value uses as many blocks as
+ * it needs, which don't have to be contiguous. When there are not enough free blocks for a new value, entries are evicted with
+ * the clock algorithm, an approximation of LRU: each entry has a referenced flag that is set when it is retrieved, and the clock
+ * hand evicts the first entry whose flag is clear, clearing the flags it passes.
+ * <p>
+ * The class of each value is stored unless the type is final, so final types use the least memory.
+ * <p>
+ * This class is thread safe. Serialization and deserialization happen outside the lock. */
+public class OffHeapCache<K, T> {
+	private final Class<T> type;
+	private final int blockSize, blocksPerChunk, maxBlocks;
+	private final ArrayList<ByteBuffer> chunks = new ArrayList();
+	private int allocatedBlocks, usedBlocks;
+	private int[] freeBlocks = new int[16];
+	private int freeBlockCount;
+
+	private final HashMap<K, Entry<K>> entries = new HashMap();
+	private Entry<K>[] clock = new Entry[16];
+	private int clockSize, hand;
+	private int[] freeSlots = new int[16];
+	private int freeSlotCount;
+
+	private final LongAdder hits = new LongAdder(), misses = new LongAdder(), evictions = new LongAdder();
+	private final ThreadLocal<Codec> codecs = new ThreadLocal<Codec>() {
+		protected Codec initialValue () {
+			return new Codec();
+		}
+	};
+
+	/** Creates a cache with 64 byte blocks.
+	 * @param maxBytes The maximum number of bytes of direct memory used for values. */
+	public OffHeapCache (Class<T> type, long maxBytes) {
+		this(type, maxBytes, 64);
+	}
+
+	/** @param maxBytes The maximum number of bytes of direct memory used for values.
+	 * @param blockSize The unit of allocation. Smaller blocks waste less memory per value, larger blocks need less bookkeeping. */
+	public OffHeapCache (Class<T> type, long maxBytes, int blockSize) {
+		if (blockSize < 1) throw new IllegalArgumentException("blockSize must be > 0: " + blockSize);
+		if (maxBytes < blockSize) throw new IllegalArgumentException("maxBytes must be >= blockSize: " + maxBytes);
+		this.type = type;
+		this.blockSize = blockSize;
+		maxBlocks = (int)Math.min(Integer.MAX_VALUE, maxBytes / blockSize);
+		blocksPerChunk = Math.max(1, (1 << 20) / blockSize);
+	}
+
+	/** Serializes the value and stores it, replacing any value for the key and evicting entries if needed.
+	 * @throws IllegalArgumentException if the serialized value is larger than the cache. */
+	public void put (K key, T value) {
+		if (key == null) throw new IllegalArgumentException("key cannot be null.");
+		Codec codec = codecs.get();
+		BinaryOutput output = codec.output;
+		output.reset();
+		codec.serializer.writeObject(output, value, type);
+		int length = output.position();
+		int blockCount = Math.max(1, (length + blockSize - 1) / blockSize);
+		if (blockCount > maxBlocks) throw new IllegalArgumentException("Value is larger than the cache: " + length + " bytes");
+
+		synchronized (this) {
+			Entry<K> existing = entries.remove(key);
+			if (existing != null) free(existing);
+			while (freeBlockCount + maxBlocks - allocatedBlocks < blockCount) {
+				evict();
+				evictions.increment();
+			}
+
+			int[] blocks = new int[blockCount];
+			byte[] bytes = output.getBuffer();
+			for (int i = 0, offset = 0; i < blockCount; i++, offset += blockSize) {
+				int block = allocateBlock();
+				blocks[i] = block;
+				ByteBuffer chunk = chunks.get(block / blocksPerChunk);
+				chunk.position((block % blocksPerChunk) * blockSize);
+				chunk.put(bytes, offset, Math.min(blockSize, length - offset));
+			}
+			usedBlocks += blockCount;
+
+			Entry<K> entry = new Entry(key, blocks, length);
+			if (freeSlotCount > 0)
+				entry.slot = freeSlots[--freeSlotCount];
+			else {
+				if (clockSize == clock.length) clock = Arrays.copyOf(clock, clockSize * 2);
+				entry.slot = clockSize++;
+			}
+			clock[entry.slot] = entry;
+			entries.put(key, entry);
+		}
+	}
+
+	/** Returns a new object deserialized from the value for the key, or null if the cache has no value for the key. */
+	public T get (K key) {
+		Codec codec = codecs.get();
+		int length;
+		synchronized (this) {
+			Entry<K> entry = entries.get(key);
+			if (entry == null) {
+				misses.increment();
+				return null;
+			}
+			hits.increment();
+			entry.referenced = true;
+			length = entry.length;
+			if (codec.bytes.length < length) codec.bytes = new byte[Math.max(length, codec.bytes.length * 2)];
+			byte[] bytes = codec.bytes;
+			int[] blocks = entry.blocks;
+			for (int i = 0, offset = 0, n = blocks.length; i < n; i++, offset += blockSize) {
+				int block = blocks[i];
+				ByteBuffer chunk = chunks.get(block / blocksPerChunk);
+				chunk.position((block % blocksPerChunk) * blockSize);
+				chunk.get(bytes, offset, Math.min(blockSize, length - offset));
+			}
+		}
+		codec.input.setBytes(codec.bytes, 0, length);
+		return codec.serializer.readObject(codec.input, type);
+	}
+
+	public synchronized boolean containsKey (K key) {
+		return entries.containsKey(key);
+	}
+
+	/** @return true if the cache had a value for the key. */
+	public synchronized boolean remove (K key) {
+		Entry<K> entry = entries.remove(key);
+		if (entry == null) return false;
+		free(entry);
+		return true;
+	}
+
+	/** Removes all entries. The direct memory already allocated is kept for reuse. */
+	public synchronized void clear () {
+		for (Entry<K> entry : entries.values())
+			free(entry);
+		entries.clear();
+	}
+
+	/** Evicts the entry at the clock hand whose referenced flag is clear. There must be at least one entry. */
+	private void evict () {
+		while (true) {
+			if (hand >= clockSize) hand = 0;
+			Entry<K> entry = clock[hand++];
+			if (entry == null) continue;
+			if (entry.referenced) {
+				entry.referenced = false;
+				continue;
+			}
+			entries.remove(entry.key);
+			free(entry);
+			return;
+		}
+	}
+
+	private void free (Entry<K> entry) {
+		int[] blocks = entry.blocks;
+		if (freeBlocks.length < freeBlockCount + blocks.length)
+			freeBlocks = Arrays.copyOf(freeBlocks, Math.max(freeBlockCount + blocks.length, freeBlocks.length * 2));
+		System.arraycopy(blocks, 0, freeBlocks, freeBlockCount, blocks.length);
+		freeBlockCount += blocks.length;
+		usedBlocks -= blocks.length;
+
+		clock[entry.slot] = null;
+		if (freeSlotCount == freeSlots.length) freeSlots = Arrays.copyOf(freeSlots, freeSlotCount * 2);
+		freeSlots[freeSlotCount++] = entry.slot;
+	}
+
+	private int allocateBlock () {
+		if (freeBlockCount > 0) return freeBlocks[--freeBlockCount];
+		if (allocatedBlocks % blocksPerChunk == 0)
+			chunks.add(ByteBuffer.allocateDirect(Math.min(blocksPerChunk, maxBlocks - allocatedBlocks) * blockSize));
+		return allocatedBlocks++;
+	}
+
+	/** Returns the number of entries. */
+	public synchronized int size () {
+		return entries.size();
+	}
+
+	/** Returns the maximum number of bytes of direct memory used for values. */
+	public long getMaxBytes () {
+		return (long)maxBlocks * blockSize;
+	}
+
+	/** Returns the number of bytes of the blocks used by values. */
+	public synchronized long getBytesUsed () {
+		return (long)usedBlocks * blockSize;
+	}
+
+	/** Returns the number of bytes of direct memory allocated so far. */
+	public synchronized long getBytesAllocated () {
+		return (long)allocatedBlocks * blockSize;
+	}
+
+	/** Returns the number of times {@link #get(Object)} found a value. */
+	public long getHits () {
+		return hits.sum();
+	}
+
+	/** Returns the number of times {@link #get(Object)} found no value. */
+	public long getMisses () {
+		return misses.sum();
+	}
+
+	/** Returns the number of entries evicted to make room for new values. */
+	public long getEvictions () {
+		return evictions.sum();
+	}
+
+	/** Returns the fraction of {@link #get(Object)} calls that found a value, or 0 if there were none. */
+	public double getHitRate () {
+		long hits = getHits(), total = hits + getMisses();
+		return total == 0 ? 0 : hits / (double)total;
+	}
+
+	public String toString () {
+		return "OffHeapCache[size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions()
+			+ ", bytes=" + getBytesUsed() + "/" + getMaxBytes() + "]";
+	}
+
+	static private class Entry<K> {
+		final K key;
+		final int[] blocks;
+		final int length;
+		int slot;
+		boolean referenced;
+
+		Entry (K key, int[] blocks, int length) {
+			this.key = key;
+			this.blocks = blocks;
+			this.length = length;
+		}
+	}
+
+	/** The serializer and buffers used by one thread. */
+	static private class Codec {
+		final BinarySerializer serializer = new BinarySerializer();
+		final BinaryOutput output = new BinaryOutput();
+		final BinaryInput input = new BinaryInput(new byte[0]);
+		byte[] bytes = new byte[256];
+
+		Codec () {
+			// Only bytes written by the cache are read, so any class can be loaded.
+			serializer.setRegistrationRequired(false);
+		}
+	}
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import static org.objectweb.asm.Opcodes.*;
+
+import java.util.ArrayList;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+/** Reads a dotted property path, such as "order.customer.address.zip", with a generated class that walks the whole chain using
+ * direct field reads and getter calls. Each segment is a property as found by {@link PropertyAccess}: a getter when the class has
+ * one, otherwise a field. If the root or any object before the last segment is null, {@link #get(Object)} returns null and the
+ * typed getters return 0 or false. */
+public abstract class PathAccess {
+	private String path;
+	private Class type;
+
+	/** Returns the value at the end of the path, boxing a primitive value. */
+	abstract public Object get (Object root);
+
+	public boolean getBoolean (Object root) {
+		throw new IllegalArgumentException("Path not declared as boolean: " + path);
+	}
+
+	public byte getByte (Object root) {
+		throw new IllegalArgumentException("Path not declared as byte: " + path);
+	}
+
+	public short getShort (Object root) {
+		throw new IllegalArgumentException("Path not declared as short: " + path);
+	}
+
+	public int getInt (Object root) {
+		throw new IllegalArgumentException("Path not declared as int: " + path);
+	}
+
+	public long getLong (Object root) {
+		throw new IllegalArgumentException("Path not declared as long: " + path);
+	}
+
+	public float getFloat (Object root) {
+		throw new IllegalArgumentException("Path not declared as float: " + path);
+	}
+
+	public double getDouble (Object root) {
+		throw new IllegalArgumentException("Path not declared as double: " + path);
+	}
+
+	public char getChar (Object root) {
+		throw new IllegalArgumentException("Path not declared as char: " + path);
+	}
+
+	public String getPath () {
+		return path;
+	}
+
+	/** Returns the declared type of the last segment of the path. */
+	public Class getType () {
+		return type;
+	}
+
+	/** @param rootType The type of the objects the path is read from. Must not be a primitive type or array.
+	 * @param path Property names separated by dots. */
+	static public PathAccess compile (Class rootType, String path) {
+		if (rootType.isPrimitive() || rootType.isArray())
+			throw new IllegalArgumentException("The type must not be a primitive type or array.");
+		String[] names = path.split("\\.", -1);
+
+		String className = rootType.getName();
+		String accessClassName = AccessClassLoader.appendName(new StringBuilder(64).append(className).append("PathAccess"), path)
+			.toString();
+		if (accessClassName.startsWith("java.")) accessClassName = "reflectasm." + accessClassName;
+
+		ArrayList<Property> segments = new ArrayList(names.length);
+		Class accessClass;
+		AccessClassLoader loader = AccessClassLoader.get(rootType);
+		loader.lock(accessClassName);
+		try {
+			Class type = rootType;
+			for (String name : names) {
+				if (type.isPrimitive() || type.isArray())
+					throw new IllegalArgumentException("Unable to read property \"" + name + "\" of " + type.getName() + ": " + path);
+				Property segment = null;
+				for (Property property : Property.getProperties(type, loader, rootType)) {
+					if (property.name.equals(name) && property.isReadable()) {
+						segment = property;
+						break;
+					}
+				}
+				if (segment == null)
+					throw new IllegalArgumentException("Unable to find readable property \"" + name + "\" of " + type.getName() + ": " + path);
+				segments.add(segment);
+				type = segment.type;
+			}
+
+			accessClass = loader.loadAccessClass(accessClassName);
+			if (accessClass == null) {
+				String accessClassNameInternal = accessClassName.replace('.', '/');
+				String classNameInternal = className.replace('.', '/');
+
+				ClassWriter cw = new ClassWriter(0);
+				cw.visit(V1_6, ACC_PUBLIC + ACC_SUPER, accessClassNameInternal, null, "com/esotericsoftware/reflectasm/PathAccess",
+					null);
+				insertConstructor(cw);
+				insertGet(cw, classNameInternal, segments, false);
+				if (type.isPrimitive()) insertGet(cw, classNameInternal, segments, true);
+				cw.visitEnd();
+				accessClass = loader.defineAccessClass(rootType, accessClassName, cw.toByteArray());
+			}
+		} finally {
+			loader.unlock(accessClassName);
+		}
+		try {
+			PathAccess access = (PathAccess)accessClass.newInstance();
+			access.path = path;
+			access.type = segments.get(segments.size() - 1).type;
+			return access;
+		} catch (Throwable t) {
+			throw new RuntimeException("Error constructing path access class: " + accessClassName, t);
+		}
+	}
+
+	static private void insertConstructor (ClassWriter cw) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, "com/esotericsoftware/reflectasm/PathAccess", "<init>", "()V");
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(1, 1);
+		mv.visitEnd();
+	}
+
+	/** @param typed If true, the typed getter for the primitive type at the end of the path is generated, otherwise the getter
+	 *           that boxes it. */
+	static private void insertGet (ClassWriter cw, String classNameInternal, ArrayList<Property> segments, boolean typed) {
+		Class leafType = segments.get(segments.size() - 1).type;
+		Type returnType = typed ? Type.getType(leafType) : Type.getType(Object.class);
+		String methodName = "get";
+		if (typed) methodName += Character.toUpperCase(returnType.getClassName().charAt(0)) + returnType.getClassName().substring(1);
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, methodName, "(Ljava/lang/Object;)" + returnType.getDescriptor(), null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitTypeInsn(CHECKCAST, classNameInternal);
+
+		Label nullLabel = new Label();
+		for (int i = 0, n = segments.size(); i < n; i++) {
+			mv.visitInsn(DUP);
+			mv.visitJumpInsn(IFNULL, nullLabel);
+			segments.get(i).insertGet(mv);
+		}
+		if (!typed && leafType.isPrimitive()) {
+			Class wrapper = MapperAccess.wrap(leafType);
+			mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(wrapper), "valueOf",
+				"(" + Type.getDescriptor(leafType) + ")" + Type.getDescriptor(wrapper));
+		}
+		mv.visitInsn(returnType.getOpcode(IRETURN));
+
+		// The root or an object before the last segment is null.
+		mv.visitLabel(nullLabel);
+		mv.visitFrame(F_SAME1, 0, null, 1, new Object[] {"java/lang/Object"});
+		mv.visitInsn(POP);
+		switch (returnType.getSort()) {
+		case Type.LONG:
+			mv.visitInsn(LCONST_0);
+			break;
+		case Type.FLOAT:
+			mv.visitInsn(FCONST_0);
+			break;
+		case Type.DOUBLE:
+			mv.visitInsn(DCONST_0);
+			break;
+		case Type.OBJECT:
+			mv.visitInsn(ACONST_NULL);
+			break;
+		default:
+			mv.visitInsn(ICONST_0);
+		}
+		mv.visitInsn(returnType.getOpcode(IRETURN));
+		mv.visitMaxs(2, 2);
+		mv.visitEnd();
+	}
+}
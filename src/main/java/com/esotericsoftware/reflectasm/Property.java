@@ -0,0 +1,181 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import static org.objectweb.asm.Opcodes.*;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+/** A JavaBean property of a class, read and written with a getter and setter when the class has them and otherwise with a
+ * field of the same name and type. Only members that bytecode in an access class can reference are used. */
+final class Property {
+	final String name;
+	final Class type;
+	final Method getter, setter;
+	final Field field;
+
+	private Property (String name, Class type, Method getter, Method setter, Field field) {
+		this.name = name;
+		this.type = type;
+		this.getter = getter;
+		this.setter = setter;
+		this.field = field;
+	}
+
+	boolean isReadable () {
+		return getter != null || field != null;
+	}
+
+	boolean isWritable () {
+		return setter != null || (field != null && !Modifier.isFinal(field.getModifiers()));
+	}
+
+	/** Replaces the instance on the stack with the property value. */
+	void insertGet (MethodVisitor mv) {
+		if (getter != null)
+			insertInvoke(mv, getter);
+		else {
+			mv.visitFieldInsn(GETFIELD, Type.getInternalName(field.getDeclaringClass()), field.getName(),
+				Type.getDescriptor(field.getType()));
+		}
+	}
+
+	/** Pops the instance and the property value from the stack and sets the property. */
+	void insertSet (MethodVisitor mv) {
+		if (setter != null) {
+			insertInvoke(mv, setter);
+			if (setter.getReturnType() != void.class) mv.visitInsn(Type.getType(setter.getReturnType()).getSize() == 2 ? POP2 : POP);
+		} else {
+			mv.visitFieldInsn(PUTFIELD, Type.getInternalName(field.getDeclaringClass()), field.getName(),
+				Type.getDescriptor(field.getType()));
+		}
+	}
+
+	public String toString () {
+		return name + " (" + type.getName() + ")";
+	}
+
+	static void insertInvoke (MethodVisitor mv, Method method) {
+		Class declaringClass = method.getDeclaringClass();
+		int opcode;
+		if (Modifier.isStatic(method.getModifiers()))
+			opcode = INVOKESTATIC;
+		else if (declaringClass.isInterface())
+			opcode = INVOKEINTERFACE;
+		else
+			opcode = INVOKEVIRTUAL;
+		mv.visitMethodInsn(opcode, Type.getInternalName(declaringClass), method.getName(), Type.getMethodDescriptor(method),
+			declaringClass.isInterface());
+	}
+
+	/** Returns the properties of the type, sorted by name.
+	 * @param accessType The type whose access class will reference the members, usually the same as type. */
+	static ArrayList<Property> getProperties (Class type, AccessClassLoader loader, Class accessType) {
+		TreeMap<String, Method> getters = new TreeMap();
+		TreeMap<String, ArrayList<Method>> setters = new TreeMap();
+		TreeMap<String, Field> fields = new TreeMap();
+		HashSet<String> signatures = new HashSet();
+		ArrayList<Class> classes = new ArrayList();
+		if (type.isInterface())
+			collectInterfaces(type, classes);
+		else {
+			for (Class nextClass = type; nextClass != null && nextClass != Object.class; nextClass = nextClass.getSuperclass())
+				classes.add(nextClass);
+			for (int i = 0, n = classes.size(); i < n; i++) // Default and abstract methods implemented by the classes.
+				for (Class interfaceType : classes.get(i).getInterfaces())
+					collectInterfaces(interfaceType, classes);
+		}
+
+		for (Class nextClass : classes) {
+			for (Method method : nextClass.getDeclaredMethods()) {
+				int modifiers = method.getModifiers();
+				if (Modifier.isStatic(modifiers) || method.isBridge() || method.isSynthetic()) continue;
+				if (!signatures.add(method.getName() + Type.getMethodDescriptor(method))) continue; // Overridden.
+				if (!loader.isAccessible(accessType, nextClass, modifiers)) continue;
+				String name = method.getName();
+				Class[] parameterTypes = method.getParameterTypes();
+				Class returnType = method.getReturnType();
+				if (parameterTypes.length == 0 && returnType != void.class) {
+					String propertyName = null;
+					if (name.startsWith("get") && name.length() > 3 && !name.equals("getClass"))
+						propertyName = decapitalize(name.substring(3));
+					else if (name.startsWith("is") && name.length() > 2 && returnType == boolean.class)
+						propertyName = decapitalize(name.substring(2));
+					if (propertyName != null && !getters.containsKey(propertyName)) getters.put(propertyName, method);
+				} else if (parameterTypes.length == 1 && name.startsWith("set") && name.length() > 3) {
+					String propertyName = decapitalize(name.substring(3));
+					ArrayList<Method> list = setters.get(propertyName);
+					if (list == null) setters.put(propertyName, list = new ArrayList());
+					list.add(method);
+				}
+			}
+			if (nextClass.isInterface()) continue;
+			for (Field field : nextClass.getDeclaredFields()) {
+				int modifiers = field.getModifiers();
+				if (Modifier.isStatic(modifiers) || field.isSynthetic()) continue;
+				if (fields.containsKey(field.getName())) continue; // Hidden by a subclass field.
+				if (!loader.isAccessible(accessType, nextClass, modifiers)) continue;
+				fields.put(field.getName(), field);
+			}
+		}
+
+		TreeSet<String> names = new TreeSet(getters.keySet());
+		names.addAll(setters.keySet());
+		names.addAll(fields.keySet());
+		ArrayList<Property> properties = new ArrayList(names.size());
+		for (String name : names) {
+			Method getter = getters.get(name);
+			Field field = fields.get(name);
+			Class propertyType = getter != null ? getter.getReturnType() : (field != null ? field.getType() : null);
+			Method setter = null;
+			ArrayList<Method> setterList = setters.get(name);
+			if (setterList != null) {
+				for (Method method : setterList) {
+					if (propertyType == null || method.getParameterTypes()[0] == propertyType) {
+						setter = method;
+						break;
+					}
+				}
+				if (propertyType == null && setter != null) propertyType = setter.getParameterTypes()[0];
+			}
+			if (field != null && field.getType() != propertyType) field = null;
+			if (getter == null && setter == null && field == null) continue;
+			properties.add(new Property(name, propertyType, getter, setter, field));
+		}
+		return properties;
+	}
+
+	static private void collectInterfaces (Class interfaceType, ArrayList<Class> classes) {
+		if (classes.contains(interfaceType)) return;
+		classes.add(interfaceType);
+		for (Class nextInterface : interfaceType.getInterfaces())
+			collectInterfaces(nextInterface, classes);
+	}
+
+	/** Same as {@link java.beans.Introspector#decapitalize(String)}. */
+	static String decapitalize (String name) {
+		if (name.length() > 1 && Character.isUpperCase(name.charAt(1)) && Character.isUpperCase(name.charAt(0))) return name;
+		return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+	}
+}
@@ -0,0 +1,324 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import static org.objectweb.asm.Opcodes.*;
+
+import java.util.ArrayList;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+/** Reads and writes the JavaBean properties of a class by index. Properties are found once, from getX/isX and setX methods and
+ * from fields with the same name and type, and are read with the getter and written with the setter when the class has them,
+ * otherwise with the field. All dispatch is in a single generated class, so no {@link java.beans.Introspector} or reflection is
+ * used after the access is created. */
+public abstract class PropertyAccess {
+	private String[] propertyNames;
+	private Class[] propertyTypes;
+	private boolean[] readable, writable;
+
+	public int getIndex (String propertyName) {
+		for (int i = 0, n = propertyNames.length; i < n; i++)
+			if (propertyNames[i].equals(propertyName)) return i;
+		throw new IllegalArgumentException("Unable to find property: " + propertyName);
+	}
+
+	public void set (Object instance, String propertyName, Object value) {
+		set(instance, getIndex(propertyName), value);
+	}
+
+	public Object get (Object instance, String propertyName) {
+		return get(instance, getIndex(propertyName));
+	}
+
+	/** Returns the property names, sorted alphabetically. */
+	public String[] getPropertyNames () {
+		return propertyNames;
+	}
+
+	public Class[] getPropertyTypes () {
+		return propertyTypes;
+	}
+
+	public int getPropertyCount () {
+		return propertyTypes.length;
+	}
+
+	/** Returns true if the property has a getter or a field. */
+	public boolean isReadable (int propertyIndex) {
+		return readable[propertyIndex];
+	}
+
+	/** Returns true if the property has a setter or a non-final field. */
+	public boolean isWritable (int propertyIndex) {
+		return writable[propertyIndex];
+	}
+
+	abstract public void set (Object instance, int propertyIndex, Object value);
+
+	abstract public void setBoolean (Object instance, int propertyIndex, boolean value);
+
+	abstract public void setByte (Object instance, int propertyIndex, byte value);
+
+	abstract public void setShort (Object instance, int propertyIndex, short value);
+
+	abstract public void setInt (Object instance, int propertyIndex, int value);
+
+	abstract public void setLong (Object instance, int propertyIndex, long value);
+
+	abstract public void setDouble (Object instance, int propertyIndex, double value);
+
+	abstract public void setFloat (Object instance, int propertyIndex, float value);
+
+	abstract public void setChar (Object instance, int propertyIndex, char value);
+
+	abstract public Object get (Object instance, int propertyIndex);
+
+	abstract public char getChar (Object instance, int propertyIndex);
+
+	abstract public boolean getBoolean (Object instance, int propertyIndex);
+
+	abstract public byte getByte (Object instance, int propertyIndex);
+
+	abstract public short getShort (Object instance, int propertyIndex);
+
+	abstract public int getInt (Object instance, int propertyIndex);
+
+	abstract public long getLong (Object instance, int propertyIndex);
+
+	abstract public double getDouble (Object instance, int propertyIndex);
+
+	abstract public float getFloat (Object instance, int propertyIndex);
+
+	/** @param type Must not be a primitive type, an array, or void. */
+	static public PropertyAccess get (Class type) {
+		if (type.isPrimitive() || type.isArray()) throw new IllegalArgumentException("The type must not be a primitive type or array.");
+
+		String className = type.getName();
+		String accessClassName = className + "PropertyAccess";
+		if (accessClassName.startsWith("java.")) accessClassName = "reflectasm." + accessClassName;
+
+		ArrayList<Property> properties;
+		Class accessClass;
+		AccessClassLoader loader = AccessClassLoader.get(type);
+		loader.lock(accessClassName);
+		try {
+			properties = Property.getProperties(type, loader, type);
+
+			accessClass = loader.loadAccessClass(accessClassName);
+			if (accessClass == null) {
+				String accessClassNameInternal = accessClassName.replace('.', '/');
+				String classNameInternal = className.replace('.', '/');
+
+				ClassWriter cw = new ClassWriter(0);
+				cw.visit(V1_6, ACC_PUBLIC + ACC_SUPER, accessClassNameInternal, null,
+					"com/esotericsoftware/reflectasm/PropertyAccess", null);
+				insertConstructor(cw);
+				insertGet(cw, classNameInternal, properties, null);
+				insertSet(cw, classNameInternal, properties, null);
+				Type[] primitiveTypes = {Type.BOOLEAN_TYPE, Type.BYTE_TYPE, Type.SHORT_TYPE, Type.INT_TYPE, Type.LONG_TYPE,
+					Type.DOUBLE_TYPE, Type.FLOAT_TYPE, Type.CHAR_TYPE};
+				for (Type primitiveType : primitiveTypes) {
+					insertGet(cw, classNameInternal, properties, primitiveType);
+					insertSet(cw, classNameInternal, properties, primitiveType);
+				}
+				cw.visitEnd();
+				accessClass = loader.defineAccessClass(type, accessClassName, cw.toByteArray());
+			}
+		} finally {
+			loader.unlock(accessClassName);
+		}
+		try {
+			PropertyAccess access = (PropertyAccess)accessClass.newInstance();
+			int count = properties.size();
+			access.propertyNames = new String[count];
+			access.propertyTypes = new Class[count];
+			access.readable = new boolean[count];
+			access.writable = new boolean[count];
+			for (int i = 0; i < count; i++) {
+				Property property = properties.get(i);
+				access.propertyNames[i] = property.name;
+				access.propertyTypes[i] = property.type;
+				access.readable[i] = property.isReadable();
+				access.writable[i] = property.isWritable();
+			}
+			return access;
+		} catch (Throwable t) {
+			throw new RuntimeException("Error constructing property access class: " + accessClassName, t);
+		}
+	}
+
+	static private void insertConstructor (ClassWriter cw) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, "com/esotericsoftware/reflectasm/PropertyAccess", "<init>", "()V");
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(1, 1);
+		mv.visitEnd();
+	}
+
+	/** @param primitiveType The type of the typed getter, or null for the getter that boxes primitive values. */
+	static private void insertGet (ClassWriter cw, String classNameInternal, ArrayList<Property> properties, Type primitiveType) {
+		String methodName = primitiveType == null ? "get" : "get" + capitalize(primitiveType.getClassName());
+		String descriptor = primitiveType == null ? "Ljava/lang/Object;" : primitiveType.getDescriptor();
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, methodName, "(Ljava/lang/Object;I)" + descriptor, null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ILOAD, 2);
+
+		if (!properties.isEmpty()) {
+			Label[] labels = new Label[properties.size()];
+			Label invalidTypeLabel = new Label(), notReadableLabel = new Label();
+			boolean hasInvalidType = false, hasNotReadable = false;
+			for (int i = 0, n = labels.length; i < n; i++) {
+				Property property = properties.get(i);
+				if (primitiveType != null && !Type.getType(property.type).equals(primitiveType)) {
+					labels[i] = invalidTypeLabel;
+					hasInvalidType = true;
+				} else if (!property.isReadable()) {
+					labels[i] = notReadableLabel;
+					hasNotReadable = true;
+				} else
+					labels[i] = new Label();
+			}
+			Label defaultLabel = new Label();
+			mv.visitTableSwitchInsn(0, labels.length - 1, defaultLabel, labels);
+
+			for (int i = 0, n = labels.length; i < n; i++) {
+				if (labels[i] == invalidTypeLabel || labels[i] == notReadableLabel) continue;
+				Property property = properties.get(i);
+				mv.visitLabel(labels[i]);
+				mv.visitFrame(F_SAME, 0, null, 0, null);
+				mv.visitVarInsn(ALOAD, 1);
+				mv.visitTypeInsn(CHECKCAST, classNameInternal);
+				property.insertGet(mv);
+				Type type = Type.getType(property.type);
+				if (primitiveType == null) {
+					if (property.type.isPrimitive()) {
+						Class wrapper = MapperAccess.wrap(property.type);
+						mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(wrapper), "valueOf",
+							"(" + type.getDescriptor() + ")" + Type.getDescriptor(wrapper));
+					}
+					mv.visitInsn(ARETURN);
+				} else
+					mv.visitInsn(type.getOpcode(IRETURN));
+			}
+
+			if (hasInvalidType) {
+				mv.visitLabel(invalidTypeLabel);
+				mv.visitFrame(F_SAME, 0, null, 0, null);
+				insertThrowException(mv, "Property not declared as " + primitiveType.getClassName() + ": ");
+			}
+			if (hasNotReadable) {
+				mv.visitLabel(notReadableLabel);
+				mv.visitFrame(F_SAME, 0, null, 0, null);
+				insertThrowException(mv, "Property not readable: ");
+			}
+			mv.visitLabel(defaultLabel);
+			mv.visitFrame(F_SAME, 0, null, 0, null);
+		}
+		insertThrowException(mv, "Property not found: ");
+		mv.visitMaxs(5, 3);
+		mv.visitEnd();
+	}
+
+	/** @param primitiveType The type of the typed setter, or null for the setter that unboxes primitive values. */
+	static private void insertSet (ClassWriter cw, String classNameInternal, ArrayList<Property> properties, Type primitiveType) {
+		String methodName = primitiveType == null ? "set" : "set" + capitalize(primitiveType.getClassName());
+		Type valueType = primitiveType == null ? Type.getType(Object.class) : primitiveType;
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, methodName, "(Ljava/lang/Object;I" + valueType.getDescriptor() + ")V", null,
+			null);
+		mv.visitCode();
+		mv.visitVarInsn(ILOAD, 2);
+
+		if (!properties.isEmpty()) {
+			Label[] labels = new Label[properties.size()];
+			Label invalidTypeLabel = new Label(), notWritableLabel = new Label();
+			boolean hasInvalidType = false, hasNotWritable = false;
+			for (int i = 0, n = labels.length; i < n; i++) {
+				Property property = properties.get(i);
+				if (primitiveType != null && !Type.getType(property.type).equals(primitiveType)) {
+					labels[i] = invalidTypeLabel;
+					hasInvalidType = true;
+				} else if (!property.isWritable()) {
+					labels[i] = notWritableLabel;
+					hasNotWritable = true;
+				} else
+					labels[i] = new Label();
+			}
+			Label defaultLabel = new Label();
+			mv.visitTableSwitchInsn(0, labels.length - 1, defaultLabel, labels);
+
+			for (int i = 0, n = labels.length; i < n; i++) {
+				if (labels[i] == invalidTypeLabel || labels[i] == notWritableLabel) continue;
+				Property property = properties.get(i);
+				mv.visitLabel(labels[i]);
+				mv.visitFrame(F_SAME, 0, null, 0, null);
+				mv.visitVarInsn(ALOAD, 1);
+				mv.visitTypeInsn(CHECKCAST, classNameInternal);
+				mv.visitVarInsn(valueType.getOpcode(ILOAD), 3);
+				if (primitiveType == null) {
+					Type type = Type.getType(property.type);
+					if (property.type.isPrimitive()) {
+						String wrapperInternal = Type.getInternalName(MapperAccess.wrap(property.type));
+						mv.visitTypeInsn(CHECKCAST, wrapperInternal);
+						mv.visitMethodInsn(INVOKEVIRTUAL, wrapperInternal, type.getClassName() + "Value", "()" + type.getDescriptor());
+					} else if (property.type != Object.class)
+						mv.visitTypeInsn(CHECKCAST, type.getSort() == Type.ARRAY ? type.getDescriptor() : type.getInternalName());
+				}
+				property.insertSet(mv);
+				mv.visitInsn(RETURN);
+			}
+
+			if (hasInvalidType) {
+				mv.visitLabel(invalidTypeLabel);
+				mv.visitFrame(F_SAME, 0, null, 0, null);
+				insertThrowException(mv, "Property not declared as " + primitiveType.getClassName() + ": ");
+			}
+			if (hasNotWritable) {
+				mv.visitLabel(notWritableLabel);
+				mv.visitFrame(F_SAME, 0, null, 0, null);
+				insertThrowException(mv, "Property not writable: ");
+			}
+			mv.visitLabel(defaultLabel);
+			mv.visitFrame(F_SAME, 0, null, 0, null);
+		}
+		insertThrowException(mv, "Property not found: ");
+		mv.visitMaxs(5, 3 + valueType.getSize());
+		mv.visitEnd();
+	}
+
+	static private String capitalize (String name) {
+		return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+	}
+
+	/** Throws an IllegalArgumentException with the message followed by the property index. */
+	static private void insertThrowException (MethodVisitor mv, String message) {
+		mv.visitTypeInsn(NEW, "java/lang/IllegalArgumentException");
+		mv.visitInsn(DUP);
+		mv.visitTypeInsn(NEW, "java/lang/StringBuilder");
+		mv.visitInsn(DUP);
+		mv.visitLdcInsn(message);
+		mv.visitMethodInsn(INVOKESPECIAL, "java/lang/StringBuilder", "<init>", "(Ljava/lang/String;)V");
+		mv.visitVarInsn(ILOAD, 2);
+		mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/StringBuilder", "append", "(I)Ljava/lang/StringBuilder;");
+		mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/StringBuilder", "toString", "()Ljava/lang/String;");
+		mv.visitMethodInsn(INVOKESPECIAL, "java/lang/IllegalArgumentException", "<init>", "(Ljava/lang/String;)V");
+		mv.visitInsn(ATHROW);
+	}
+}
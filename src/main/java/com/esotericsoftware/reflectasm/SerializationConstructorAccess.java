@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/** Creates instances without running any constructor of the class or its superclasses, the same way Java serialization does.
+ * The JVM's reflection factory generates a serialization constructor stub that allocates the class and only runs the
+ * constructor of Object. All fields have their default values.
+ * <p>
+ * The stub can't be generated by reflectasm: a NEW followed by a call to the constructor of Object fails verification unless the
+ * class is one of the JDK's own accessors. Calling the JDK's stub through the reflective Constructor adds only a few
+ * nanoseconds per instance over a generated ConstructorAccess (see ConstructorAccessBenchmark), and a MethodHandle for the stub
+ * was measured to be no faster.
+ * @see ConstructorAccess#getBypassingConstructor(Class) */
+final class SerializationConstructorAccess<T> extends ConstructorAccess<T> {
+	static private Object reflectionFactory;
+	static private volatile Method newConstructorForSerializationMethod;
+
+	private final Class<T> type;
+	private final Constructor<T> constructor;
+	private final Field enclosingField;
+
+	private SerializationConstructorAccess (Class<T> type, Constructor<T> constructor, Field enclosingField) {
+		this.type = type;
+		this.constructor = constructor;
+		this.enclosingField = enclosingField;
+	}
+
+	public T newInstance () {
+		try {
+			return constructor.newInstance((Object[])null);
+		} catch (InvocationTargetException ex) {
+			throw new RuntimeException("Error creating instance without constructor: " + type.getName(), ex.getCause());
+		} catch (Exception ex) {
+			throw new RuntimeException("Error creating instance without constructor: " + type.getName(), ex);
+		}
+	}
+
+	public T newInstance (Object enclosingInstance) {
+		if (enclosingField == null) throw new UnsupportedOperationException("Not an inner class.");
+		enclosingInstance.getClass(); // Null check, like the generated ConstructorAccess.
+		T instance = newInstance();
+		try {
+			enclosingField.set(instance, enclosingInstance);
+		} catch (IllegalAccessException ex) {
+			throw new RuntimeException("Unable to set the enclosing instance: " + type.getName(), ex);
+		}
+		return instance;
+	}
+
+	static <T> SerializationConstructorAccess<T> get (Class<T> type, boolean isNonStaticMemberClass) {
+		int modifiers = type.getModifiers();
+		if (type.isInterface() || type.isArray() || type.isPrimitive() || Modifier.isAbstract(modifiers))
+			throw new RuntimeException("Class cannot be created (abstract class, interface, array or primitive): " + type.getName());
+
+		Constructor<T> constructor;
+		try {
+			constructor = (Constructor<T>)getNewConstructorForSerializationMethod().invoke(reflectionFactory,
+				new Object[] {type, Object.class.getDeclaredConstructor((Class[])null)});
+			constructor.setAccessible(true);
+		} catch (Exception ex) {
+			throw new RuntimeException("Class cannot be created without invoking a constructor (not supported by this JVM): "
+				+ type.getName(), ex);
+		}
+
+		Field enclosingField = null;
+		if (isNonStaticMemberClass) {
+			Class enclosingType = type.getEnclosingClass();
+			for (Field field : type.getDeclaredFields()) {
+				if (field.isSynthetic() && field.getType() == enclosingType && field.getName().startsWith("this$")) {
+					try {
+						field.setAccessible(true);
+						enclosingField = field;
+					} catch (Exception ignored) { // Only newInstance() can be used.
+					}
+					break;
+				}
+			}
+		}
+		return new SerializationConstructorAccess(type, constructor, enclosingField);
+	}
+
+	static private Method getNewConstructorForSerializationMethod () throws Exception {
+		if (newConstructorForSerializationMethod == null) {
+			synchronized (SerializationConstructorAccess.class) {
+				if (newConstructorForSerializationMethod == null) {
+					// Exported by the jdk.unsupported module on Java 9+.
+					Class factoryClass = Class.forName("sun.reflect.ReflectionFactory");
+					reflectionFactory = factoryClass.getMethod("getReflectionFactory").invoke(null);
+					newConstructorForSerializationMethod = factoryClass.getMethod("newConstructorForSerialization",
+						new Class[] {Class.class, Constructor.class});
+				}
+			}
+		}
+		return newConstructorForSerializationMethod;
+	}
+}
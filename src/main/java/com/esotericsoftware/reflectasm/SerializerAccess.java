@@ -0,0 +1,287 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import static org.objectweb.asm.Opcodes.*;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+/** Writes and reads the fields of a single class for a {@link BinarySerializer}. Fields are serialized from the superclass down, in
+ * declaration order, whichever way each field is accessed, so the bytes don't depend on how the access class was defined. The
+ * field routines are generated: primitive and String fields are written and read with direct calls to {@link BinaryOutput} and
+ * {@link BinaryInput}, other references are handled recursively by the serializer. Fields the access class can't reference
+ * (private or final fields, for example) are written and read using reflection, in their place in the field order. Static and
+ * transient fields are not serialized. */
+public abstract class SerializerAccess {
+	private ConstructorAccess constructorAccess;
+	private Field[] reflectedFields;
+
+	/** Writes a run of fields the access class can reference. Run 0 is the fields before the first reflected field, run n is the
+	 * fields after reflected field n - 1. */
+	abstract public void writeFields (Object object, BinaryOutput output, BinarySerializer serializer, int run);
+
+	/** Reads a run of fields the access class can reference. See {@link #writeFields(Object, BinaryOutput, BinarySerializer, int)}. */
+	abstract public void readFields (Object object, BinaryInput input, BinarySerializer serializer, int run);
+
+	/** Writes all serialized fields of the object. */
+	public void write (Object object, BinaryOutput output, BinarySerializer serializer) {
+		writeFields(object, output, serializer, 0);
+		Field[] reflectedFields = this.reflectedFields;
+		if (reflectedFields != null) {
+			try {
+				for (int i = 0, n = reflectedFields.length; i < n; i++) {
+					Field field = reflectedFields[i];
+					serializer.writeValue(output, field.get(object), field.getType());
+					writeFields(object, output, serializer, i + 1);
+				}
+			} catch (IllegalAccessException ex) {
+				throw new RuntimeException("Error serializing: " + object.getClass().getName(), ex);
+			}
+		}
+	}
+
+	/** Reads all serialized fields into the object. */
+	public void read (Object object, BinaryInput input, BinarySerializer serializer) {
+		readFields(object, input, serializer, 0);
+		Field[] reflectedFields = this.reflectedFields;
+		if (reflectedFields != null) {
+			try {
+				for (int i = 0, n = reflectedFields.length; i < n; i++) {
+					Field field = reflectedFields[i];
+					field.set(object, serializer.readValue(input, field.getType()));
+					readFields(object, input, serializer, i + 1);
+				}
+			} catch (IllegalAccessException ex) {
+				throw new RuntimeException("Error deserializing: " + object.getClass().getName(), ex);
+			}
+		}
+	}
+
+	/** Returns a new instance of the class, created without reading any fields. */
+	public Object newInstance () {
+		return constructorAccess.newInstance();
+	}
+
+	/** @param type Must not be an array, an interface, abstract, or a primitive type. */
+	static public SerializerAccess get (Class type) {
+		if (type.isArray() || type.isInterface() || type.isPrimitive() || Modifier.isAbstract(type.getModifiers()))
+			throw new IllegalArgumentException("The type must not be an array, an interface, abstract, or a primitive type: " + type.getName());
+
+		// Fields are serialized from the superclass down, in declaration order.
+		ArrayList<Class> classes = new ArrayList();
+		for (Class nextClass = type; nextClass != Object.class; nextClass = nextClass.getSuperclass())
+			classes.add(0, nextClass);
+		ArrayList<Field> fields = new ArrayList();
+		for (Class nextClass : classes) {
+			for (Field field : nextClass.getDeclaredFields()) {
+				int modifiers = field.getModifiers();
+				if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)) fields.add(field);
+			}
+		}
+
+		String className = type.getName();
+		String accessClassName = className + "SerializerAccess";
+		if (accessClassName.startsWith("java.")) accessClassName = "reflectasm." + accessClassName;
+
+		Class accessClass;
+		Field[] reflectedFields;
+		AccessClassLoader loader = AccessClassLoader.get(type);
+		loader.lock(accessClassName);
+		try {
+			accessClass = loader.loadAccessClass(accessClassName);
+			MemberMetadata[] metadata = accessClass == null ? null : MemberMetadata.get(accessClass);
+			if (metadata == null) {
+				// Split the fields into runs the access class can reference, separated by reflected fields.
+				ArrayList<ArrayList<Field>> runs = new ArrayList();
+				ArrayList<MemberInfo> reflected = new ArrayList();
+				runs.add(new ArrayList());
+				for (Field field : fields) {
+					int modifiers = field.getModifiers();
+					if (!Modifier.isFinal(modifiers) && loader.isAccessible(type, field.getDeclaringClass(), modifiers)
+						&& isTypeAccessible(loader, type, field.getType()))
+						runs.get(runs.size() - 1).add(field);
+					else {
+						reflected.add(new MemberInfo(field));
+						runs.add(new ArrayList());
+					}
+				}
+
+				if (accessClass == null) {
+					String accessClassNameInternal = accessClassName.replace('.', '/');
+					String classNameInternal = className.replace('.', '/');
+
+					ClassWriter cw = new ClassWriter(0);
+					cw.visit(V1_6, ACC_PUBLIC + ACC_SUPER, accessClassNameInternal, null,
+						"com/esotericsoftware/reflectasm/SerializerAccess", null);
+					insertConstructor(cw);
+					insertWriteFields(cw, classNameInternal, runs);
+					insertReadFields(cw, classNameInternal, runs);
+					cw.visitEnd();
+					accessClass = loader.defineAccessClass(type, accessClassName, cw.toByteArray());
+				}
+				// The runs the access class was generated with, in case the accessibility of fields changes later.
+				metadata = MemberMetadata.put(accessClass, new MemberMetadata[] {new MemberMetadata(reflected)});
+			}
+			reflectedFields = metadata[0].getFields();
+		} finally {
+			loader.unlock(accessClassName);
+		}
+
+		for (Field field : reflectedFields) {
+			try {
+				field.setAccessible(true);
+			} catch (Exception ex) {
+				throw new IllegalArgumentException("Unable to serialize field: " + field, ex);
+			}
+		}
+
+		ConstructorAccess constructorAccess;
+		try {
+			constructorAccess = ConstructorAccess.get(type);
+		} catch (RuntimeException ex) {
+			constructorAccess = ConstructorAccess.getBypassingConstructor(type);
+		}
+
+		try {
+			SerializerAccess access = (SerializerAccess)accessClass.newInstance();
+			access.constructorAccess = constructorAccess;
+			if (reflectedFields.length > 0) access.reflectedFields = reflectedFields;
+			return access;
+		} catch (Throwable t) {
+			throw new RuntimeException("Error constructing serializer access class: " + accessClassName, t);
+		}
+	}
+
+	static private boolean isTypeAccessible (AccessClassLoader loader, Class type, Class fieldType) {
+		while (fieldType.isArray())
+			fieldType = fieldType.getComponentType();
+		return fieldType.isPrimitive() || loader.isAccessible(type, fieldType, Modifier.PUBLIC);
+	}
+
+	static private void insertConstructor (ClassWriter cw) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, "com/esotericsoftware/reflectasm/SerializerAccess", "<init>", "()V");
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(1, 1);
+		mv.visitEnd();
+	}
+
+	/** Returns the BinaryOutput/BinaryInput method suffix for the type, or null if the value is handled by the serializer. */
+	static private String getMethodSuffix (Class type) {
+		if (type == String.class) return "String";
+		if (!type.isPrimitive()) return null;
+		String name = type.getName();
+		return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+	}
+
+	static private void insertWriteFields (ClassWriter cw, String classNameInternal, ArrayList<ArrayList<Field>> runs) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "writeFields",
+			"(Ljava/lang/Object;Lcom/esotericsoftware/reflectasm/BinaryOutput;Lcom/esotericsoftware/reflectasm/BinarySerializer;I)V",
+			null, null);
+		mv.visitCode();
+		Label[] labels = insertRunSwitch(mv, runs.size());
+		for (int r = 0, rn = runs.size(); r < rn; r++) {
+			mv.visitLabel(labels[r]);
+			mv.visitFrame(F_SAME, 0, null, 0, null);
+			ArrayList<Field> fields = runs.get(r);
+			for (int i = 0, n = fields.size(); i < n; i++) {
+				Field field = fields.get(i);
+				Type fieldType = Type.getType(field.getType());
+				String suffix = getMethodSuffix(field.getType());
+				if (suffix == null) mv.visitVarInsn(ALOAD, 3);
+				mv.visitVarInsn(ALOAD, 2);
+				mv.visitVarInsn(ALOAD, 1);
+				mv.visitTypeInsn(CHECKCAST, classNameInternal);
+				mv.visitFieldInsn(GETFIELD, field.getDeclaringClass().getName().replace('.', '/'), field.getName(),
+					fieldType.getDescriptor());
+				if (suffix != null) {
+					mv.visitMethodInsn(INVOKEVIRTUAL, "com/esotericsoftware/reflectasm/BinaryOutput", "write" + suffix,
+						"(" + fieldType.getDescriptor() + ")V");
+				} else {
+					mv.visitLdcInsn(fieldType);
+					mv.visitMethodInsn(INVOKEVIRTUAL, "com/esotericsoftware/reflectasm/BinarySerializer", "writeValue",
+						"(Lcom/esotericsoftware/reflectasm/BinaryOutput;Ljava/lang/Object;Ljava/lang/Class;)V");
+				}
+			}
+			mv.visitInsn(RETURN);
+		}
+		mv.visitLabel(labels[runs.size()]);
+		mv.visitFrame(F_SAME, 0, null, 0, null);
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(4, 5);
+		mv.visitEnd();
+	}
+
+	static private void insertReadFields (ClassWriter cw, String classNameInternal, ArrayList<ArrayList<Field>> runs) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "readFields",
+			"(Ljava/lang/Object;Lcom/esotericsoftware/reflectasm/BinaryInput;Lcom/esotericsoftware/reflectasm/BinarySerializer;I)V",
+			null, null);
+		mv.visitCode();
+		Label[] labels = insertRunSwitch(mv, runs.size());
+		for (int r = 0, rn = runs.size(); r < rn; r++) {
+			mv.visitLabel(labels[r]);
+			mv.visitFrame(F_SAME, 0, null, 0, null);
+			ArrayList<Field> fields = runs.get(r);
+			for (int i = 0, n = fields.size(); i < n; i++) {
+				Field field = fields.get(i);
+				Type fieldType = Type.getType(field.getType());
+				String suffix = getMethodSuffix(field.getType());
+				mv.visitVarInsn(ALOAD, 1);
+				mv.visitTypeInsn(CHECKCAST, classNameInternal);
+				if (suffix != null) {
+					mv.visitVarInsn(ALOAD, 2);
+					mv.visitMethodInsn(INVOKEVIRTUAL, "com/esotericsoftware/reflectasm/BinaryInput", "read" + suffix,
+						"()" + fieldType.getDescriptor());
+				} else {
+					mv.visitVarInsn(ALOAD, 3);
+					mv.visitVarInsn(ALOAD, 2);
+					mv.visitLdcInsn(fieldType);
+					mv.visitMethodInsn(INVOKEVIRTUAL, "com/esotericsoftware/reflectasm/BinarySerializer", "readValue",
+						"(Lcom/esotericsoftware/reflectasm/BinaryInput;Ljava/lang/Class;)Ljava/lang/Object;");
+					mv.visitTypeInsn(CHECKCAST,
+						fieldType.getSort() == Type.ARRAY ? fieldType.getDescriptor() : fieldType.getInternalName());
+				}
+				mv.visitFieldInsn(PUTFIELD, field.getDeclaringClass().getName().replace('.', '/'), field.getName(),
+					fieldType.getDescriptor());
+			}
+			mv.visitInsn(RETURN);
+		}
+		mv.visitLabel(labels[runs.size()]);
+		mv.visitFrame(F_SAME, 0, null, 0, null);
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(4, 5);
+		mv.visitEnd();
+	}
+
+	/** Switches on the run parameter. Returns a label for each run, followed by the label for an unknown run. */
+	static private Label[] insertRunSwitch (MethodVisitor mv, int runCount) {
+		Label[] labels = new Label[runCount + 1];
+		for (int i = 0; i < labels.length; i++)
+			labels[i] = new Label();
+		mv.visitVarInsn(ILOAD, 4);
+		mv.visitTableSwitchInsn(0, runCount - 1, labels[runCount], Arrays.copyOf(labels, runCount));
+		return labels;
+	}
+}
@@ -0,0 +1,427 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import static org.objectweb.asm.Opcodes.*;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+/** A list that stores each property of its elements in a separate array (a struct of arrays) instead of storing objects. Elements
+ * are read and written through flyweights: instances of a generated subclass or implementation of the element type whose getters
+ * and setters read and write the arrays at the flyweight's index. A single flyweight can be moved over every element, so
+ * iterating allocates nothing.
+ * <p>
+ * The element type is an interface, or a non-final class with an accessible no-arg constructor. Its properties (see
+ * {@link PropertyAccess}) that have a getter method become columns: the getter and the setter, if any, are overridden by the
+ * flyweight. Getters and setters must be overridable and the flyweight must implement every abstract method. Fields of the
+ * element type are not used by flyweights. This class is not thread safe. */
+public class SoAList<T> implements Iterable<T> {
+	private final Class<T> type;
+	private final Class<? extends T> flyweightClass;
+	private final String[] columnNames;
+	private final Class[] columnTypes;
+	private final Object[] columns;
+	private int size, capacity;
+	private Flyweight writer;
+
+	public SoAList (Class<T> type) {
+		this(type, 16);
+	}
+
+	public SoAList (Class<T> type, int capacity) {
+		this.type = type;
+		ArrayList<Property> properties = new ArrayList();
+		flyweightClass = getFlyweightClass(type, properties);
+		int count = properties.size();
+		columnNames = new String[count];
+		columnTypes = new Class[count];
+		columns = new Object[count];
+		for (int i = 0; i < count; i++) {
+			columnNames[i] = properties.get(i).name;
+			columnTypes[i] = properties.get(i).type;
+			columns[i] = Array.newInstance(columnTypes[i], 0);
+		}
+		ensureCapacity(Math.max(capacity, 1));
+	}
+
+	public int size () {
+		return size;
+	}
+
+	public boolean isEmpty () {
+		return size == 0;
+	}
+
+	/** Returns the names of the properties stored in columns. */
+	public String[] getColumnNames () {
+		return columnNames;
+	}
+
+	public Class[] getColumnTypes () {
+		return columnTypes;
+	}
+
+	public int getColumnIndex (String propertyName) {
+		for (int i = 0, n = columnNames.length; i < n; i++)
+			if (columnNames[i].equals(propertyName)) return i;
+		throw new IllegalArgumentException("Unable to find column: " + propertyName);
+	}
+
+	/** Returns the array for a column, for example an int[] for an int property, for scanning it directly. Only the first
+	 * {@link #size()} elements are used. The array is replaced when the list grows. */
+	public Object getColumn (int column) {
+		return columns[column];
+	}
+
+	/** Creates a new flyweight positioned at the first element. Flyweights are only valid for this list. */
+	public T newFlyweight () {
+		try {
+			T flyweight = flyweightClass.newInstance();
+			((Flyweight)flyweight).setFlyweightColumns(columns);
+			return flyweight;
+		} catch (Exception ex) {
+			throw new RuntimeException("Error constructing flyweight: " + flyweightClass.getName(), ex);
+		}
+	}
+
+	/** Positions a flyweight created by {@link #newFlyweight()} at the element with the specified index.
+	 * @return The flyweight. */
+	public T moveTo (T flyweight, int index) {
+		if (index < 0 || index >= size) throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+		((Flyweight)flyweight).setFlyweightIndex(index);
+		return flyweight;
+	}
+
+	/** Returns a new flyweight positioned at the element with the specified index. */
+	public T get (int index) {
+		return moveTo(newFlyweight(), index);
+	}
+
+	/** Returns the index of the element the flyweight is positioned at. */
+	public int indexOf (T flyweight) {
+		return ((Flyweight)flyweight).getFlyweightIndex();
+	}
+
+	/** Adds an element with default property values (0, false or null).
+	 * @return The index of the new element. */
+	public int add () {
+		if (size == capacity) ensureCapacity(capacity * 2);
+		int index = size++;
+		for (Object column : columns) {
+			if (column instanceof Object[])
+				((Object[])column)[index] = null;
+			else
+				clear(column, index);
+		}
+		return index;
+	}
+
+	/** Adds an element with the property values of the object, read with its getters. The object can be an ordinary instance of the
+	 * element type or a flyweight. */
+	public void add (T object) {
+		if (size == capacity) ensureCapacity(capacity * 2);
+		if (writer == null) writer = (Flyweight)newFlyweight();
+		writer.setFlyweightIndex(size);
+		writer.copyToFlyweight(object);
+		size++;
+	}
+
+	/** Removes all elements, releasing references held by reference columns. */
+	public void clear () {
+		for (Object column : columns)
+			if (column instanceof Object[]) Arrays.fill((Object[])column, 0, size, null);
+		size = 0;
+	}
+
+	public void ensureCapacity (int capacity) {
+		if (capacity <= this.capacity) return;
+		for (int i = 0, n = columns.length; i < n; i++) {
+			Object newColumn = Array.newInstance(columnTypes[i], capacity);
+			System.arraycopy(columns[i], 0, newColumn, 0, size);
+			columns[i] = newColumn;
+		}
+		this.capacity = capacity;
+	}
+
+	/** Calls the consumer with a single flyweight positioned at each element in turn. */
+	public void forEach (Consumer<? super T> consumer) {
+		if (size == 0) return;
+		T flyweight = newFlyweight();
+		Flyweight cursor = (Flyweight)flyweight;
+		for (int i = 0; i < size; i++) {
+			cursor.setFlyweightIndex(i);
+			consumer.accept(flyweight);
+		}
+	}
+
+	/** Returns an iterator that positions a single flyweight at each element in turn. */
+	public Iterator<T> iterator () {
+		final T flyweight = newFlyweight();
+		final Flyweight cursor = (Flyweight)flyweight;
+		return new Iterator<T>() {
+			int index;
+
+			public boolean hasNext () {
+				return index < size;
+			}
+
+			public T next () {
+				if (index >= size) throw new NoSuchElementException();
+				cursor.setFlyweightIndex(index++);
+				return flyweight;
+			}
+		};
+	}
+
+	static private void clear (Object column, int index) {
+		Class componentType = column.getClass().getComponentType();
+		if (componentType == int.class)
+			((int[])column)[index] = 0;
+		else if (componentType == long.class)
+			((long[])column)[index] = 0;
+		else if (componentType == double.class)
+			((double[])column)[index] = 0;
+		else if (componentType == float.class)
+			((float[])column)[index] = 0;
+		else if (componentType == boolean.class)
+			((boolean[])column)[index] = false;
+		else if (componentType == byte.class)
+			((byte[])column)[index] = 0;
+		else if (componentType == short.class)
+			((short[])column)[index] = 0;
+		else
+			((char[])column)[index] = 0;
+	}
+
+	/** Implemented by the generated flyweight classes. The method names are unlikely to clash with methods of the element type. */
+	static public interface Flyweight {
+		public void setFlyweightColumns (Object[] columns);
+
+		public int getFlyweightIndex ();
+
+		public void setFlyweightIndex (int index);
+
+		/** Stores the property values of the source, read with its getters, at the flyweight's index. */
+		public void copyToFlyweight (Object source);
+	}
+
+	/** @param properties Output for the properties stored in columns, in column order. */
+	static private Class getFlyweightClass (Class type, ArrayList<Property> properties) {
+		if (type.isPrimitive() || type.isArray() || Modifier.isFinal(type.getModifiers()))
+			throw new IllegalArgumentException("The type must be an interface or a non-final class: " + type.getName());
+		if (!type.isInterface()) {
+			Constructor constructor;
+			try {
+				constructor = type.getDeclaredConstructor();
+			} catch (NoSuchMethodException ex) {
+				throw new IllegalArgumentException("The class must have a no-arg constructor: " + type.getName(), ex);
+			}
+			if (Modifier.isPrivate(constructor.getModifiers()))
+				throw new IllegalArgumentException("The no-arg constructor must not be private: " + type.getName());
+		}
+
+		String className = type.getName();
+		String accessClassName = className + "SoAFlyweight";
+		if (accessClassName.startsWith("java.")) accessClassName = "reflectasm." + accessClassName;
+
+		AccessClassLoader loader = AccessClassLoader.get(type);
+		loader.lock(accessClassName);
+		try {
+			for (Property property : Property.getProperties(type, loader, type)) {
+				if (property.getter == null) continue;
+				checkOverridable(property.getter);
+				if (property.setter != null) {
+					checkOverridable(property.setter);
+					Class returnType = property.setter.getReturnType();
+					if (returnType != void.class && !returnType.isAssignableFrom(type))
+						throw new IllegalArgumentException("Setter must return void or the element type: " + property.setter);
+				}
+				properties.add(property);
+			}
+
+			Class accessClass = loader.loadAccessClass(accessClassName);
+			if (accessClass == null) {
+				String accessClassNameInternal = accessClassName.replace('.', '/');
+				String classNameInternal = className.replace('.', '/');
+				String superclassNameInternal = type.isInterface() ? "java/lang/Object" : classNameInternal;
+				ArrayList<String> interfaces = new ArrayList();
+				interfaces.add("com/esotericsoftware/reflectasm/SoAList$Flyweight");
+				if (type.isInterface()) interfaces.add(classNameInternal);
+
+				HashSet<String> implemented = new HashSet();
+				ClassWriter cw = new ClassWriter(0);
+				cw.visit(V1_6, ACC_PUBLIC + ACC_SUPER, accessClassNameInternal, null, superclassNameInternal,
+					interfaces.toArray(new String[interfaces.size()]));
+				cw.visitField(ACC_PRIVATE, "columns", "[Ljava/lang/Object;", null, null).visitEnd();
+				cw.visitField(ACC_PRIVATE, "index", "I", null, null).visitEnd();
+				insertConstructor(cw, superclassNameInternal);
+				insertCursor(cw, accessClassNameInternal);
+				for (int i = 0, n = properties.size(); i < n; i++) {
+					Property property = properties.get(i);
+					insertGetter(cw, accessClassNameInternal, property, i);
+					implemented.add(property.getter.getName() + Type.getMethodDescriptor(property.getter));
+					if (property.setter != null) {
+						insertSetter(cw, accessClassNameInternal, property, i);
+						implemented.add(property.setter.getName() + Type.getMethodDescriptor(property.setter));
+					}
+				}
+				insertCopyFrom(cw, accessClassNameInternal, classNameInternal, properties);
+				cw.visitEnd();
+
+				for (Method method : getAbstractMethods(type))
+					if (!implemented.contains(method.getName() + Type.getMethodDescriptor(method)))
+						throw new IllegalArgumentException("Flyweight can't implement abstract method: " + method);
+
+				accessClass = loader.defineAccessClass(type, accessClassName, cw.toByteArray());
+			}
+			return accessClass;
+		} finally {
+			loader.unlock(accessClassName);
+		}
+	}
+
+	static private void checkOverridable (Method method) {
+		int modifiers = method.getModifiers();
+		if (Modifier.isFinal(modifiers) || Modifier.isStatic(modifiers))
+			throw new IllegalArgumentException("Flyweight can't override method: " + method);
+	}
+
+	static private ArrayList<Method> getAbstractMethods (Class type) {
+		ArrayList<Method> methods = new ArrayList();
+		HashSet<String> concrete = new HashSet();
+		for (Class nextClass = type; nextClass != null; nextClass = nextClass.getSuperclass()) {
+			for (Method method : nextClass.getDeclaredMethods()) {
+				String signature = method.getName() + Type.getMethodDescriptor(method);
+				if (!Modifier.isAbstract(method.getModifiers()))
+					concrete.add(signature);
+				else if (!concrete.contains(signature)) methods.add(method);
+			}
+		}
+		for (Method method : type.getMethods()) // Interface methods without a default implementation.
+			if (Modifier.isAbstract(method.getModifiers()) && !concrete.contains(method.getName() + Type.getMethodDescriptor(method)))
+				methods.add(method);
+		return methods;
+	}
+
+	static private void insertConstructor (ClassWriter cw, String superclassNameInternal) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, superclassNameInternal, "<init>", "()V");
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(1, 1);
+		mv.visitEnd();
+	}
+
+	static private void insertCursor (ClassWriter cw, String accessClassNameInternal) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "setFlyweightColumns", "([Ljava/lang/Object;)V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitFieldInsn(PUTFIELD, accessClassNameInternal, "columns", "[Ljava/lang/Object;");
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(2, 2);
+		mv.visitEnd();
+
+		mv = cw.visitMethod(ACC_PUBLIC, "getFlyweightIndex", "()I", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitFieldInsn(GETFIELD, accessClassNameInternal, "index", "I");
+		mv.visitInsn(IRETURN);
+		mv.visitMaxs(1, 1);
+		mv.visitEnd();
+
+		mv = cw.visitMethod(ACC_PUBLIC, "setFlyweightIndex", "(I)V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitVarInsn(ILOAD, 1);
+		mv.visitFieldInsn(PUTFIELD, accessClassNameInternal, "index", "I");
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(2, 2);
+		mv.visitEnd();
+	}
+
+	/** Pushes the column array and the flyweight's index. */
+	static private void insertColumnAndIndex (MethodVisitor mv, String accessClassNameInternal, Property property, int column) {
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitFieldInsn(GETFIELD, accessClassNameInternal, "columns", "[Ljava/lang/Object;");
+		mv.visitIntInsn(SIPUSH, column);
+		mv.visitInsn(AALOAD);
+		mv.visitTypeInsn(CHECKCAST, "[" + Type.getDescriptor(property.type));
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitFieldInsn(GETFIELD, accessClassNameInternal, "index", "I");
+	}
+
+	static private void insertGetter (ClassWriter cw, String accessClassNameInternal, Property property, int column) {
+		Method getter = property.getter;
+		Type type = Type.getType(property.type);
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, getter.getName(), Type.getMethodDescriptor(getter), null, null);
+		mv.visitCode();
+		insertColumnAndIndex(mv, accessClassNameInternal, property, column);
+		mv.visitInsn(type.getOpcode(IALOAD));
+		mv.visitInsn(type.getOpcode(IRETURN));
+		mv.visitMaxs(3, 1);
+		mv.visitEnd();
+	}
+
+	static private void insertSetter (ClassWriter cw, String accessClassNameInternal, Property property, int column) {
+		Method setter = property.setter;
+		Type type = Type.getType(property.type);
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, setter.getName(), Type.getMethodDescriptor(setter), null, null);
+		mv.visitCode();
+		insertColumnAndIndex(mv, accessClassNameInternal, property, column);
+		mv.visitVarInsn(type.getOpcode(ILOAD), 1);
+		mv.visitInsn(type.getOpcode(IASTORE));
+		if (setter.getReturnType() == void.class)
+			mv.visitInsn(RETURN);
+		else {
+			// A fluent setter returns the flyweight.
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitInsn(ARETURN);
+		}
+		mv.visitMaxs(4, 1 + type.getSize());
+		mv.visitEnd();
+	}
+
+	static private void insertCopyFrom (ClassWriter cw, String accessClassNameInternal, String classNameInternal,
+		ArrayList<Property> properties) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "copyToFlyweight", "(Ljava/lang/Object;)V", null, null);
+		mv.visitCode();
+		for (int i = 0, n = properties.size(); i < n; i++) {
+			Property property = properties.get(i);
+			insertColumnAndIndex(mv, accessClassNameInternal, property, i);
+			mv.visitVarInsn(ALOAD, 1);
+			mv.visitTypeInsn(CHECKCAST, classNameInternal);
+			Property.insertInvoke(mv, property.getter);
+			mv.visitInsn(Type.getType(property.type).getOpcode(IASTORE));
+		}
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(4, 2);
+		mv.visitEnd();
+	}
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import java.lang.ref.WeakReference;
+
+import junit.framework.TestCase;
+
+public class AccessClassCacheTest extends TestCase {
+	protected void tearDown () throws Exception {
+		AccessClassCache.setMaxCachedClasses(256);
+	}
+
+	public void testEviction () throws Exception {
+		if (DefinitionStrategy.get(A.class) != DefinitionStrategy.HIDDEN) return; // Hidden classes need Java 15+.
+		AccessClassCache.setMaxCachedClasses(0);
+		assertEquals(0, AccessClassCache.getCachedClasses());
+
+		AccessClassCache.setMaxCachedClasses(2);
+		long definedClasses = AccessClassCache.getDefinedClasses(), definedBytes = AccessClassCache.getDefinedBytes();
+		WeakReference<Class> a = new WeakReference(FieldAccess.get(A.class).getClass());
+		WeakReference<Class> b = new WeakReference(FieldAccess.get(B.class).getClass());
+		assertEquals(definedClasses + 2, AccessClassCache.getDefinedClasses());
+		assertTrue(AccessClassCache.getDefinedBytes() > definedBytes);
+
+		FieldAccess.get(A.class); // A is now more recently used than B.
+		WeakReference<Class> c = new WeakReference(FieldAccess.get(C.class).getClass());
+		assertEquals(2, AccessClassCache.getCachedClasses());
+		assertEquals(definedClasses + 3, AccessClassCache.getDefinedClasses());
+
+		// B was evicted, so it is unloaded.
+		collect(b);
+		assertNull(b.get());
+		assertNotNull(a.get());
+		assertNotNull(c.get());
+		assertSame(a.get(), FieldAccess.get(A.class).getClass());
+
+		// Unloading removes the access class from the cache.
+		assertEquals(1, AccessClassCache.unload(A.class));
+		assertEquals(0, AccessClassCache.unload(A.class));
+		assertEquals(1, AccessClassCache.getCachedClasses());
+		collect(a);
+		assertNull(a.get());
+		assertNotNull(c.get());
+	}
+
+	private void collect (WeakReference ref) throws InterruptedException {
+		for (int i = 0; i < 50 && ref.get() != null; i++) {
+			System.gc();
+			Thread.sleep(100);
+		}
+	}
+
+	static public class A {
+		public int value;
+	}
+
+	static public class B {
+		public int value;
+	}
+
+	static public class C {
+		public int value;
+	}
+}
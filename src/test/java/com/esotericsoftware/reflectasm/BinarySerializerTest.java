@@ -0,0 +1,274 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+public class BinarySerializerTest extends TestCase {
+	public void testPrimitives () {
+		BinaryOutput output = new BinaryOutput();
+		output.writeInt(0);
+		output.writeInt(-1);
+		output.writeInt(Integer.MIN_VALUE);
+		output.writeInt(Integer.MAX_VALUE);
+		output.writeLong(Long.MIN_VALUE);
+		output.writeLong(-2);
+		output.writeVarInt(-1);
+		output.writeFloat(1.5f);
+		output.writeDouble(-2.25);
+		output.writeShort((short)-3);
+		output.writeChar('￿');
+		output.writeBoolean(true);
+		output.writeString(null);
+		output.writeString("");
+		output.writeString("ascii");
+		output.writeString("é中😀");
+		byte[] bytes = output.toBytes();
+
+		BinaryOutput small = new BinaryOutput();
+		small.writeInt(-1); // Zigzag encoding keeps small negative values short.
+		assertEquals(1, small.toBytes().length);
+
+		BinaryInput input = new BinaryInput(bytes);
+		assertEquals(0, input.readInt());
+		assertEquals(-1, input.readInt());
+		assertEquals(Integer.MIN_VALUE, input.readInt());
+		assertEquals(Integer.MAX_VALUE, input.readInt());
+		assertEquals(Long.MIN_VALUE, input.readLong());
+		assertEquals(-2, input.readLong());
+		assertEquals(-1, input.readVarInt());
+		assertEquals(1.5f, input.readFloat());
+		assertEquals(-2.25, input.readDouble());
+		assertEquals(-3, input.readShort());
+		assertEquals('￿', input.readChar());
+		assertTrue(input.readBoolean());
+		assertNull(input.readString());
+		assertEquals("", input.readString());
+		assertEquals("ascii", input.readString());
+		assertEquals("é中😀", input.readString());
+		assertTrue(input.isEnd());
+	}
+
+	public void testStreams () {
+		StringBuilder buffer = new StringBuilder();
+		for (int i = 0; i < 1000; i++)
+			buffer.append("abcé");
+		String longString = buffer.toString();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		BinaryOutput output = new BinaryOutput(bytes, 16);
+		for (int i = 0; i < 100; i++)
+			output.writeLong(i * 1234567l);
+		output.writeString(longString);
+		output.flush();
+
+		BinaryInput input = new BinaryInput(new ByteArrayInputStream(bytes.toByteArray()), 16);
+		for (int i = 0; i < 100; i++)
+			assertEquals(i * 1234567l, input.readLong());
+		assertEquals(longString, input.readString());
+		assertTrue(input.isEnd());
+
+		ByteBuffer byteBuffer = ByteBuffer.allocate(8192);
+		output.setByteBuffer(byteBuffer);
+		output.writeString(longString);
+		output.flush();
+		byteBuffer.flip();
+		assertEquals(longString, new BinaryInput(byteBuffer).readString());
+	}
+
+	public void testObjects () {
+		Person person = new Person();
+		person.name = "Nate";
+		person.age = 42;
+		person.height = 1.8;
+		person.scores = new int[] {1, -2, 3};
+		person.color = Color.GREEN;
+		person.tags = new ArrayList();
+		person.tags.add("a");
+		person.tags.add(1);
+		person.attributes = new HashMap();
+		person.attributes.put("key", 2.5f);
+		person.setId(7);
+		person.friend = new Person();
+		person.friend.name = "Friend";
+		person.names = new TreeSet(Arrays.asList("z", "y"));
+		person.cache = "transient";
+
+		Person copy = (Person)roundTrip(newSerializer(), person);
+		assertEquals("Nate", copy.name);
+		assertEquals(42, copy.age);
+		assertEquals(1.8, copy.height);
+		assertTrue(Arrays.equals(person.scores, copy.scores));
+		assertEquals(Color.GREEN, copy.color);
+		assertEquals(person.tags, copy.tags);
+		assertEquals(person.attributes, copy.attributes);
+		assertEquals(7, copy.getId());
+		assertEquals("Friend", copy.friend.name);
+		assertNull(copy.friend.friend);
+		assertEquals(person.names, copy.names);
+		assertNull(copy.cache);
+	}
+
+	public void testReferences () {
+		Person person = new Person();
+		person.friend = person;
+		person.tags = new ArrayList();
+		person.tags.add(person);
+
+		BinarySerializer serializer = newSerializer();
+		serializer.setReferences(true);
+		Person copy = (Person)roundTrip(serializer, person);
+		assertSame(copy, copy.friend);
+		assertSame(copy, copy.tags.get(0));
+	}
+
+	public void testTypedRoot () {
+		BinarySerializer serializer = newSerializer();
+		BinaryOutput output = new BinaryOutput();
+		Person person = new Person();
+		person.name = "typed";
+		serializer.writeObject(output, person, Person.class);
+		serializer.writeObject(output, person, Person.class);
+		BinaryInput input = new BinaryInput(output.toBytes());
+		assertEquals("typed", serializer.readObject(input, Person.class).name);
+		assertEquals("typed", serializer.readObject(input, Person.class).name);
+		assertTrue(input.isEnd());
+	}
+
+	public void testFieldOrder () {
+		// Reflected fields are written in their place in the declaration order, not after the generated fields.
+		Ordered ordered = new Ordered();
+		BinarySerializer serializer = new BinarySerializer();
+		BinaryOutput output = new BinaryOutput();
+		SerializerAccess access = SerializerAccess.get(Ordered.class);
+		access.write(ordered, output, serializer);
+		BinaryInput input = new BinaryInput(output.toBytes());
+		assertEquals(1, input.readInt());
+		assertEquals(2, input.readInt());
+		assertEquals(3, input.readInt());
+		assertEquals("four", input.readString());
+		assertTrue(input.isEnd());
+
+		Ordered copy = new Ordered();
+		copy.a = 0;
+		copy.d = null;
+		access.read(copy, new BinaryInput(output.toBytes()), serializer);
+		assertEquals(1, copy.a);
+		assertEquals("four", copy.d);
+	}
+
+	public void testRegistration () {
+		Person person = new Person();
+		person.friend = new Person();
+		BinaryOutput output = new BinaryOutput();
+		new BinarySerializer().writeObject(output, new Object[] {person});
+		byte[] bytes = output.toBytes();
+
+		// Unregistered classes are not loaded, even as an array element type.
+		try {
+			new BinarySerializer().readObject(new BinaryInput(bytes));
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+
+		BinarySerializer serializer = new BinarySerializer();
+		serializer.register(Person.class);
+		try {
+			serializer.readObject(new BinaryInput(bytes));
+			fail(); // Object is not registered.
+		} catch (IllegalArgumentException expected) {
+		}
+		serializer.register(Object.class);
+		assertNotNull(((Person)((Object[])serializer.readObject(new BinaryInput(bytes)))[0]).friend);
+
+		serializer = new BinarySerializer();
+		serializer.setRegistrationRequired(false);
+		assertNotNull(((Person)((Object[])serializer.readObject(new BinaryInput(bytes)))[0]).friend);
+	}
+
+	public void testByteBufferPosition () {
+		// Bytes are read ahead from the buffer, so its position is past the values read.
+		BinaryOutput output = new BinaryOutput();
+		output.writeInt(1);
+		output.writeInt(2);
+		ByteBuffer byteBuffer = ByteBuffer.wrap(output.toBytes());
+		BinaryInput input = new BinaryInput(byteBuffer);
+		assertEquals(1, input.readInt());
+		assertEquals(byteBuffer.limit(), byteBuffer.position());
+		assertEquals(2, input.readInt());
+		assertTrue(input.isEnd());
+	}
+
+	private BinarySerializer newSerializer () {
+		BinarySerializer serializer = new BinarySerializer();
+		serializer.register(Person.class);
+		serializer.register(Color.class);
+		return serializer;
+	}
+
+	private Object roundTrip (BinarySerializer serializer, Object object) {
+		BinaryOutput output = new BinaryOutput();
+		serializer.writeObject(output, object);
+		return serializer.readObject(new BinaryInput(output.toBytes()));
+	}
+
+	static public enum Color {
+		RED, GREEN {
+			public String toString () {
+				return "green";
+			}
+		}
+	}
+
+	static public class Base {
+		private int id;
+
+		public int getId () {
+			return id;
+		}
+
+		public void setId (int id) {
+			this.id = id;
+		}
+	}
+
+	static public class Ordered {
+		public int a = 1;
+		private int b = 2;
+		public final int c = 3;
+		public String d = "four";
+	}
+
+	static public class Person extends Base {
+		public String name;
+		public int age;
+		public double height;
+		public int[] scores;
+		public Object color;
+		public ArrayList tags;
+		public HashMap<String, Object> attributes;
+		public Person friend;
+		public TreeSet<String> names;
+		public transient String cache;
+	}
+}
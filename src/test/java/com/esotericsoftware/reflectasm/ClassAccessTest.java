@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import junit.framework.TestCase;
+
+public class ClassAccessTest extends TestCase {
+	public void testFieldsMethodsAndConstructor () {
+		ClassAccess access = ClassAccess.get(SomeClass.class);
+		SomeClass someObject = (SomeClass)access.newInstance();
+		assertEquals(7, someObject.count);
+
+		access.set(someObject, "name", "first");
+		assertEquals("first", access.invoke(someObject, "getName"));
+		access.invoke(someObject, "setName", "second");
+		assertEquals("second", access.get(someObject, "name"));
+
+		access.setInt(someObject, access.getIndex("count"), 3);
+		assertEquals(3, access.invoke(someObject, "getCount"));
+		assertEquals(8L, access.invoke(someObject, access.getMethodIndex("add", long.class, double.class), 5L, 0.5));
+		assertEquals("meow 1", access.invoke(null, "staticMethod", 1));
+		assertEquals(long.class, access.getReturnTypes()[access.getMethodIndex("add")]);
+
+		try {
+			access.invoke(someObject, 1000);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			access.newInstance(this);
+			fail();
+		} catch (UnsupportedOperationException expected) {
+		}
+	}
+
+	public void testConstructors () {
+		try {
+			ClassAccess.get(NoDefaultConstructor.class).newInstance();
+			fail();
+		} catch (UnsupportedOperationException expected) {
+		}
+		assertEquals(0, ClassAccess.get(NoDefaultConstructor.class).getFieldCount());
+
+		ClassAccess access = ClassAccess.get(Inner.class);
+		assertTrue(access.isNonStaticMemberClass());
+		Inner inner = (Inner)access.newInstance(this);
+		assertSame(this, inner.outer());
+		try {
+			access.newInstance();
+			fail();
+		} catch (UnsupportedOperationException expected) {
+		}
+	}
+
+	public void testEmptyClass () {
+		ClassAccess access = ClassAccess.get(EmptyClass.class);
+		assertTrue(access.newInstance() instanceof EmptyClass);
+		assertEquals(0, access.getMethodNames().length);
+		try {
+			access.invoke(new EmptyClass(), 0);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	static public class EmptyClass {
+	}
+
+	static public class SomeClass {
+		String name;
+		public int count = 7;
+
+		public String getName () {
+			return name;
+		}
+
+		public void setName (String name) {
+			this.name = name;
+		}
+
+		public int getCount () {
+			return count;
+		}
+
+		public long add (long value, double extra) {
+			return count + value;
+		}
+
+		static public String staticMethod (int value) {
+			return "meow " + value;
+		}
+	}
+
+	static public class NoDefaultConstructor {
+		public NoDefaultConstructor (int value) {
+		}
+	}
+
+	public class Inner {
+		public ClassAccessTest outer () {
+			return ClassAccessTest.this;
+		}
+	}
+}
@@ -17,12 +17,20 @@ package com.esotericsoftware.reflectasm;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertTrue;
+import static org.objectweb.asm.Opcodes.*;
 
 import junit.framework.TestCase;
 
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+
 public class ClassLoaderTest extends TestCase {
 	public void testDifferentClassloaders () throws Exception {
 		// This classloader can see only the Test class and core Java classes.
@@ -126,6 +134,135 @@ public class ClassLoaderTest extends TestCase {
 		assertEquals(initialCount - 1, AccessClassLoader.activeAccessClassLoaders());
 	}
 
+	public void testUnloadHiddenAccessClass () throws Exception {
+		Method isHidden;
+		try {
+			isHidden = Class.class.getMethod("isHidden");
+		} catch (NoSuchMethodException ex) {
+			return; // Hidden classes need Java 15+.
+		}
+		FieldAccess access = FieldAccess.get(Test.class);
+		assertTrue((Boolean)isHidden.invoke(access.getClass()));
+		Test test = new Test();
+		access.set(test, "name", "hidden");
+		assertEquals("hidden", test.toString());
+
+		WeakReference<Class> accessClass = new WeakReference(access.getClass());
+		access = null;
+		assertEquals(1, AccessClassCache.unload(Test.class));
+		for (int i = 0; i < 50 && accessClass.get() != null; i++) {
+			System.gc();
+			Thread.sleep(100);
+		}
+		assertNull(accessClass.get());
+
+		// A new access class is generated.
+		access = FieldAccess.get(Test.class);
+		assertEquals("hidden", access.get(test, "name"));
+	}
+
+	public void testHiddenDefinitionFailure () throws Exception {
+		if (DefinitionStrategy.get(Test.class) != DefinitionStrategy.HIDDEN) return;
+		String name = Test.class.getName() + "BadAccess";
+		ClassWriter cw = new ClassWriter(0);
+		cw.visit(V1_6, ACC_PUBLIC + ACC_SUPER, name.replace('.', '/'), null, "java/lang/Object", null);
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC + ACC_STATIC, "bad", "()I", null, null);
+		mv.visitCode();
+		mv.visitInsn(IRETURN); // Fails verification, the stack is empty.
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+		cw.visitEnd();
+
+		AccessClassLoader loader = AccessClassLoader.get(Test.class);
+		try {
+			loader.defineAccessClass(Test.class, name, cw.toByteArray());
+			fail();
+		} catch (RuntimeException expected) {
+			assertTrue(expected.getCause() instanceof VerifyError);
+		}
+		// Not defined in the AccessClassLoader instead, where it would lose package access.
+		assertNull(loader.loadAccessClass(name));
+	}
+
+	public void testRedefineAfterRemove () throws Exception {
+		ClassLoader loader = new ChildFirstClassLoader(PackagePrivate.class.getName());
+		Class type = loader.loadClass(PackagePrivate.class.getName());
+		Object instance = type.newInstance();
+		MethodAccess access = MethodAccess.get(type);
+		assertEquals(7, access.invoke(instance, "hidden"));
+
+		// The new AccessClassLoader doesn't know the access class is already defined in the type's class loader.
+		AccessClassLoader.remove(loader);
+		access = MethodAccess.get(type);
+		assertEquals(7, access.invoke(instance, "hidden"));
+	}
+
+	public void testCacheKeptAfterCollection () throws Exception {
+		Class type = new ChildFirstClassLoader(PackagePrivate.class.getName()).loadClass(PackagePrivate.class.getName());
+		// A lookup with full privilege access to the package, so the access class is a hidden class kept only by the cache.
+		Method lookupMethod = type.getDeclaredMethod("lookup");
+		lookupMethod.setAccessible(true);
+		FieldAccess.get(type, (MethodHandles.Lookup)lookupMethod.invoke(null));
+		long defined = AccessClassCache.getDefinedClasses();
+		assertEquals(1, AccessClassLoader.get(type).unload(type)); // Was hidden.
+		FieldAccess.get(type);
+		assertEquals(defined + 1, AccessClassCache.getDefinedClasses());
+		defined++;
+
+		// The AccessClassLoader and its cache are kept as long as the type, so the access class isn't generated again.
+		System.gc();
+		FieldAccess.get(type);
+		assertEquals(defined, AccessClassCache.getDefinedClasses());
+	}
+
+	public void testDefinitionStrategy () throws Exception {
+		DefinitionStrategy strategy = DefinitionStrategy.get(Test.class);
+		try {
+			Class.class.getMethod("isHidden");
+			assertEquals(DefinitionStrategy.HIDDEN, strategy);
+		} catch (NoSuchMethodException ex) {
+			assertTrue(strategy != DefinitionStrategy.ACCESS_LOADER);
+		}
+		// This class loader can't see the reflectasm classes.
+		Class testClass = new TestClassLoader1().loadClass("com.esotericsoftware.reflectasm.ClassLoaderTest$Test");
+		assertEquals(DefinitionStrategy.ACCESS_LOADER, DefinitionStrategy.get(testClass));
+	}
+
+	public void testConcurrentGeneration () throws Exception {
+		final int threadCount = 16;
+		final CountDownLatch start = new CountDownLatch(1);
+		final Object[][] results = new Object[threadCount][];
+		Thread[] threads = new Thread[threadCount];
+		for (int i = 0; i < threadCount; i++) {
+			final int index = i;
+			threads[i] = new Thread() {
+				public void run () {
+					try {
+						start.await();
+						results[index] = new Object[] {FieldAccess.get(Concurrent.class).getClass(),
+							ConstructorAccess.get(Concurrent.class).getClass(), MapAccess.get(Concurrent.class).getClass()};
+					} catch (Throwable ex) {
+						results[index] = new Object[] {ex};
+					}
+				}
+			};
+			threads[i].start();
+		}
+		start.countDown();
+		for (Thread thread : threads)
+			thread.join();
+		// Each access class is generated once, even when hidden classes are used.
+		for (int i = 0; i < threadCount; i++) {
+			assertEquals(3, results[i].length);
+			for (int ii = 0; ii < 3; ii++)
+				assertSame(results[0][ii], results[i][ii]);
+		}
+	}
+
+	static public class Concurrent {
+		public int value;
+	}
+
 	static public class Test {
 		public String name;
 
@@ -134,6 +271,56 @@ public class ClassLoaderTest extends TestCase {
 		}
 	}
 
+	static public class PackagePrivate {
+		int hidden () {
+			return 7;
+		}
+
+		static MethodHandles.Lookup lookup () {
+			return MethodHandles.lookup();
+		}
+	}
+
+	/** Loads one class itself and delegates all others to the class loader of this test, so it sees the reflectasm classes. */
+	static public class ChildFirstClassLoader extends ClassLoader {
+		private final String className;
+
+		public ChildFirstClassLoader (String className) {
+			super(ClassLoaderTest.class.getClassLoader());
+			this.className = className;
+		}
+
+		protected synchronized Class<?> loadClass (String name, boolean resolve) throws ClassNotFoundException {
+			Class c = findLoadedClass(name);
+			if (c != null) return c;
+			if (!name.equals(className)) return super.loadClass(name, resolve);
+			byte[] bytes = readClass(name);
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+
+	static byte[] readClass (String name) throws ClassNotFoundException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream(32 * 1024);
+		InputStream input = ClassLoaderTest.class.getResourceAsStream("/" + name.replace('.', '/') + ".class");
+		if (input == null) throw new ClassNotFoundException(name);
+		try {
+			byte[] buffer = new byte[4096];
+			while (true) {
+				int length = input.read(buffer, 0, buffer.length);
+				if (length == -1) break;
+				output.write(buffer, 0, length);
+			}
+		} catch (IOException ex) {
+			throw new ClassNotFoundException("Error reading class file.", ex);
+		} finally {
+			try {
+				input.close();
+			} catch (IOException ignored) {
+			}
+		}
+		return output.toByteArray();
+	}
+
 	static public class TestClassLoader1 extends ClassLoader {
 		protected synchronized Class<?> loadClass (String name, boolean resolve) throws ClassNotFoundException {
 			Class c = findLoadedClass(name);
@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class ColumnarStoreTest extends TestCase {
+	public void testColumns () {
+		ColumnarStore<Trade> store = new ColumnarStore(Trade.class);
+		assertEquals("[symbol, quantity, price, time, buy, flags, code]", Arrays.toString(store.getColumnNames()));
+		store.addAll(trades(100));
+		assertEquals(100, store.size());
+		assertEquals(3, store.getDictionarySize(store.getColumnIndex("symbol")));
+
+		int quantity = store.getColumnIndex("quantity");
+		long sum = 0;
+		for (int row = 0, n = store.size(); row < n; row++)
+			sum += store.getInt(row, quantity);
+		assertEquals(4950, sum);
+
+		ByteBuffer buffer = store.getColumnBuffer(quantity);
+		assertEquals(400, buffer.remaining());
+		assertEquals(99, buffer.getInt(99 * 4));
+
+		int buy = store.getColumnIndex("buy");
+		assertTrue(store.getBoolean(0, buy));
+		assertFalse(store.getBoolean(1, buy));
+		assertEquals(13, store.getColumnBuffer(buy).remaining());
+		assertEquals("MSFT", store.getString(1, store.getColumnIndex("symbol")));
+		assertNull(store.getString(2, store.getColumnIndex("symbol")));
+
+		assertTrades(store);
+
+		try {
+			store.getLong(0, quantity);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			store.getInt(100, quantity);
+			fail();
+		} catch (IndexOutOfBoundsException expected) {
+		}
+	}
+
+	public void testSaveAndOpen () throws Exception {
+		File directory = File.createTempFile("columnar", "");
+		directory.delete();
+		try {
+			ColumnarStore<Trade> store = new ColumnarStore(Trade.class);
+			store.addAll(trades(1000));
+			store.save(directory);
+
+			ColumnarStore<Trade> opened = ColumnarStore.open(Trade.class, directory);
+			assertEquals(1000, opened.size());
+			assertTrades(opened);
+			try {
+				opened.add(new Trade());
+				fail();
+			} catch (IllegalStateException expected) {
+			}
+			try {
+				opened.addAll(trades(10));
+				fail();
+			} catch (IllegalStateException expected) {
+			}
+			assertTrue(opened.getColumnBuffer(0).isDirect()); // Still memory-mapped.
+		} finally {
+			for (File file : directory.listFiles())
+				file.delete();
+			directory.delete();
+		}
+	}
+
+	private void assertTrades (ColumnarStore<Trade> store) {
+		ArrayList<Trade> trades = trades(store.size());
+		for (int row = 0, n = store.size(); row < n; row++) {
+			Trade expected = trades.get(row), actual = store.get(row);
+			assertEquals(expected.symbol, actual.symbol);
+			assertEquals(expected.quantity, actual.quantity);
+			assertEquals(expected.price, actual.price);
+			assertEquals(expected.time, actual.time);
+			assertEquals(expected.buy, actual.buy);
+			assertEquals(expected.flags, actual.flags);
+			assertEquals(expected.code, actual.code);
+			assertNull(actual.notes);
+		}
+	}
+
+	private ArrayList<Trade> trades (int count) {
+		String[] symbols = {"AAPL", "MSFT", null, "GOOG"};
+		ArrayList<Trade> trades = new ArrayList();
+		for (int i = 0; i < count; i++) {
+			Trade trade = new Trade();
+			trade.symbol = symbols[i % symbols.length];
+			trade.quantity = i;
+			trade.price = i * 0.25;
+			trade.time = 1000000000000l + i;
+			trade.buy = i % 2 == 0;
+			trade.flags = (short)-i;
+			trade.code = (char)('a' + i % 26);
+			trade.notes = new ArrayList();
+			trades.add(trade);
+		}
+		return trades;
+	}
+
+	static public class Trade {
+		public String symbol;
+		public int quantity;
+		public double price;
+		public long time;
+		public boolean buy;
+		public short flags;
+		public char code;
+		public ArrayList notes;
+	}
+}
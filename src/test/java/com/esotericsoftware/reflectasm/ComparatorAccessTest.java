@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
+
+import junit.framework.TestCase;
+
+public class ComparatorAccessTest extends TestCase {
+	public void testEquals () {
+		ComparatorAccess<SomeClass> access = ComparatorAccess.get(SomeClass.class);
+		SomeClass a = newInstance(), b = newInstance();
+		assertTrue(access.equals(a, b));
+		assertTrue(access.equals(a, a));
+		assertFalse(access.equals(a, null));
+		assertFalse(access.equals(null, b));
+		assertTrue(access.equivalent(null, null));
+		assertEquals(access.hashCode(a), access.hashCode(b));
+		assertEquals(0, access.hash(null));
+		assertEquals(0, access.compare(a, b));
+
+		b.floatValue = Float.NaN;
+		a.floatValue = Float.NaN;
+		assertTrue(access.equals(a, b));
+
+		b.ints[1] = 5;
+		assertFalse(access.equals(a, b));
+		b.ints[1] = 2;
+		b.names = new String[] {"x", null};
+		assertFalse(access.equals(a, b));
+		b.names = new String[] {"a", null};
+		assertTrue(access.equals(a, b));
+		b.name = null;
+		assertFalse(access.equals(a, b));
+		assertTrue(access.compare(a, b) > 0);
+		assertTrue(access.compare(b, a) < 0);
+	}
+
+	public void testHashCode () {
+		ComparatorAccess<SomeClass> access = ComparatorAccess.get(SomeClass.class, "id", "name", "doubleValue", "flag");
+		SomeClass a = newInstance();
+		assertEquals(Objects.hash(a.id, a.name, a.doubleValue, a.flag), access.hashCode(a));
+		assertEquals("[id, name, doubleValue, flag]", Arrays.toString(access.getFieldNames()));
+	}
+
+	public void testCompare () {
+		ComparatorAccess<SomeClass> access = ComparatorAccess.get(SomeClass.class, "id", "name");
+		SomeClass a = newInstance(), b = newInstance();
+		b.id = 11;
+		assertTrue(access.compare(a, b) < 0);
+		b.id = 10;
+		b.name = "b";
+		assertTrue(access.compare(a, b) < 0);
+		b.name = "a";
+		b.doubleValue = -1;
+		assertEquals(0, access.compare(a, b));
+		assertTrue(access.equals(a, b));
+
+		SomeClass[] array = {newInstance(), newInstance(), newInstance()};
+		array[0].id = 3;
+		array[1].id = 1;
+		array[2].id = 2;
+		Arrays.sort(array, access);
+		assertEquals(1, array[0].id);
+		assertEquals(3, array[2].id);
+	}
+
+	public void testMissingField () {
+		try {
+			ComparatorAccess.get(SomeClass.class, "id", "meow");
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	public void testFieldSubsetNames () {
+		// An empty subset compares nothing, unlike all fields.
+		ComparatorAccess<SomeClass> none = ComparatorAccess.get(SomeClass.class, new String[0]);
+		ComparatorAccess<SomeClass> all = ComparatorAccess.get(SomeClass.class);
+		assertNotSame(none.getClass(), all.getClass());
+		assertEquals(0, none.getFieldNames().length);
+		SomeClass a = newInstance(), b = newInstance();
+		b.id = 11;
+		assertTrue(none.equals(a, b));
+		assertFalse(all.equals(a, b));
+	}
+
+	public void testInheritedFields () {
+		// ArrayList's fields are private, transient, or can't be referenced from this package.
+		ComparatorAccess<SomeList> access = ComparatorAccess.get(SomeList.class);
+		assertEquals("[extra, cached]", Arrays.toString(ComparatorAccess.get(SomeList.class, "extra", "cached").getFieldNames()));
+		assertEquals("[extra]", Arrays.toString(access.getFieldNames()));
+		SomeList a = new SomeList(), b = new SomeList();
+		a.add("a");
+		a.cached = 1;
+		assertTrue(access.equals(a, b));
+		b.extra = 1;
+		assertFalse(access.equals(a, b));
+
+		// Fields named explicitly must be accessible.
+		try {
+			ComparatorAccess.get(SomeList.class, "modCount");
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	public void testEmptyClass () {
+		ComparatorAccess<EmptyClass> access = ComparatorAccess.get(EmptyClass.class);
+		assertTrue(access.equals(new EmptyClass(), new EmptyClass()));
+		assertEquals(0, access.compare(new EmptyClass(), new EmptyClass()));
+		assertEquals(1, access.hashCode(new EmptyClass()));
+	}
+
+	private SomeClass newInstance () {
+		SomeClass object = new SomeClass();
+		object.id = 10;
+		object.name = "a";
+		object.doubleValue = 1.5;
+		object.floatValue = 2.5f;
+		object.flag = true;
+		object.ints = new int[] {1, 2, 3};
+		object.names = new String[] {"a", null};
+		return object;
+	}
+
+	static public class SomeClass {
+		public long id;
+		public String name;
+		public double doubleValue;
+		public float floatValue;
+		public boolean flag;
+		public int[] ints;
+		public String[] names;
+		private int ignored;
+	}
+
+	static public class SomeList extends ArrayList<String> {
+		public int extra;
+		public transient int cached;
+	}
+
+	static public class EmptyClass {
+	}
+}
@@ -99,6 +99,46 @@ public class ConstructorAccessTest extends TestCase {
 		}
 	}
 
+	public void testBypassingConstructor () {
+		ConstructorAccess<HasArgumentConstructor> access = ConstructorAccess.getBypassingConstructor(HasArgumentConstructor.class);
+		HasArgumentConstructor newInstance = access.newInstance();
+		assertEquals(null, newInstance.getMoo());
+		newInstance.moo = "cow";
+		assertEquals(new HasArgumentConstructor("cow"), newInstance);
+
+		ConstructorAccess<HasPrivateConstructor> privateAccess = ConstructorAccess.getBypassingConstructor(HasPrivateConstructor.class);
+		assertEquals(null, privateAccess.newInstance().getMoo());
+		assertTrue(privateAccess.newInstance() != privateAccess.newInstance());
+	}
+
+	public void testBypassingConstructorInner () {
+		ConstructorAccess<Inner> access = ConstructorAccess.getBypassingConstructor(Inner.class);
+		assertTrue(access.isNonStaticMemberClass());
+		Inner inner = access.newInstance(this);
+		assertEquals(null, inner.name);
+		assertTrue(inner.getOuter() == this);
+	}
+
+	public void testBypassingConstructorAbstract () {
+		try {
+			ConstructorAccess.getBypassingConstructor(Runnable.class);
+			fail();
+		} catch (RuntimeException expected) {
+		}
+	}
+
+	public class Inner {
+		public String name;
+
+		public Inner (String name) {
+			this.name = name;
+		}
+
+		public ConstructorAccessTest getOuter () {
+			return ConstructorAccessTest.this;
+		}
+	}
+
 	static class PackagePrivateClass {
 		public String name;
 		public int intValue;
@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import junit.framework.TestCase;
+
+public class DeepCopierTest extends TestCase {
+	public void testCopy () {
+		Order order = new Order();
+		order.id = 123;
+		order.price = 9.5;
+		order.customer = "Nate";
+		order.setNote("fragile");
+		order.quantities = new int[] {1, 2, 3};
+		order.address = new Address();
+		order.address.zip = "12345";
+		order.address.lines = new String[] {"line1", "line2"};
+		order.tags = new ArrayList();
+		order.tags.add("a");
+		order.attributes = new HashMap();
+		order.attributes.put("key", new Address());
+
+		DeepCopier copier = new DeepCopier();
+		Order copy = copier.copy(order);
+		assertTrue(copy != order);
+		assertEquals(123, copy.id);
+		assertEquals(9.5, copy.price);
+		assertTrue(copy.customer == order.customer);
+		assertEquals("fragile", copy.getNote());
+		assertTrue(Arrays.equals(order.quantities, copy.quantities));
+		assertTrue(copy.quantities != order.quantities);
+		assertTrue(copy.address != order.address);
+		assertEquals("12345", copy.address.zip);
+		assertTrue(Arrays.equals(order.address.lines, copy.address.lines));
+		assertTrue(copy.address.lines != order.address.lines);
+		assertEquals(order.tags, copy.tags);
+		assertTrue(copy.tags != order.tags);
+		assertTrue(copy.attributes.get("key") instanceof Address);
+		assertTrue(copy.attributes.get("key") != order.attributes.get("key"));
+	}
+
+	public void testAcyclic () {
+		assertTrue(CloneAccess.get(Address.class).isAcyclic());
+		assertFalse(CloneAccess.get(Order.class).isAcyclic());
+		assertFalse(CloneAccess.get(Node.class).isAcyclic());
+	}
+
+	public void testCycle () {
+		Node a = new Node(), b = new Node();
+		a.value = 1;
+		a.next = b;
+		b.value = 2;
+		b.next = a;
+		Node copy = new DeepCopier().copy(a);
+		assertTrue(copy != a);
+		assertEquals(1, copy.value);
+		assertEquals(2, copy.next.value);
+		assertTrue(copy.next.next == copy);
+	}
+
+	public void testArray () {
+		Address address = new Address();
+		Object[] array = {address, address, "text", null};
+		Object[] copy = new DeepCopier().copy(array);
+		assertTrue(copy[0] != address);
+		assertTrue(copy[0] == copy[1]);
+		assertEquals("text", copy[2]);
+		assertNull(copy[3]);
+	}
+
+	public void testReferences () {
+		Route route = new Route();
+		route.from = route.to = new Address();
+		DeepCopier copier = new DeepCopier();
+		Route copy = copier.copy(route);
+		assertTrue(copy.from != copy.to);
+		copier.setReferences(true);
+		copy = copier.copy(route);
+		assertTrue(copy.from == copy.to);
+	}
+
+	public void testImmutable () {
+		DeepCopier copier = new DeepCopier();
+		Route route = new Route();
+		route.from = new Address();
+		copier.addImmutableType(Address.class);
+		assertTrue(copier.copy(route).from == route.from);
+	}
+
+	static public class Order {
+		public long id;
+		public double price;
+		public String customer;
+		private String note;
+		public int[] quantities;
+		public Address address;
+		public ArrayList<String> tags;
+		public HashMap<String, Object> attributes;
+
+		public String getNote () {
+			return note;
+		}
+
+		public void setNote (String note) {
+			this.note = note;
+		}
+	}
+
+	static public final class Address {
+		public String zip;
+		public String[] lines;
+	}
+
+	static public final class Route {
+		public Address from, to;
+	}
+
+	static public class Node {
+		public int value;
+		public Node next;
+	}
+}
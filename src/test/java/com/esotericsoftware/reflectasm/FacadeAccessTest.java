@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import junit.framework.TestCase;
+
+public class FacadeAccessTest extends TestCase {
+	public void testFacade () {
+		OrderView view = FacadeAccess.get(OrderView.class, Order.class);
+		Order order = new Order();
+		order.id = 123;
+		assertEquals(123, view.getId(order));
+		view.setQty(order, 5);
+		assertEquals(5, order.getQty());
+		assertEquals(5, view.qty(order));
+		view.name(order, "first");
+		assertEquals("first", order.name);
+		assertEquals("first", view.name(order));
+		assertEquals(50.0, view.total(order, 10));
+		view.clear(order);
+		assertEquals(0, order.getQty());
+		assertTrue(view.toString().length() > 0);
+		assertEquals(1, view.plusOne(order));
+	}
+
+	public void testSameMethodInSuperinterfaces () {
+		BothViews view = FacadeAccess.get(BothViews.class, Order.class);
+		Order order = new Order();
+		order.id = 7;
+		assertEquals(7, view.getId(order));
+	}
+
+	public void testMismatch () {
+		try {
+			FacadeAccess.get(BadName.class, Order.class);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			FacadeAccess.get(BadType.class, Order.class);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			FacadeAccess.get(BadInstance.class, Order.class);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	static public interface OrderView {
+		public long getId (Order order);
+
+		public void setQty (Order order, int qty);
+
+		public int qty (Object order);
+
+		public void name (Order order, String name);
+
+		public CharSequence name (Order order);
+
+		public double total (Order order, double price);
+
+		public void clear (Order order);
+
+		public String toString ();
+
+		default public int plusOne (Order order) {
+			return qty(order) + 1;
+		}
+	}
+
+	static public interface IdView {
+		public long getId (Order order);
+	}
+
+	static public interface OtherIdView {
+		public long getId (Order order);
+	}
+
+	static public interface BothViews extends IdView, OtherIdView {
+	}
+
+	static public interface BadName {
+		public int getMissing (Order order);
+	}
+
+	static public interface BadType {
+		public int getId (Order order);
+	}
+
+	static public interface BadInstance {
+		public long getId (String order);
+	}
+
+	static public class Order {
+		public long id;
+		public String name;
+		private int qty;
+
+		public int getQty () {
+			return qty;
+		}
+
+		public void setQty (int qty) {
+			this.qty = qty;
+		}
+
+		public double total (double price) {
+			return price * qty;
+		}
+
+		public Order clear () {
+			qty = 0;
+			return this;
+		}
+	}
+}
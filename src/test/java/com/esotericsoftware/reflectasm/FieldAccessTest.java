@@ -14,6 +14,19 @@
 
 package com.esotericsoftware.reflectasm;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.invoke.MethodHandles;
+import java.lang.module.Configuration;
+import java.lang.module.ModuleFinder;
+import java.lang.reflect.Field;
+import java.util.Collections;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
 import junit.framework.TestCase;
 
 public class FieldAccessTest extends TestCase {
@@ -82,6 +95,96 @@ public class FieldAccessTest extends TestCase {
 		assertEquals(123.456, access.getDouble(test, access.getIndex("doubleField")));
 	}
 
+	public void testCopyAndReset () {
+		FieldAccess access = FieldAccess.get(SomeClass.class);
+		SomeClass source = new SomeClass();
+		source.name = "first";
+		source.intValue = 1234;
+		source.booleanField = true;
+		source.charField = 'c';
+		source.longField = 123456789l;
+		source.doubleField = 123.456;
+
+		SomeClass target = new SomeClass();
+		access.copy(source, target);
+		assertEquals("first", target.name);
+		assertEquals(1234, target.intValue);
+		assertEquals(true, target.booleanField);
+		assertEquals('c', target.charField);
+		assertEquals(123456789l, target.longField);
+		assertEquals(123.456, target.doubleField);
+
+		access.reset(target);
+		assertEquals(null, target.name);
+		assertEquals(0, target.intValue);
+		assertEquals(false, target.booleanField);
+		assertEquals(0, target.charField);
+		assertEquals(0l, target.longField);
+		assertEquals(0d, target.doubleField);
+
+		FieldAccess emptyAccess = FieldAccess.get(EmptyClass.class);
+		emptyAccess.copy(new EmptyClass(), new EmptyClass());
+		emptyAccess.reset(new EmptyClass());
+	}
+
+	public void testAccept () {
+		FieldAccess access = FieldAccess.get(SomeClass.class);
+		SomeClass test = new SomeClass();
+		test.name = "first";
+		test.intValue = 1234;
+		test.booleanField = true;
+		test.charField = 'c';
+		test.longField = 123456789l;
+		test.doubleField = 123.456;
+
+		final Object[] values = new Object[access.getFieldCount()];
+		access.accept(test, new FieldValueVisitor() {
+			public void visitBoolean (int fieldIndex, boolean value) {
+				values[fieldIndex] = value;
+			}
+
+			public void visitByte (int fieldIndex, byte value) {
+				values[fieldIndex] = value;
+			}
+
+			public void visitShort (int fieldIndex, short value) {
+				values[fieldIndex] = value;
+			}
+
+			public void visitChar (int fieldIndex, char value) {
+				values[fieldIndex] = value;
+			}
+
+			public void visitInt (int fieldIndex, int value) {
+				values[fieldIndex] = value;
+			}
+
+			public void visitLong (int fieldIndex, long value) {
+				values[fieldIndex] = value;
+			}
+
+			public void visitFloat (int fieldIndex, float value) {
+				values[fieldIndex] = value;
+			}
+
+			public void visitDouble (int fieldIndex, double value) {
+				values[fieldIndex] = value;
+			}
+
+			public void visitObject (int fieldIndex, Object value) {
+				values[fieldIndex] = value;
+			}
+		});
+		assertEquals("first", values[access.getIndex("name")]);
+		assertEquals(1234, values[access.getIndex("intValue")]);
+		assertEquals(true, values[access.getIndex("booleanField")]);
+		assertEquals('c', values[access.getIndex("charField")]);
+		assertEquals(123456789l, values[access.getIndex("longField")]);
+		assertEquals(123.456, values[access.getIndex("doubleField")]);
+
+		FieldAccess.get(EmptyClass.class).accept(new EmptyClass(), null);
+	}
+
 	public void testEmptyClass () {
 		FieldAccess access = FieldAccess.get(EmptyClass.class);
 		try {
@@ -110,6 +213,168 @@ public class FieldAccessTest extends TestCase {
 		}
 	}
 
+	public void testSharedJdkAccess () {
+		FieldAccess access = FieldAccess.get(java.awt.Point.class);
+		java.awt.Point point = new java.awt.Point(1, 2);
+		access.setInt(point, access.getIndex("x"), 3);
+		assertEquals(3, point.x);
+
+		// The access class is shared, but each caller gets its own instance.
+		FieldAccess other = FieldAccess.get(java.awt.Point.class);
+		assertNotSame(access, other);
+		assertSame(access.getClass(), other.getClass());
+		assertSame(MemberMetadata.get(access.getClass()), MemberMetadata.get(other.getClass()));
+		access.getFieldNames()[0] = "oops";
+		assertFalse("oops".equals(other.getFieldNames()[0]));
+		access.setFields(new Field[0]);
+		assertEquals(access.getFieldCount(), other.getFields().length);
+
+		assertSame(ConstructorAccess.get(java.util.ArrayList.class).getClass(),
+			ConstructorAccess.get(java.util.ArrayList.class).getClass());
+		MethodAccess methodAccess = MethodAccess.get(java.util.ArrayList.class);
+		assertNotSame(methodAccess, MethodAccess.get(java.util.ArrayList.class));
+		assertSame(methodAccess.getClass(), MethodAccess.get(java.util.ArrayList.class).getClass());
+	}
+
+	public void testSharedMetadata () {
+		FieldAccess access1 = FieldAccess.get(SomeClass.class), access2 = FieldAccess.get(SomeClass.class);
+		assertSame(access1.getClass(), access2.getClass());
+		assertNotNull(MemberMetadata.get(access1.getClass()));
+
+		// Each FieldAccess copies the arrays once, so changing them doesn't affect other FieldAccess instances.
+		String[] names = access1.getFieldNames();
+		assertSame(names, access1.getFieldNames());
+		assertSame("name", names[0]);
+		names[0] = "changed";
+		assertEquals("name", access2.getFieldNames()[0]);
+		access1.getFieldTypes()[0] = Object.class;
+		assertEquals(String.class, access2.getFieldTypes()[0]);
+		assertEquals(0, access2.getIndex(access2.getFields()[0]));
+
+		// The indexed getters read the shared metadata without copying it.
+		assertSame("name", access1.getFieldName(0));
+		assertEquals(String.class, access1.getFieldType(0));
+		assertEquals(access2.getFields()[0], access1.getField(0));
+	}
+
+	public void testLookup () {
+		FieldAccess access = FieldAccess.get(LookupClass.class, MethodHandles.lookup());
+		LookupClass test = new LookupClass();
+		access.set(test, "value", 5);
+		assertEquals(5, test.value);
+		assertEquals(5, access.getInt(test, access.getIndex("value")));
+		assertEquals(3, ConstructorAccess.get(LookupClass.class, MethodHandles.lookup()).newInstance().value);
+
+		try {
+			FieldAccess.get(LookupClass.class, MethodHandles.publicLookup());
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	public void testLookupInNamedModule () throws Exception {
+		Class type = NamedModule.load();
+		if (type == null) return; // No compiler available.
+		Object instance = type.getDeclaredConstructor().newInstance();
+		MethodHandles.Lookup lookup = (MethodHandles.Lookup)type.getMethod("lookup").invoke(null);
+		FieldAccess access = FieldAccess.get(type, lookup);
+		assertEquals(3, access.getInt(instance, access.getIndex("value")));
+
+		// The lookup is still used after its AccessClassLoader could have been collected.
+		access = null;
+		System.gc();
+		AccessClassCache.unload(type);
+		access = FieldAccess.get(type);
+		access.setInt(instance, access.getIndex("value"), 5);
+		assertEquals(5, access.getInt(instance, access.getIndex("value")));
+	}
+
+	public void testBundle () {
+		FieldAccess[] accesses = FieldAccess.getBundle(SomeClass.class, EmptyClass.class, LookupClass.class);
+		assertEquals(3, accesses.length);
+		assertSame(accesses[0].getClass(), accesses[2].getClass());
+		assertNotSame(accesses[0].getClass(), FieldAccess.getBundle(EmptyClass.class, SomeClass.class, LookupClass.class)[0].getClass());
+		assertNotSame(accesses[0].getClass(), FieldAccess.getBundle(SomeClass.class, EmptyClass.class)[0].getClass());
+
+		SomeClass some = new SomeClass();
+		FieldAccess access = accesses[0];
+		access.set(some, "name", "first");
+		assertEquals("first", some.name);
+		access.setLong(some, access.getIndex("longField"), 123L);
+		assertEquals(123L, some.longField);
+		assertEquals(123L, access.getLong(some, access.getIndex("longField")));
+		access.setDouble(some, access.getIndex("doubleField"), 1.5);
+		assertEquals(1.5, access.get(some, "doubleField"));
+		access.reset(some);
+		assertNull(some.name);
+
+		assertEquals(0, accesses[1].getFieldCount());
+		try {
+			accesses[1].get(new EmptyClass(), 0);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+
+		LookupClass lookupClass = new LookupClass();
+		accesses[2].setInt(lookupClass, 0, 7);
+		assertEquals(7, lookupClass.value);
+		assertEquals(7, accesses[2].get(lookupClass, "value"));
+
+		// The same group of types reuses the access class.
+		assertSame(accesses[0].getClass(), FieldAccess.getBundle(SomeClass.class, EmptyClass.class, LookupClass.class)[0].getClass());
+
+		try {
+			FieldAccess.getBundle(SomeClass.class, String.class);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	/** Compiles a named module whose package is exported but not open, and loads its class in a new module layer. */
+	static class NamedModule {
+		static Class load () throws Exception {
+			JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+			if (compiler == null) return null;
+			File dir = File.createTempFile("lookuptest", "");
+			dir.delete();
+			File packageDir = new File(dir, "lookuptest");
+			packageDir.mkdirs();
+			File moduleInfo = new File(dir, "module-info.java"), source = new File(packageDir, "Hidden.java");
+			write(moduleInfo, "module lookuptest { exports lookuptest; }");
+			write(source, "package lookuptest;\n" //
+				+ "public class Hidden {\n" //
+				+ "	int value = 3;\n" //
+				+ "	public static java.lang.invoke.MethodHandles.Lookup lookup () { return java.lang.invoke.MethodHandles.lookup(); }\n" //
+				+ "}\n");
+			if (compiler.run(null, null, null, "-d", dir.getPath(), moduleInfo.getPath(), source.getPath()) != 0)
+				throw new RuntimeException("Unable to compile the test module.");
+
+			Configuration configuration = ModuleLayer.boot().configuration().resolve(ModuleFinder.of(dir.toPath()), ModuleFinder.of(),
+				Collections.singleton("lookuptest"));
+			ModuleLayer.Controller controller = ModuleLayer.defineModulesWithOneLoader(configuration,
+				Collections.singletonList(ModuleLayer.boot()), FieldAccessTest.class.getClassLoader());
+			Module module = controller.layer().findModule("lookuptest").get();
+			controller.addReads(module, FieldAccess.class.getModule()); // The access class extends FieldAccess.
+			return controller.layer().findLoader("lookuptest").loadClass("lookuptest.Hidden");
+		}
+
+		static private void write (File file, String text) throws IOException {
+			Writer writer = new FileWriter(file);
+			try {
+				writer.write(text);
+			} finally {
+				writer.close();
+			}
+		}
+	}
+
+	static class LookupClass {
+		int value = 3;
+
+		LookupClass () {
+		}
+	}
+
 	static public class SomeClass {
 		public String name;
 		public int intValue;
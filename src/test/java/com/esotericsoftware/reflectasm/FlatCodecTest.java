@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class FlatCodecTest extends TestCase {
+	public void testLayout () {
+		FlatCodec codec = FlatCodec.get(Sample.class);
+		assertEquals("[d, l, f, i, c, s, b, z]", Arrays.toString(codec.getFieldNames()));
+		assertEquals("[0, 8, 16, 20, 24, 26, 28, 29]", Arrays.toString(codec.getOffsets()));
+		assertEquals(30, codec.getSize());
+	}
+
+	public void testHeap () {
+		roundTrip(ByteBuffer.allocate(100));
+	}
+
+	public void testDirect () {
+		roundTrip(ByteBuffer.allocateDirect(100).order(ByteOrder.nativeOrder()));
+	}
+
+	public void testMapped () throws Exception {
+		File file = File.createTempFile("flatcodec", ".bin");
+		file.deleteOnExit();
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			MappedByteBuffer buffer = randomAccessFile.getChannel().map(MapMode.READ_WRITE, 0, 100);
+			roundTrip(buffer);
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	private void roundTrip (ByteBuffer buffer) {
+		FlatCodec codec = FlatCodec.get(Sample.class);
+		Sample sample = new Sample();
+		sample.d = 1.5;
+		sample.l = -123456789012l;
+		sample.f = 2.5f;
+		sample.i = -7;
+		sample.c = 'x';
+		sample.s = 300;
+		sample.b = -1;
+		sample.z = true;
+		sample.name = "ignored";
+
+		codec.write(sample, buffer, 40);
+		assertEquals(0, buffer.position());
+		Sample copy = new Sample();
+		codec.read(buffer, 40, copy);
+		assertEquals(1.5, copy.d);
+		assertEquals(-123456789012l, copy.l);
+		assertEquals(2.5f, copy.f);
+		assertEquals(-7, copy.i);
+		assertEquals('x', copy.c);
+		assertEquals(300, copy.s);
+		assertEquals(-1, copy.b);
+		assertTrue(copy.z);
+		assertNull(copy.name);
+
+		buffer.position(0);
+		codec.write(sample, buffer);
+		codec.write(new Sample(), buffer);
+		assertEquals(codec.getSize() * 2, buffer.position());
+		buffer.flip();
+		codec.read(buffer, copy);
+		assertEquals(-7, copy.i);
+		codec.read(buffer, copy);
+		assertEquals(0, copy.i);
+		assertFalse(copy.z);
+	}
+
+	public void testInaccessibleField () {
+		try {
+			FlatCodec.get(PrivateField.class);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	static public class PrivateField {
+		public int i;
+		private int hidden;
+	}
+
+	static public class Sample {
+		public boolean z;
+		public byte b;
+		public short s;
+		public char c;
+		public int i;
+		public float f;
+		public long l;
+		public double d;
+		public String name;
+	}
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import com.esotericsoftware.reflectasm.other.ProtectedBase;
+
+import junit.framework.TestCase;
+
+public class InstancePoolTest extends TestCase {
+	public void testObtainAndFree () {
+		InstancePool<Message> pool = new InstancePool(Message.class, 4);
+		Message message = pool.obtain();
+		assertEquals(0, pool.getHits());
+		assertEquals(1, pool.getMisses());
+
+		message.id = 123;
+		message.text = "hello";
+		pool.free(message);
+		assertEquals(0, message.id);
+		assertEquals(null, message.text);
+		assertEquals(1, pool.getFree());
+
+		assertTrue(pool.obtain() == message);
+		assertEquals(1, pool.getHits());
+		assertEquals(0, pool.getFree());
+	}
+
+	public void testCapacity () {
+		InstancePool<Message> pool = new InstancePool(Message.class, 3);
+		assertTrue(pool.getCapacity() >= 3);
+		for (int i = 0; i < 10; i++)
+			pool.free(new Message());
+		assertEquals(pool.getCapacity(), pool.getFree());
+		assertEquals(10 - pool.getCapacity(), pool.getDrops());
+		pool.clear();
+		assertEquals(0, pool.getFree());
+	}
+
+	public void testPrototype () {
+		Message prototype = new Message();
+		prototype.text = "default";
+		prototype.priority = 5;
+		InstancePool<Message> pool = new InstancePool(Message.class, 4, prototype);
+		Message message = pool.obtain();
+		assertEquals("default", message.text);
+		assertEquals(5, message.priority);
+
+		message.text = "changed";
+		message.priority = 1;
+		message.id = 10;
+		pool.free(message);
+		assertEquals("default", message.text);
+		assertEquals(5, message.priority);
+		assertEquals(0, message.id);
+	}
+
+	public void testThreads () throws Exception {
+		final InstancePool<Message> pool = new InstancePool(Message.class, 64);
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				public void run () {
+					for (int ii = 0; ii < 10000; ii++) {
+						Message message = pool.obtain();
+						assertEquals(0, message.id);
+						message.id = ii + 1;
+						pool.free(message);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; i++)
+			threads[i].join();
+		assertEquals(40000, pool.getHits() + pool.getMisses());
+	}
+
+	public void testPrivateFields () {
+		InstancePool<PrivateMessage> pool = new InstancePool(PrivateMessage.class, 4);
+		PrivateMessage message = pool.obtain();
+		message.id = 7;
+		message.secret = "password";
+		message.count = 3;
+		pool.free(message);
+		assertEquals(0, message.id);
+		assertEquals(null, message.secret);
+		assertEquals(0, message.count);
+
+		PrivateMessage prototype = new PrivateMessage();
+		prototype.secret = "default";
+		pool = new InstancePool(PrivateMessage.class, 4, prototype);
+		message = pool.obtain();
+		assertEquals("default", message.secret);
+		message.secret = "changed";
+		pool.free(message);
+		assertEquals("default", message.secret);
+	}
+
+	public void testInheritedProtectedFields () {
+		InstancePool<ProtectedMessage> pool = new InstancePool(ProtectedMessage.class, 4);
+		ProtectedMessage message = pool.obtain();
+		message.setProtectedValue(7);
+		message.id = 3;
+		pool.free(message);
+		assertEquals(0, message.getProtectedValue());
+		assertEquals(0, message.id);
+		assertTrue(pool.obtain() == message);
+
+		ProtectedMessage prototype = new ProtectedMessage();
+		prototype.setProtectedValue(5);
+		pool = new InstancePool(ProtectedMessage.class, 4, prototype);
+		message = pool.obtain();
+		assertEquals(5, message.getProtectedValue());
+		message.setProtectedValue(9);
+		pool.free(message);
+		assertEquals(5, message.getProtectedValue());
+	}
+
+	static public class PrivateMessage {
+		public int id;
+		private String secret;
+		private int count;
+	}
+
+	static public class ProtectedMessage extends ProtectedBase {
+		public int id;
+	}
+
+	static public class Message {
+		public long id;
+		public int priority;
+		public String text;
+	}
+}
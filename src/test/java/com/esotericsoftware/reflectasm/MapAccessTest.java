@@ -0,0 +1,200 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class MapAccessTest extends TestCase {
+	public void testToMap () {
+		MapAccess access = MapAccess.get(Bean.class);
+		assertEquals("[name, count, total, flag, letter, values, id]", Arrays.toString(access.getKeys()));
+
+		Bean bean = new Bean();
+		bean.name = "first";
+		bean.count = 5;
+		bean.total = 7l;
+		bean.flag = true;
+		bean.letter = 'x';
+		bean.values = new int[] {1, 2};
+
+		FieldMap map = access.toMap(bean);
+		assertEquals(7, map.size());
+		assertEquals("first", map.get("name"));
+		assertEquals(5, map.get("count"));
+		assertEquals(7l, map.get("total"));
+		assertEquals(true, map.get("flag"));
+		assertEquals('x', map.get("letter"));
+		assertSame(bean.values, map.get("values"));
+		assertEquals(3, map.get("id"));
+		assertNull(map.get("missing"));
+
+		HashMap<String, Object> hashMap = new HashMap();
+		access.toMap(bean, hashMap);
+		assertEquals(hashMap, map);
+		assertEquals(map, hashMap);
+	}
+
+	public void testFromMap () {
+		MapAccess access = MapAccess.get(Bean.class);
+		Bean bean = new Bean();
+		bean.name = "first";
+		bean.count = 5;
+		FieldMap map = access.toMap(bean);
+		map.put("name", "second");
+		map.put("count", 6);
+
+		Bean copy = new Bean();
+		access.fromMap(map, copy);
+		assertEquals("second", copy.name);
+		assertEquals(6, copy.count);
+
+		Map<String, Object> hashMap = new HashMap();
+		hashMap.put("name", "third");
+		hashMap.put("total", 9); // Integer to long.
+		hashMap.put("count", null); // Primitive fields are unchanged by null.
+		hashMap.put("letter", 'y');
+		hashMap.put("unknown", "ignored");
+		hashMap.put("id", 10);
+		access.fromMap(hashMap, copy);
+		assertEquals("third", copy.name);
+		assertEquals(6, copy.count);
+		assertEquals(9l, copy.total);
+		assertEquals('y', copy.letter);
+		assertEquals(3, copy.id); // Final fields are not set.
+
+		assertTrue(access.set(copy, "flag", true));
+		assertTrue(copy.flag);
+		assertFalse(access.set(copy, "unknown", 1));
+		assertFalse(access.set(copy, "id", 1));
+	}
+
+	public void testNarrowing () {
+		MapAccess access = MapAccess.get(Bean.class);
+		Bean bean = new Bean();
+		assertTrue(access.set(bean, "count", 7L));
+		assertEquals(7, bean.count);
+		assertTrue(access.set(bean, "total", 2.0));
+		assertEquals(2, bean.total);
+		try {
+			access.set(bean, "count", Long.MAX_VALUE);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			access.set(bean, "total", 1.5);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		assertEquals(7, bean.count);
+	}
+
+	public void testFloatingPoint () {
+		MapAccess access = MapAccess.get(Measure.class);
+		Measure measure = new Measure();
+		assertTrue(access.set(measure, "ratio", 0.1)); // Rounded to the nearest float.
+		assertEquals(0.1f, measure.ratio);
+		assertTrue(access.set(measure, "ratio", Double.NaN));
+		assertTrue(Float.isNaN(measure.ratio));
+		assertTrue(access.set(measure, "ratio", Double.POSITIVE_INFINITY));
+		assertEquals(Float.POSITIVE_INFINITY, measure.ratio);
+		assertTrue(access.set(measure, "amount", new BigDecimal("0.1")));
+		assertEquals(0.1, measure.amount);
+		try {
+			access.set(measure, "ratio", 1e300);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			access.set(measure, "amount", new BigDecimal("1e400"));
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		assertEquals(0.1, measure.amount);
+	}
+
+	public void testShadowedField () {
+		MapAccess access = MapAccess.get(Shadow.class);
+		Shadow shadow = new Shadow();
+		shadow.x = 1;
+		((ShadowBase)shadow).x = 2;
+		String baseKey = ShadowBase.class.getName() + ".x";
+		FieldMap map = access.toMap(shadow);
+		assertEquals(1, map.get("x"));
+		assertEquals(2, map.get(baseKey));
+
+		Shadow copy = new Shadow();
+		access.fromMap(new HashMap(map), copy);
+		assertEquals(1, copy.x);
+		assertEquals(2, ((ShadowBase)copy).x);
+	}
+
+	public void testAddKey () {
+		MapAccess access = MapAccess.get(Bean.class);
+		FieldMap map = access.toMap(new Bean());
+		map.put("extra", "value");
+		assertEquals(8, map.size());
+		assertEquals("value", map.get("extra"));
+		assertEquals(7, access.getKeys().length);
+		map.put("name", "named");
+
+		Bean bean = new Bean();
+		access.fromMap(map, bean);
+		assertEquals("named", bean.name);
+	}
+
+	public void testEntrySet () {
+		MapAccess access = MapAccess.get(Bean.class);
+		FieldMap map = access.toMap(new Bean());
+		for (Map.Entry<String, Object> entry : map.entrySet())
+			if (entry.getKey().equals("name")) entry.setValue("set");
+		assertEquals("set", map.get("name"));
+	}
+
+	static public class Bean extends Base {
+		public String name;
+		public int count;
+		public long total;
+		public boolean flag;
+		public char letter;
+		public int[] values;
+		private String hidden;
+	}
+
+	static public class Measure {
+		public float ratio;
+		public double amount;
+	}
+
+	static public class ShadowBase {
+		public int x;
+	}
+
+	static public class Shadow extends ShadowBase {
+		public int x;
+	}
+
+	static public class Base {
+		public final int id;
+
+		public Base () {
+			id = 3;
+		}
+	}
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class MapperAccessTest extends TestCase {
+	public void testMap () {
+		MapperAccess<Entity, Dto> access = MapperAccess.get(Entity.class, Dto.class);
+		assertEquals("[active, count, id, name, ratio, total]", Arrays.toString(access.getPropertyNames()));
+
+		Entity entity = new Entity();
+		entity.setId(123);
+		entity.setName("first");
+		entity.setCount(7);
+		entity.setTotal(99);
+		entity.setRatio(0.5f);
+		entity.setActive(true);
+		entity.setIgnored(new Object());
+
+		Dto dto = access.map(entity);
+		assertEquals(123l, dto.id);
+		assertEquals("first", dto.name);
+		assertEquals(Long.valueOf(7), dto.count);
+		assertEquals(99.0, dto.total);
+		assertEquals(0.5, dto.ratio);
+		assertEquals(Boolean.TRUE, dto.active);
+		assertEquals("unchanged", dto.ignored);
+	}
+
+	public void testReverse () {
+		MapperAccess<Dto, Entity> access = MapperAccess.get(Dto.class, Entity.class);
+		Dto dto = new Dto();
+		dto.name = "second";
+		dto.active = Boolean.TRUE;
+		dto.id = 5;
+
+		Entity entity = new Entity();
+		entity.setTotal(3);
+		access.map(dto, entity);
+		assertEquals("second", entity.getName());
+		assertEquals(true, entity.isActive());
+		assertEquals(3, entity.getTotal()); // double to int is narrowing.
+
+		dto.active = null;
+		entity.setActive(true);
+		access.map(dto, entity);
+		assertEquals(true, entity.isActive()); // Null is not unboxed.
+	}
+
+	public void testAccessClassNames () {
+		// Replacing dots with underscores would give both names the same access class.
+		String name1 = AccessClassLoader.appendName(new StringBuilder(), "a.b_c.S").toString();
+		String name2 = AccessClassLoader.appendName(new StringBuilder(), "a_b.c.S").toString();
+		assertEquals("$1$a$3$b_c$1$S", name1);
+		assertFalse(name1.equals(name2));
+	}
+
+	public void testInaccessibleSource () throws Exception {
+		try {
+			MapperAccess.get(Class.forName("java.util.ArrayList$Itr"), Dto.class);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	static public class Entity {
+		private int id;
+		private String name;
+		private int count;
+		private int total;
+		private float ratio;
+		private boolean active;
+		private Object ignored;
+
+		public int getId () {
+			return id;
+		}
+
+		public void setId (int id) {
+			this.id = id;
+		}
+
+		public String getName () {
+			return name;
+		}
+
+		public void setName (String name) {
+			this.name = name;
+		}
+
+		public int getCount () {
+			return count;
+		}
+
+		public void setCount (int count) {
+			this.count = count;
+		}
+
+		public int getTotal () {
+			return total;
+		}
+
+		public void setTotal (int total) {
+			this.total = total;
+		}
+
+		public float getRatio () {
+			return ratio;
+		}
+
+		public void setRatio (float ratio) {
+			this.ratio = ratio;
+		}
+
+		public boolean isActive () {
+			return active;
+		}
+
+		public void setActive (boolean active) {
+			this.active = active;
+		}
+
+		public Object getIgnored () {
+			return ignored;
+		}
+
+		public void setIgnored (Object ignored) {
+			this.ignored = ignored;
+		}
+	}
+
+	static public class Dto {
+		public long id;
+		public String name;
+		public Long count;
+		public double total;
+		public double ratio;
+		public Boolean active;
+		public String ignored = "unchanged";
+	}
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+public class MemberScannerTest extends TestCase {
+	protected void tearDown () throws Exception {
+		MemberScanner.setReadClassFiles(false);
+	}
+
+	public void testSameFields () {
+		ArrayList<MemberInfo> reflected = MemberScanner.getFields(Child.class);
+		MemberScanner.setReadClassFiles(true);
+		ArrayList<MemberInfo> read = MemberScanner.getFields(Child.class);
+		assertEquals(reflected.size(), read.size());
+		for (int i = 0, n = read.size(); i < n; i++) {
+			assertEquals(reflected.get(i).getName(), read.get(i).getName());
+			assertEquals(reflected.get(i).getDescriptor(), read.get(i).getDescriptor());
+			assertEquals(reflected.get(i).getModifiers(), read.get(i).getModifiers());
+			assertSame(reflected.get(i).getDeclaringClass(), read.get(i).getDeclaringClass());
+			assertEquals(reflected.get(i).getField(), read.get(i).getField());
+		}
+	}
+
+	public void testFieldAccess () {
+		MemberScanner.setReadClassFiles(true);
+		FieldAccess access = FieldAccess.get(Child.class);
+		assertEquals(String[].class, access.getFieldTypes()[access.getIndex("tags")]);
+		Child child = new Child();
+		access.setLong(child, access.getIndex("id"), 5);
+		assertEquals(5, child.id);
+		access.set(child, "name", "a");
+		assertEquals("a", child.name);
+		assertEquals(access.getIndex("name"), access.getIndex(access.getFields()[access.getIndex("name")]));
+
+		// The class file of a JDK class is newer than ASM reads, so it is scanned with reflection.
+		FieldAccess pointAccess = FieldAccess.get(java.awt.Point.class);
+		assertEquals(int.class, pointAccess.getFieldTypes()[pointAccess.getIndex("x")]);
+	}
+
+	public void testMethodAccess () {
+		MemberScanner.setReadClassFiles(true);
+		MethodAccess access = MethodAccess.get(Child.class);
+		Child child = new Child();
+		access.invoke(child, "setId", 7L);
+		assertEquals(7L, access.invoke(child, "getId"));
+		assertEquals(3, access.invoke(child, "sum", new int[] {1, 2}));
+		assertEquals(int.class, access.getReturnTypes()[access.getIndex("sum")]);
+		assertEquals(int[].class, access.getParameterTypes()[access.getIndex("sum")][0]);
+
+		ClassAccess classAccess = ClassAccess.get(Child.class);
+		assertEquals(3, classAccess.invoke(child, "sum", new int[] {1, 2}));
+	}
+
+	static public class Parent {
+		public long id;
+		static public int count;
+		private int hidden;
+
+		public long getId () {
+			return id;
+		}
+
+		public void setId (long id) {
+			this.id = id;
+		}
+	}
+
+	static public class Child extends Parent {
+		public String name;
+		protected String[] tags;
+		double score;
+
+		public int sum (int[] values) {
+			int sum = 0;
+			for (int value : values)
+				sum += value;
+			return sum;
+		}
+	}
+}
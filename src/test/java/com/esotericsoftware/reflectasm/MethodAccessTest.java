@@ -89,6 +89,28 @@ public class MethodAccessTest extends TestCase {
 		}
 	}
 
+	public void testSharedMetadata () {
+		MethodAccess access1 = MethodAccess.get(SomeClass.class), access2 = MethodAccess.get(SomeClass.class);
+		int index = access1.getIndex("setIntValue", int.class);
+		assertEquals(index, access2.getIndex("setIntValue", 1));
+		assertSame(access1.getParameterTypes(), access1.getParameterTypes());
+		access1.getParameterTypes()[index][0] = Object.class;
+		assertEquals(int.class, access2.getParameterTypes()[index][0]);
+		assertEquals(void.class, access2.getReturnTypes()[index]);
+
+		// The indexed getters read the shared metadata without copying it.
+		assertEquals(access2.getMethodNames().length, access1.getMethodCount());
+		assertSame("setIntValue", access1.getMethodName(index));
+		access1.getParameterTypes(index)[0] = Object.class;
+		assertEquals(int.class, access1.getParameterTypes(index)[0]);
+		assertEquals(void.class, access1.getReturnType(index));
+		try {
+			access1.getIndex("setIntValue", Integer.class);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
 	public void testInvokeInterface () {
 		MethodAccess access = MethodAccess.get(ConcurrentMap.class);
 		access = MethodAccess.get(ConcurrentMap.class);
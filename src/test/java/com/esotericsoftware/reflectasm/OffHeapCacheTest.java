@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class OffHeapCacheTest extends TestCase {
+	public void testPutGet () {
+		OffHeapCache<String, Item> cache = new OffHeapCache(Item.class, 1 << 16, 16);
+		assertNull(cache.get("missing"));
+
+		Item item = new Item("first item with a name longer than one block", 7, 2.5);
+		item.tags = new String[] {"a", null};
+		cache.put("one", item);
+		assertEquals(1, cache.size());
+		assertTrue(cache.containsKey("one"));
+
+		Item copy = cache.get("one");
+		assertNotSame(item, copy);
+		assertEquals(item.name, copy.name);
+		assertEquals(7, copy.count);
+		assertEquals(2.5, copy.price);
+		assertTrue(Arrays.equals(item.tags, copy.tags));
+		assertTrue(cache.getBytesUsed() > 16);
+
+		cache.put("one", new Item("b", 1, 0));
+		assertEquals("b", cache.get("one").name);
+		assertEquals(16, cache.getBytesUsed());
+
+		assertTrue(cache.remove("one"));
+		assertFalse(cache.remove("one"));
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getBytesUsed());
+		assertNull(cache.get("one"));
+
+		cache.put("null", null);
+		assertTrue(cache.containsKey("null"));
+		assertNull(cache.get("null"));
+
+		assertEquals(3, cache.getHits());
+		assertEquals(2, cache.getMisses());
+		assertEquals(0.6, cache.getHitRate(), 0.0001);
+	}
+
+	public void testEviction () {
+		// Each item uses one 32 byte block, so the cache holds 4.
+		OffHeapCache<Integer, Item> cache = new OffHeapCache(Item.class, 128, 32);
+		for (int i = 0; i < 4; i++)
+			cache.put(i, new Item("item" + i, i, i));
+		assertEquals(4, cache.size());
+		assertEquals(0, cache.getEvictions());
+		assertEquals(128, cache.getBytesUsed());
+
+		// Referenced entries get a second chance.
+		assertEquals(1, cache.get(1).count);
+		assertEquals(3, cache.get(3).count);
+		cache.put(4, new Item("item4", 4, 4));
+		assertEquals(1, cache.getEvictions());
+		assertFalse(cache.containsKey(0));
+		cache.put(5, new Item("item5", 5, 5));
+		assertFalse(cache.containsKey(2));
+		assertTrue(cache.containsKey(1));
+		assertTrue(cache.containsKey(3));
+		assertEquals(4, cache.size());
+		assertEquals(128, cache.getBytesAllocated());
+
+		// A value needing several blocks evicts as many entries as needed.
+		cache.put(6, new Item("a name long enough to need three blocks of 32 bytes each in the cache", 6, 6));
+		assertEquals(6, cache.get(6).count);
+		assertEquals(2, cache.size());
+		assertEquals(128, cache.getBytesUsed());
+
+		try {
+			cache.put(7, new Item(new String(new char[200]).replace('\0', 'x'), 7, 7));
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getBytesUsed());
+		assertTrue(cache.toString().startsWith("OffHeapCache[size=0"));
+	}
+
+	public void testThreads () throws Exception {
+		final OffHeapCache<Integer, Item> cache = new OffHeapCache(Item.class, 1 << 12, 32);
+		List<Thread> threads = new ArrayList();
+		final List<Throwable> errors = new ArrayList();
+		for (int t = 0; t < 4; t++) {
+			final int offset = t * 1000;
+			Thread thread = new Thread() {
+				public void run () {
+					try {
+						for (int i = 0; i < 1000; i++) {
+							int key = offset + i;
+							cache.put(key, new Item("item" + key, key, key));
+							Item item = cache.get(key - 1);
+							if (item != null && item.count != key - 1) throw new AssertionError(item.count);
+						}
+					} catch (Throwable ex) {
+						synchronized (errors) {
+							errors.add(ex);
+						}
+					}
+				}
+			};
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		assertEquals(errors.toString(), 0, errors.size());
+		assertTrue(cache.getBytesUsed() <= cache.getMaxBytes());
+		assertTrue(cache.getEvictions() > 0);
+	}
+
+	static public final class Item {
+		public String name;
+		public int count;
+		public double price;
+		public String[] tags;
+
+		public Item () {
+		}
+
+		public Item (String name, int count, double price) {
+			this.name = name;
+			this.count = count;
+			this.price = price;
+		}
+	}
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import junit.framework.TestCase;
+
+public class PathAccessTest extends TestCase {
+	public void testPath () {
+		Order order = new Order();
+		order.customer = new Customer();
+		order.customer.setAddress(new Address());
+		order.customer.getAddress().zip = 12345;
+		order.customer.getAddress().city = "Springfield";
+
+		PathAccess zip = PathAccess.compile(Order.class, "customer.address.zip");
+		assertEquals(int.class, zip.getType());
+		assertEquals("customer.address.zip", zip.getPath());
+		assertEquals(12345, zip.getInt(order));
+		assertEquals(12345, zip.get(order));
+
+		PathAccess city = PathAccess.compile(Order.class, "customer.address.city");
+		assertEquals("Springfield", city.get(order));
+
+		PathAccess customer = PathAccess.compile(Order.class, "customer");
+		assertSame(order.customer, customer.get(order));
+	}
+
+	public void testNull () {
+		Order order = new Order();
+		PathAccess zip = PathAccess.compile(Order.class, "customer.address.zip");
+		assertNull(zip.get(order));
+		assertEquals(0, zip.getInt(order));
+		order.customer = new Customer();
+		assertNull(zip.get(order));
+		assertEquals(0, zip.getInt(order));
+		assertEquals(0d, PathAccess.compile(Order.class, "customer.address.latitude").getDouble(order));
+
+		// A null root is handled the same way.
+		assertNull(zip.get(null));
+		assertEquals(0, zip.getInt(null));
+		assertNull(PathAccess.compile(Order.class, "customer").get(null));
+	}
+
+	public void testDollarName () {
+		// "$" is legal in a property name, so the path must not share an access class with a property named "customer$address".
+		Order order = new Order();
+		order.customer = new Customer();
+		order.customer.setAddress(new Address());
+		order.customer$address = new Address();
+		PathAccess path = PathAccess.compile(Order.class, "customer.address");
+		PathAccess dollar = PathAccess.compile(Order.class, "customer$address");
+		assertNotSame(path.getClass(), dollar.getClass());
+		assertSame(order.customer.getAddress(), path.get(order));
+		assertSame(order.customer$address, dollar.get(order));
+	}
+
+	public void testErrors () {
+		PathAccess zip = PathAccess.compile(Order.class, "customer.address.zip");
+		try {
+			zip.getLong(new Order());
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			PathAccess.compile(Order.class, "customer.missing");
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			PathAccess.compile(Order.class, "customer.address.zip.value");
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	static public class Order {
+		public Customer customer;
+		public Address customer$address;
+	}
+
+	static public class Customer {
+		private Address address;
+
+		public Address getAddress () {
+			return address;
+		}
+
+		public void setAddress (Address address) {
+			this.address = address;
+		}
+	}
+
+	static public class Address {
+		public int zip;
+		public String city;
+		public double latitude;
+	}
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class PropertyAccessTest extends TestCase {
+	public void testProperties () {
+		PropertyAccess access = PropertyAccess.get(Bean.class);
+		assertEquals("[URL, active, count, id, name, readOnly, total, writeOnly]", Arrays.toString(access.getPropertyNames()));
+		assertEquals(long.class, access.getPropertyTypes()[access.getIndex("total")]);
+
+		Bean bean = new Bean();
+		access.set(bean, "name", " first ");
+		assertEquals("first", bean.getName()); // The setter trims.
+		assertEquals("first", access.get(bean, "name"));
+
+		access.set(bean, "count", 5);
+		assertEquals(5, bean.count);
+		assertEquals(5, access.get(bean, "count"));
+
+		int total = access.getIndex("total");
+		access.setLong(bean, total, 9l);
+		assertEquals(9l, access.getLong(bean, total));
+
+		int active = access.getIndex("active");
+		access.setBoolean(bean, active, true);
+		assertTrue(bean.isActive());
+		assertEquals(Boolean.TRUE, access.get(bean, active));
+
+		access.set(bean, "URL", "http://example.com");
+		assertEquals("http://example.com", bean.getURL());
+		assertEquals(7, access.get(bean, "readOnly"));
+	}
+
+	public void testFieldFallback () {
+		PropertyAccess access = PropertyAccess.get(Bean.class);
+		Bean bean = new Bean();
+		int id = access.getIndex("id");
+		access.setInt(bean, id, 3);
+		assertEquals(3, bean.id);
+		assertEquals(3, access.getInt(bean, id));
+		assertTrue(access.isReadable(id));
+		assertTrue(access.isWritable(id));
+	}
+
+	public void testErrors () {
+		PropertyAccess access = PropertyAccess.get(Bean.class);
+		Bean bean = new Bean();
+		assertFalse(access.isWritable(access.getIndex("readOnly")));
+		assertFalse(access.isReadable(access.getIndex("writeOnly")));
+		try {
+			access.set(bean, "readOnly", 1);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			access.get(bean, "writeOnly");
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			access.getInt(bean, access.getIndex("name"));
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			access.get(bean, 100);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			access.getIndex("missing");
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	public void testInterface () {
+		PropertyAccess access = PropertyAccess.get(Named.class);
+		assertEquals("[name]", Arrays.toString(access.getPropertyNames()));
+		Bean bean = new Bean();
+		access.set(bean, 0, "second");
+		assertEquals("second", access.get(bean, 0));
+	}
+
+	static public interface Named {
+		public String getName ();
+
+		public void setName (String name);
+	}
+
+	static public class Bean implements Named {
+		public int id;
+		public int count;
+		public long total;
+		private String name;
+		private boolean active;
+		private String url;
+		private int writeOnly;
+
+		public String getName () {
+			return name;
+		}
+
+		public void setName (String name) {
+			this.name = name.trim();
+		}
+
+		public int getCount () {
+			return count;
+		}
+
+		public Bean setCount (int count) {
+			this.count = count;
+			return this;
+		}
+
+		public boolean isActive () {
+			return active;
+		}
+
+		public void setActive (boolean active) {
+			this.active = active;
+		}
+
+		public String getURL () {
+			return url;
+		}
+
+		public void setURL (String url) {
+			this.url = url;
+		}
+
+		public int getReadOnly () {
+			return 7;
+		}
+
+		public void setWriteOnly (int writeOnly) {
+			this.writeOnly = writeOnly;
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class SoAListTest extends TestCase {
+	public void testInterface () {
+		SoAList<Particle> list = new SoAList(Particle.class, 2);
+		assertEquals("[alive, label, mass, x, y]", Arrays.toString(list.getColumnNames()));
+		for (int i = 0; i < 10; i++) {
+			Particle particle = list.get(list.add());
+			particle.setX(i);
+			particle.setY(i * 2);
+			particle.setMass(i * 1000l);
+			particle.setAlive(i % 2 == 0);
+			particle.setLabel("p" + i);
+		}
+		assertEquals(10, list.size());
+
+		float sum = 0;
+		int count = 0;
+		for (Particle particle : list) {
+			sum += particle.getX();
+			if (particle.isAlive()) count++;
+		}
+		assertEquals(45f, sum);
+		assertEquals(5, count);
+
+		Particle flyweight = list.newFlyweight();
+		list.moveTo(flyweight, 3);
+		assertEquals(6f, flyweight.getY());
+		assertEquals(3000l, flyweight.getMass());
+		assertEquals("p3", flyweight.getLabel());
+		assertEquals(3, list.indexOf(flyweight));
+
+		float[] xs = (float[])list.getColumn(list.getColumnIndex("x"));
+		assertEquals(9f, xs[9]);
+
+		list.add(flyweight); // Copies element 3.
+		assertEquals("p3", list.get(10).getLabel());
+
+		try {
+			list.moveTo(flyweight, 11);
+			fail();
+		} catch (IndexOutOfBoundsException expected) {
+		}
+		list.clear();
+		assertEquals(0, list.size());
+	}
+
+	public void testClass () {
+		SoAList<Point> list = new SoAList(Point.class);
+		assertEquals("[x, y]", Arrays.toString(list.getColumnNames()));
+		Point point = new Point();
+		point.setX(5);
+		point.setY(7);
+		list.add(point);
+		point.setX(6);
+		list.add(point);
+
+		Point flyweight = list.get(0);
+		assertEquals(5, flyweight.getX());
+		assertEquals(7, flyweight.getY());
+		assertSame(flyweight, flyweight.setX(8));
+		assertEquals(8, list.get(0).getX());
+		assertEquals(6, list.get(1).getX());
+		assertEquals(15, list.get(0).sum());
+
+		final int[] total = new int[1];
+		list.forEach(p -> total[0] += p.getX());
+		assertEquals(14, total[0]);
+	}
+
+	public void testAbstractMethod () {
+		try {
+			new SoAList(Unsupported.class);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	static public interface Particle {
+		public float getX ();
+
+		public void setX (float x);
+
+		public float getY ();
+
+		public void setY (float y);
+
+		public long getMass ();
+
+		public void setMass (long mass);
+
+		public boolean isAlive ();
+
+		public void setAlive (boolean alive);
+
+		public String getLabel ();
+
+		public void setLabel (String label);
+	}
+
+	static public class Point {
+		private int x, y;
+
+		public int getX () {
+			return x;
+		}
+
+		public Point setX (int x) {
+			this.x = x;
+			return this;
+		}
+
+		public int getY () {
+			return y;
+		}
+
+		public void setY (int y) {
+			this.y = y;
+		}
+
+		public int sum () {
+			return getX() + getY();
+		}
+	}
+
+	static public interface Unsupported {
+		public int getValue ();
+
+		public void update ();
+	}
+}
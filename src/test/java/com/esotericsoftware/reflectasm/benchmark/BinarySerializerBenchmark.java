@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2008, Nathan Sweet
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  3. Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.esotericsoftware.reflectasm.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import com.esotericsoftware.reflectasm.BinaryInput;
+import com.esotericsoftware.reflectasm.BinaryOutput;
+import com.esotericsoftware.reflectasm.BinarySerializer;
+
+public class BinarySerializerBenchmark extends Benchmark {
+	public BinarySerializerBenchmark () throws Exception {
+		int count = 10000;
+		Object[] dontCompileMeAway = new Object[count];
+
+		SomeClass someObject = new SomeClass();
+		someObject.name = "first";
+		someObject.id = 1234567;
+		someObject.value = 0.5;
+		someObject.values = new int[] {1, 2, 3, 4, 5};
+
+		BinarySerializer serializer = new BinarySerializer();
+		BinaryOutput output = new BinaryOutput();
+		BinaryInput input = new BinaryInput(new byte[0]);
+
+		for (int i = 0; i < 100; i++) {
+			for (int ii = 0; ii < count; ii++)
+				dontCompileMeAway[ii] = serializer(serializer, output, input, someObject);
+			for (int ii = 0; ii < count; ii++)
+				dontCompileMeAway[ii] = javaSerialization(someObject);
+		}
+		warmup = false;
+
+		for (int i = 0; i < 100; i++) {
+			start();
+			for (int ii = 0; ii < count; ii++)
+				dontCompileMeAway[ii] = serializer(serializer, output, input, someObject);
+			end("BinarySerializer");
+		}
+		for (int i = 0; i < 100; i++) {
+			start();
+			for (int ii = 0; ii < count; ii++)
+				dontCompileMeAway[ii] = javaSerialization(someObject);
+			end("Java Serialization");
+		}
+
+		output.reset();
+		serializer.writeObject(output, someObject, SomeClass.class);
+		System.out.println("BinarySerializer bytes: " + output.position());
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream objectOutput = new ObjectOutputStream(bytes);
+		objectOutput.writeObject(someObject);
+		objectOutput.close();
+		System.out.println("Java serialization bytes: " + bytes.size());
+
+		chart("Serialize/Deserialize");
+	}
+
+	private Object serializer (BinarySerializer serializer, BinaryOutput output, BinaryInput input, SomeClass object) {
+		output.reset();
+		serializer.writeObject(output, object, SomeClass.class);
+		input.setBytes(output.toBytes(), 0, output.position());
+		return serializer.readObject(input, SomeClass.class);
+	}
+
+	private Object javaSerialization (SomeClass object) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		ObjectOutputStream objectOutput = new ObjectOutputStream(bytes);
+		objectOutput.writeObject(object);
+		objectOutput.close();
+		return new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+	}
+
+	static public final class SomeClass implements Serializable {
+		public String name;
+		public int id;
+		public double value;
+		public int[] values;
+	}
+
+	public static void main (String[] args) throws Exception {
+		new BinarySerializerBenchmark();
+	}
+}
@@ -23,10 +23,14 @@ public class ConstructorAccessBenchmark extends Benchmark {
 
 		Class type = SomeClass.class;
 		ConstructorAccess<SomeClass> access = ConstructorAccess.get(type);
+		ConstructorAccess<SomeClass> bypassingAccess = ConstructorAccess.getBypassingConstructor(type);
 
 		for (int i = 0; i < 100; i++)
 			for (int ii = 0; ii < count; ii++)
 				dontCompileMeAway[ii] = access.newInstance();
+		for (int i = 0; i < 100; i++)
+			for (int ii = 0; ii < count; ii++)
+				dontCompileMeAway[ii] = bypassingAccess.newInstance();
 		for (int i = 0; i < 100; i++)
 			for (int ii = 0; ii < count; ii++)
 				dontCompileMeAway[ii] = type.newInstance();
@@ -38,6 +42,12 @@ public class ConstructorAccessBenchmark extends Benchmark {
 				dontCompileMeAway[ii] = access.newInstance();
 			end("ConstructorAccess");
 		}
+		for (int i = 0; i < 100; i++) {
+			start();
+			for (int ii = 0; ii < count; ii++)
+				dontCompileMeAway[ii] = bypassingAccess.newInstance();
+			end("Bypassing constructor");
+		}
 		for (int i = 0; i < 100; i++) {
 			start();
 			for (int ii = 0; ii < count; ii++)